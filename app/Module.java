@@ -1,7 +1,10 @@
 import com.google.inject.AbstractModule;
 import services.ApplicationTimer;
 import services.AtomicCounter;
+import services.AuthTokenSweeper;
 import services.Counter;
+import services.StudyScheduleBackfill;
+import services.TagUsageReconciler;
 
 import java.time.Clock;
 
@@ -26,6 +29,12 @@ public class Module extends AbstractModule {
         bind(ApplicationTimer.class).asEagerSingleton();
         // Set AtomicCounter as the implementation for Counter.
         bind(Counter.class).to(AtomicCounter.class);
+        // Fixes drifted tag usage counts in the background.
+        bind(TagUsageReconciler.class).asEagerSingleton();
+        // Deletes expired auth tokens in the background.
+        bind(AuthTokenSweeper.class).asEagerSingleton();
+        // Schedules statistics that were created before the study schedule existed.
+        bind(StudyScheduleBackfill.class).asEagerSingleton();
     }
 
 }
@@ -1,43 +1,68 @@
 package controllers;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import models.BulkImportResult;
 import models.CardDeck;
 import models.FlashCard;
 import models.UserGroup;
+import play.Configuration;
 import play.Logger;
+import play.http.HttpErrorHandler;
 import play.mvc.BodyParser;
 import play.mvc.Controller;
 import play.mvc.Result;
 import play.mvc.Security;
 import repositories.CardDeckRepository;
+import repositories.FlashCardRepository;
+import services.DatabaseExecutionContext;
 import util.ActionAuthenticator;
 import util.JsonKeys;
 import util.JsonUtil;
+import util.JsonViews;
+import util.NdjsonStream;
+import util.RequestKeys;
 import util.exceptions.DuplicateKeyException;
 import util.exceptions.InvalidInputException;
 import util.exceptions.NotAuthorizedException;
 import util.exceptions.ObjectNotFoundException;
 
+import javax.inject.Inject;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * @author Fabian Widmann
  *         on 09/08/16.
  */
 public class CardDeckController extends Controller {
+    private final DatabaseExecutionContext dbContext;
 
-    public Result getCardDecks() {
-        return ok(JsonUtil.toJson(CardDeck.find.all()));
+    @Inject
+    public CardDeckController(DatabaseExecutionContext dbContext) {
+        this.dbContext = dbContext;
     }
 
-    public Result getCardDeck(long id) {
-        try {
-            return ok(JsonUtil.toJson(CardDeckRepository.getCardDeck(id)));
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "CardDeck with the given id does not exist.", id));
-        }
+    public CompletionStage<Result> getCardDecks() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ok(JsonUtil.toJson(CardDeckRepository.getCardDecks(), JsonViews.Summary.class));
+            } catch (InvalidInputException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            }
+        }, dbContext.current());
+    }
+
+    public CompletionStage<Result> getCardDeck(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ok(JsonUtil.toJson(CardDeckRepository.getCardDeck(id)));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "CardDeck with the given id does not exist.", id));
+            }
+        }, dbContext.current());
     }
 
     /**
@@ -46,30 +71,39 @@ public class CardDeckController extends Controller {
      * ex. [1][2][3][4] with size=2, start=1 -> [2][3]
      * - if start is bigger than the highest index, an empty list is returned.
      * - if size is equal to 0, an empty list is returned
+     * With the header Accept: application/x-ndjson the cards are streamed one per line, see {@link NdjsonStream}.
      *
      * @param id of the carddeck
      * @return matching result.
      */
-    public Result getCardDeckCards(long id) {
-        try {
-            List<FlashCard> flashCards = CardDeckRepository.getCardDeckCards(id);
-            return ok(JsonUtil.toJson(flashCards));
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "CardDeck with the given id does not exist.", id));
-        }
+    public CompletionStage<Result> getCardDeckCards(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                if (NdjsonStream.isRequested(request()))
+                    return ok().chunked(NdjsonStream.of(CardDeckRepository.streamCardDeckCards(id), FlashCard::getId, JsonViews.Summary.class, dbContext.current())).as(RequestKeys.MIME_NDJSON);
+                List<FlashCard> flashCards = CardDeckRepository.getCardDeckCards(id);
+                return ok(JsonUtil.toJson(flashCards, JsonViews.Summary.class));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "CardDeck with the given id does not exist.", id));
+            } catch (InvalidInputException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            }
+        }, dbContext.current());
     }
 
     @Security.Authenticated(ActionAuthenticator.class)
-    public Result deleteCardDeck(long id) {
-        try {
-            CardDeck cardDeck = CardDeckRepository.deleteCardDeck(id, request().username());
-
-        } catch (NotAuthorizedException e) {
-            return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "CardDeck with the given id does not exist.", id));
-        }
-        return noContent();
+    public CompletionStage<Result> deleteCardDeck(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                CardDeck cardDeck = CardDeckRepository.deleteCardDeck(id, request().username());
+
+            } catch (NotAuthorizedException e) {
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "CardDeck with the given id does not exist.", id));
+            }
+            return noContent();
+        }, dbContext.current());
     }
 
     /**
@@ -82,83 +116,118 @@ public class CardDeckController extends Controller {
      */
     @Security.Authenticated(ActionAuthenticator.class)
     @BodyParser.Of(BodyParser.Json.class)
-    public Result addCardDeck() {
-        JsonNode json = request().body().asJson();
-
-        try {
-            CardDeck deck = CardDeckRepository.addCardDeck(json);
-
-            return ok(JsonUtil.prepareJsonStatus(OK, "Carddeck has been created!", deck.getId()));
-        } catch (IllegalArgumentException e) {
-            e.printStackTrace();
-            Pattern p = Pattern.compile("\\\"(.*?)\\\"");
-            Matcher m = p.matcher(e.getCause().toString());
-            String cause = "";
-            if (m.find())
-                cause = m.group().substring(1, m.group().length() - 1);
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Request contained an element that is not " +
-                    "expected for a card deck. Unknown Attribute=" + cause + ", expected Attributes=" + JsonKeys.CARDDECK_JSON_ELEMENTS));
-        } catch (NullPointerException e) {
-
-            e.printStackTrace();
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error while retrieving cards, " + e.getMessage()));
-        } catch (DuplicateKeyException e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Could not create deck with given cards, some of them already are in a deck.", JsonKeys.CARDDECK_CARDS, e.getObjects()));
-        } catch (InvalidInputException e) {
-            e.printStackTrace();
-            if (JsonKeys.debugging && !e.getMessage().contains("did contain")) {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, e.getMessage() + " | cause: " + e.getCause()));
-            } else {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, e.getMessage()));
+    public CompletionStage<Result> addCardDeck() {
+        return CompletableFuture.supplyAsync(() -> {
+            JsonNode json = request().body().asJson();
+
+            try {
+                CardDeck deck = CardDeckRepository.addCardDeck(json);
+
+                return ok(JsonUtil.prepareJsonStatus(OK, "Carddeck has been created!", deck.getId()));
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+                Pattern p = Pattern.compile("\\\"(.*?)\\\"");
+                Matcher m = p.matcher(e.getCause().toString());
+                String cause = "";
+                if (m.find())
+                    cause = m.group().substring(1, m.group().length() - 1);
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Request contained an element that is not " +
+                        "expected for a card deck. Unknown Attribute=" + cause + ", expected Attributes=" + JsonKeys.CARDDECK_JSON_ELEMENTS));
+            } catch (NullPointerException e) {
+
+                e.printStackTrace();
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error while retrieving cards, " + e.getMessage()));
+            } catch (DuplicateKeyException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Could not create deck with given cards, some of them already are in a deck.", JsonKeys.CARDDECK_CARDS, e.getObjects()));
+            } catch (InvalidInputException e) {
+                e.printStackTrace();
+                if (JsonKeys.debugging && !e.getMessage().contains("did contain")) {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, e.getMessage() + " | cause: " + e.getCause()));
+                } else {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, e.getMessage()));
+                }
+            } catch (NotAuthorizedException e) {
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage()));
             }
-        } catch (NotAuthorizedException e) {
-            return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage()));
-        }
 
+        }, dbContext.current());
+    }
+
+    /**
+     * Imports many cards into the deck at once. The body is either a json array of cards or newline delimited json
+     * (Content-Type: application/x-ndjson) with one card per line, see
+     * {@link FlashCardRepository#importFlashCards(String, long, String, boolean)}.
+     *
+     * @param id of the carddeck
+     * @return OK with the ids of the created cards and the errors per rejected card,
+     * BAD_REQUEST if the body is malformed or no card could be imported,
+     * NOT_FOUND if the deck does not exist,
+     * UNAUTHORIZED if the user may not edit the deck
+     */
+    @Security.Authenticated(ActionAuthenticator.class)
+    @BodyParser.Of(BulkBodyParser.class)
+    public CompletionStage<Result> importCards(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            boolean ndjson = request().contentType().map(RequestKeys.MIME_NDJSON::equalsIgnoreCase).orElse(false);
+            try {
+                BulkImportResult result = FlashCardRepository.importFlashCards(request().username(), id, request().body().asText(), ndjson);
+                if (result.getCreated().isEmpty() && result.hasErrors())
+                    return badRequest(JsonUtil.toJson(result));
+                return ok(JsonUtil.toJson(result));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "CardDeck with the given id does not exist.", id));
+            } catch (InvalidInputException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            } catch (NotAuthorizedException e) {
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
+            }
+        }, dbContext.current());
     }
 
     @Security.Authenticated(ActionAuthenticator.class)
     @BodyParser.Of(BodyParser.Json.class)
-    public Result updateCardDeck(long id) {
-        JsonNode json = request().body().asJson();
-        try {
-            CardDeck deck = CardDeckRepository.updateCardDeck(id, request().username(), json, request().method());
-
-            return ok(JsonUtil.prepareJsonStatus(OK, "Carddeck has been updated!", deck.getId()));
-        } catch (IllegalArgumentException e) {
-            e.printStackTrace();
-            Pattern p = Pattern.compile("\\\"(.*?)\\\"");
-            Matcher m = p.matcher(e.getCause().toString());
-            String cause = "";
-            if (m.find())
-                cause = m.group().substring(1, m.group().length() - 1);
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Request contained an element that is not " +
-                    "expected for a card deck. Unknown Attribute=" + cause + ", expected Attributes=" + JsonKeys.CARDDECK_JSON_ELEMENTS));
-        } catch (NullPointerException e) {
-            e.printStackTrace();
-
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error while retrieving cards, " + e.getMessage()));
-        } catch (DuplicateKeyException e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Could not create deck with given cards, some of them already are in a deck.", JsonKeys.CARDDECK_CARDS, e.getObjects()));
-        } catch (InvalidInputException e) {
-            if (JsonKeys.debugging && !e.getMessage().contains("did contain")) {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, e.getMessage()+ " | cause: " + e.getCause()));
-            } else {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, e.getMessage()));
+    public CompletionStage<Result> updateCardDeck(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            JsonNode json = request().body().asJson();
+            try {
+                CardDeck deck = CardDeckRepository.updateCardDeck(id, request().username(), json, request().method());
+
+                return ok(JsonUtil.prepareJsonStatus(OK, "Carddeck has been updated!", deck.getId()));
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+                Pattern p = Pattern.compile("\\\"(.*?)\\\"");
+                Matcher m = p.matcher(e.getCause().toString());
+                String cause = "";
+                if (m.find())
+                    cause = m.group().substring(1, m.group().length() - 1);
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Request contained an element that is not " +
+                        "expected for a card deck. Unknown Attribute=" + cause + ", expected Attributes=" + JsonKeys.CARDDECK_JSON_ELEMENTS));
+            } catch (NullPointerException e) {
+                e.printStackTrace();
+
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error while retrieving cards, " + e.getMessage()));
+            } catch (DuplicateKeyException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Could not create deck with given cards, some of them already are in a deck.", JsonKeys.CARDDECK_CARDS, e.getObjects()));
+            } catch (InvalidInputException e) {
+                if (JsonKeys.debugging && !e.getMessage().contains("did contain")) {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, e.getMessage()+ " | cause: " + e.getCause()));
+                } else {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, e.getMessage()));
+                }
+            } catch (ObjectNotFoundException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, e.getMessage()));
+            } catch (NotAuthorizedException e) {
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage()));
             }
-        } catch (ObjectNotFoundException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, e.getMessage()));
-        } catch (NotAuthorizedException e) {
-            return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage()));
-        }
+        }, dbContext.current());
     }
 
 
@@ -167,14 +236,27 @@ public class CardDeckController extends Controller {
      * @param id
      * @return ok with the group's content or notFound.
      */
-    public Result getGroupOfDeck(long id){
-        try {
-            Logger.debug("DeckID="+id);
-            UserGroup group=CardDeckRepository.getDeckUserGroup(id);
-            Logger.debug("group="+group);
-            return ok(JsonUtil.toJson(group));
-        }catch (NullPointerException e){
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "CardDeck with the given id does not exist.", id));
+    public CompletionStage<Result> getGroupOfDeck(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Logger.debug("DeckID="+id);
+                UserGroup group=CardDeckRepository.getDeckUserGroup(id);
+                Logger.debug("group="+group);
+                return ok(JsonUtil.toJson(group));
+            }catch (NullPointerException e){
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "CardDeck with the given id does not exist.", id));
+            }
+        }, dbContext.current());
+    }
+
+    /**
+     * Reads the body of a bulk import as text regardless of its content type. The limit is configured via
+     * <code>flashcards.cards.bulkMaxLength</code> and is higher than the one of the default json parser.
+     */
+    public static class BulkBodyParser extends BodyParser.TolerantText {
+        @Inject
+        public BulkBodyParser(Configuration configuration, HttpErrorHandler errorHandler) {
+            super(configuration.getBytes("flashcards.cards.bulkMaxLength"), errorHandler);
         }
     }
 }
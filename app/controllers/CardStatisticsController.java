@@ -1,55 +1,121 @@
 package controllers;
 
+import models.FlashCard;
 import models.statistics.CardStatistics;
+import models.statistics.StatisticsBatchResult;
 import play.mvc.BodyParser;
 import play.mvc.Controller;
 import play.mvc.Result;
 import play.mvc.Security;
 import repositories.CardStatisticsRepository;
+import repositories.StudyScheduleRepository;
+import services.CardStatisticsBuffer;
+import services.DatabaseExecutionContext;
 import util.ActionAuthenticator;
 import util.JsonKeys;
 import util.JsonUtil;
+import util.JsonViews;
 import util.UrlParamHelper;
 import util.exceptions.InvalidInputException;
 import util.exceptions.NotAuthorizedException;
 
+import javax.inject.Inject;
 import java.text.ParseException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Created by fabianwidmann on 10/02/17.
  */
 public class CardStatisticsController extends Controller {
+    private final DatabaseExecutionContext dbContext;
+    private final CardStatisticsBuffer statisticsBuffer;
+
+    @Inject
+    public CardStatisticsController(DatabaseExecutionContext dbContext, CardStatisticsBuffer statisticsBuffer) {
+        this.dbContext = dbContext;
+        this.statisticsBuffer = statisticsBuffer;
+    }
 
     @Security.Authenticated(ActionAuthenticator.class)
-    public Result getCardStatistics() {
-        try {
-            List<CardStatistics> cardStatisticss = CardStatisticsRepository.getCardStatistics(request().username());
-            return ok(JsonUtil.toJson(cardStatisticss));
-        } catch (NotAuthorizedException e) {
-            return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage()));
-        } catch (ParseException e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Error while parsing count number." +
-                    " Please provide a valid number."));
-        }
+    public CompletionStage<Result> getCardStatistics() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                List<CardStatistics> cardStatisticss = CardStatisticsRepository.getCardStatistics(request().username());
+                return ok(JsonUtil.toJson(cardStatisticss));
+            } catch (NotAuthorizedException e) {
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage()));
+            } catch (ParseException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Error while parsing count number." +
+                        " Please provide a valid number."));
+            }
+        }, dbContext.current());
     }
 
 
     @Security.Authenticated(ActionAuthenticator.class)
     @BodyParser.Of(BodyParser.Json.class)
-    public Result addCardStatistics() {
-        CardStatistics cardStatistics;
-        try {
-            cardStatistics = CardStatisticsRepository.createCardStatistics(request().username(),  request().body().asJson());
-        } catch (ParseException e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Error while parsing date. " +
-                    "Dates should have the format: '"+ JsonKeys.DATE_FORMAT+"'. Example: '"+JsonKeys.DATE_START+"':'2017-02-10 13:24:29 UTC'. Applies to: '"+JsonKeys.DATE_START+"' and '"+JsonKeys.DATE_END+"'."));
-        } catch (InvalidInputException e) {
-            e.printStackTrace();
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST,e.getMessage()));
-        }
-        return ok(JsonUtil.toJson(cardStatistics));
+    public CompletionStage<Result> addCardStatistics() {
+        return CompletableFuture.supplyAsync(() -> {
+            CardStatistics cardStatistics;
+            try {
+                cardStatistics = CardStatisticsRepository.createCardStatistics(request().username(),  request().body().asJson());
+            } catch (ParseException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Error while parsing date. " +
+                        "Dates should have the format: '"+ JsonKeys.DATE_FORMAT+"'. Example: '"+JsonKeys.DATE_START+"':'2017-02-10 13:24:29 UTC'. Applies to: '"+JsonKeys.DATE_START+"' and '"+JsonKeys.DATE_END+"'."));
+            } catch (InvalidInputException e) {
+                e.printStackTrace();
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST,e.getMessage()));
+            }
+            return ok(JsonUtil.toJson(cardStatistics));
+        }, dbContext.current());
     }
 
+    /**
+     * Accepts a json array of statistics, e.g. all answers of a study session. Valid statistics are written in the
+     * background by the {@link CardStatisticsBuffer}, the response only reports how many were accepted and the errors of
+     * rejected elements by their index.
+     *
+     * @return ACCEPTED with the result, BAD_REQUEST if the body is no array or no statistic is valid,
+     * SERVICE_UNAVAILABLE if the buffer is full
+     */
+    @Security.Authenticated(ActionAuthenticator.class)
+    @BodyParser.Of(BodyParser.Json.class)
+    public CompletionStage<Result> addCardStatisticsBatch() {
+        return CompletableFuture.supplyAsync(() -> {
+            StatisticsBatchResult result = new StatisticsBatchResult();
+            try {
+                List<CardStatistics> statistics = CardStatisticsRepository.parseCardStatisticsBatch(request().username(), request().body().asJson(), result);
+                if (statistics.isEmpty() && result.hasErrors())
+                    return badRequest(JsonUtil.toJson(result));
+                if (!statisticsBuffer.offer(statistics))
+                    return status(SERVICE_UNAVAILABLE, JsonUtil.prepareJsonStatus(SERVICE_UNAVAILABLE, "Too many statistics are waiting to be saved, please retry."))
+                            .withHeader(RETRY_AFTER, "1");
+                result.setAccepted(statistics.size());
+                return status(ACCEPTED, JsonUtil.toJson(result));
+            } catch (InvalidInputException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            }
+        }, dbContext.current());
+    }
 
-}
\ No newline at end of file
+    /**
+     * Returns the cards that are due for the logged in user, see {@link StudyScheduleRepository#getDueCards(String)}.
+     *
+     * @return due cards, the most overdue first
+     */
+    @Security.Authenticated(ActionAuthenticator.class)
+    public CompletionStage<Result> getDueCards() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                List<FlashCard> dueCards = StudyScheduleRepository.getDueCards(request().username());
+                return ok(JsonUtil.toJson(dueCards, JsonViews.Summary.class));
+            } catch (NotAuthorizedException e) {
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage()));
+            } catch (InvalidInputException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            }
+        }, dbContext.current());
+    }
+}
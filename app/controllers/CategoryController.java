@@ -1,30 +1,48 @@
 package controllers;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import models.CardDeckSummary;
 import models.Category;
+import models.FlashCard;
 import play.mvc.BodyParser;
 import play.mvc.Controller;
 import play.mvc.Result;
 import play.mvc.Security;
 import repositories.CategoryRepository;
+import services.DatabaseExecutionContext;
 import util.ActionAuthenticator;
 import util.JsonKeys;
 import util.JsonUtil;
+import util.JsonViews;
+import util.NdjsonStream;
+import util.RequestKeys;
 import util.exceptions.*;
 
+import javax.inject.Inject;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 
 /**
  * @author Fabian Widmann
  */
 public class CategoryController extends Controller {
+    private final DatabaseExecutionContext dbContext;
+
+    @Inject
+    public CategoryController(DatabaseExecutionContext dbContext) {
+        this.dbContext = dbContext;
+    }
 
     /**
      * Retrieves all Categories.
      *
      * @return HTTPResult
      */
-    public Result getCategoryList() {
-        return ok(JsonUtil.toJson(CategoryRepository.getCategoryList()));
+    public CompletionStage<Result> getCategoryList() {
+        return CompletableFuture.supplyAsync(() -> {
+            return ok(JsonUtil.toJson(CategoryRepository.getCategoryList()));
+        }, dbContext.current());
     }
 
     /**
@@ -33,26 +51,54 @@ public class CategoryController extends Controller {
      * @param id of a category
      * @return matching HTTP Result.
      */
-    public Result getCategory(Long id) {
-        try {
-            return ok(JsonUtil.toJson(CategoryRepository.getCategory(id)));
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Category with the given id does not exist.", id));
-        }
+    public CompletionStage<Result> getCategory(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ok(JsonUtil.toJson(CategoryRepository.getCategory(id)));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Category with the given id does not exist.", id));
+            }
+        }, dbContext.current());
     }
 
     /**
-     * Get all card decks in a category.
+     * Get all card decks in a category, ?recursive=true includes the decks of all subcategories. With the header Accept: application/x-ndjson the deck summaries are streamed
+     * one per line, see {@link NdjsonStream}.
      *
      * @param id of a category
      * @return matching HTTP Result.
      */
-    public Result getCategoryCardDecks(Long id) {
-        try {
-            return ok(JsonUtil.toJson(CategoryRepository.getCategoryCardDecks(id)));
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Category with the given id does not exist.", id));
-        }
+    public CompletionStage<Result> getCategoryCardDecks(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                if (NdjsonStream.isRequested(request()))
+                    return ok().chunked(NdjsonStream.of(CategoryRepository.streamCategoryCardDecks(id), CardDeckSummary::getId, JsonViews.Summary.class, dbContext.current())).as(RequestKeys.MIME_NDJSON);
+                return ok(JsonUtil.toJson(CategoryRepository.getCategoryCardDecks(id), JsonViews.Summary.class));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Category with the given id does not exist.", id));
+            }
+        }, dbContext.current());
+    }
+
+    /**
+     * Get the cards of all decks in a category, ?recursive=true includes the cards of all subcategories. With the
+     * header Accept: application/x-ndjson the cards are streamed one per line, see {@link NdjsonStream}.
+     *
+     * @param id of a category
+     * @return matching HTTP Result.
+     */
+    public CompletionStage<Result> getCategoryCards(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                if (NdjsonStream.isRequested(request()))
+                    return ok().chunked(NdjsonStream.of(CategoryRepository.streamCategoryCards(id), FlashCard::getId, JsonViews.Summary.class, dbContext.current())).as(RequestKeys.MIME_NDJSON);
+                return ok(JsonUtil.toJson(CategoryRepository.getCategoryCards(id), JsonViews.Summary.class));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Category with the given id does not exist.", id));
+            } catch (InvalidInputException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            }
+        }, dbContext.current());
     }
 
     /**
@@ -61,8 +107,10 @@ public class CategoryController extends Controller {
      * @param id of a category
      * @return matching HTTP Result.
      */
-    public Result getChildren(Long id) {
-        return ok(JsonUtil.toJson(CategoryRepository.getChildren(id)));
+    public CompletionStage<Result> getChildren(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            return ok(JsonUtil.toJson(CategoryRepository.getChildren(id)));
+        }, dbContext.current());
     }
 
     /**
@@ -72,28 +120,30 @@ public class CategoryController extends Controller {
      */
     @Security.Authenticated(ActionAuthenticator.class)
     @BodyParser.Of(BodyParser.Json.class)
-    public Result addCategory() {
-        JsonNode json = request().body().asJson();
+    public CompletionStage<Result> addCategory() {
+        return CompletableFuture.supplyAsync(() -> {
+            JsonNode json = request().body().asJson();
 
-        try {
-            Category addCategory = CategoryRepository.addCategory(json);
-            return created(JsonUtil.prepareJsonStatus(CREATED, "Category has been created!", addCategory.getId()));
-        } catch (IllegalArgumentException e) {
-            e.printStackTrace();
-            if (JsonKeys.debugging) {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS + " | cause: " + e.getCause()));
-            } else {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS));
+            try {
+                Category addCategory = CategoryRepository.addCategory(json);
+                return created(JsonUtil.prepareJsonStatus(CREATED, "Category has been created!", addCategory.getId()));
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+                if (JsonKeys.debugging) {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS + " | cause: " + e.getCause()));
+                } else {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS));
+                }
+            } catch (ObjectNotFoundException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            } catch (PartiallyModifiedException e) {
+                return created(JsonUtil.prepareJsonStatus(OK, e.getMessage(), e.getObjectId()));
             }
-        } catch (ObjectNotFoundException e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
-        } catch (PartiallyModifiedException e) {
-            return created(JsonUtil.prepareJsonStatus(OK, e.getMessage(), e.getObjectId()));
-        }
+        }, dbContext.current());
     }
 
     /**
@@ -104,37 +154,39 @@ public class CategoryController extends Controller {
      */
     @Security.Authenticated(ActionAuthenticator.class)
     @BodyParser.Of(BodyParser.Json.class)
-    public Result updateCategory(Long id) {
-        JsonNode json = request().body().asJson();
+    public CompletionStage<Result> updateCategory(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            JsonNode json = request().body().asJson();
 
-        try {
-            Category updateCategory = CategoryRepository.updateCategory(id, request().username(), json, request().method());
-            return ok(JsonUtil.prepareJsonStatus(OK, "Category has been updated.", updateCategory.getId()));
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
-        } catch (IllegalArgumentException e) {
-            e.printStackTrace();
-            if (JsonKeys.debugging) {
+            try {
+                Category updateCategory = CategoryRepository.updateCategory(id, request().username(), json, request().method());
+                return ok(JsonUtil.prepareJsonStatus(OK, "Category has been updated.", updateCategory.getId()));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+                if (JsonKeys.debugging) {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS + " | cause: " + e.getCause()));
+                } else {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS));
+                }
+            } catch (ObjectNotFoundException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            } catch (InvalidInputException e) {
                 return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS + " | cause: " + e.getCause()));
-            } else {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS));
+                        .prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            } catch (PartiallyModifiedException e) {
+                return ok(JsonUtil.prepareJsonStatus(OK, e.getMessage(), e.getObjectId()));
+            } catch (NotAuthorizedException e) {
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
+            } catch (DuplicateKeyException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage(), id));
             }
-        } catch (ObjectNotFoundException e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
-        } catch (InvalidInputException e) {
-            return badRequest(JsonUtil
-                    .prepareJsonStatus(BAD_REQUEST, e.getMessage()));
-        } catch (PartiallyModifiedException e) {
-            return ok(JsonUtil.prepareJsonStatus(OK, e.getMessage(), e.getObjectId()));
-        } catch (NotAuthorizedException e) {
-            return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
-        } catch (DuplicateKeyException e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage(), id));
-        }
+        }, dbContext.current());
     }
 
 /*    public Result deleteCategory(Long id){
@@ -8,16 +8,21 @@ import play.mvc.Controller;
 import play.mvc.Result;
 import play.mvc.Security;
 import repositories.FlashCardRepository;
+import services.DatabaseExecutionContext;
 import util.ActionAuthenticator;
 import util.JsonKeys;
 import util.JsonUtil;
+import util.JsonViews;
 import util.exceptions.InvalidInputException;
 import util.exceptions.NotAuthorizedException;
 import util.exceptions.ParameterNotSupportedException;
 import util.exceptions.PartiallyModifiedException;
 
+import javax.inject.Inject;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import static play.mvc.Controller.request;
 import static play.mvc.Http.Status.*;
@@ -36,19 +41,28 @@ import static play.mvc.Results.*;
  *         /cards/:id/author            - GET
  */
 public class FlashCardController {
+    private final DatabaseExecutionContext dbContext;
+
+    @Inject
+    public FlashCardController(DatabaseExecutionContext dbContext) {
+        this.dbContext = dbContext;
+    }
+
     /**
      * Retrieves all Flashcards.
      *
      * @return HTTPResult
      */
-    public Result getFlashCardList() {
-        try {
-            return ok(JsonUtil.toJson(FlashCardRepository.getFlashCardList()));
-        } catch (NumberFormatException e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
-        } catch (InvalidInputException e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
-        }
+    public CompletionStage<Result> getFlashCardList() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ok(JsonUtil.toJson(FlashCardRepository.getFlashCardList(), JsonViews.Summary.class));
+            } catch (NumberFormatException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            } catch (InvalidInputException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            }
+        }, dbContext.current());
     }
 
     /**
@@ -57,12 +71,14 @@ public class FlashCardController {
      * @param id of a card
      * @return HTTPResult
      */
-    public Result getFlashCard(long id) {
-        try {
-            return ok(JsonUtil.toJson(FlashCardRepository.getFlashCard(id)));
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
-        }
+    public CompletionStage<Result> getFlashCard(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ok(JsonUtil.toJson(FlashCardRepository.getFlashCard(id)));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
+            }
+        }, dbContext.current());
     }
 
     /**
@@ -72,21 +88,23 @@ public class FlashCardController {
      * @return HTTPResult
      */
     @Security.Authenticated(ActionAuthenticator.class)
-    public Result deleteFlashCard(long id) {
-        Logger.debug("Current user=" + request().username());
-        try {
-            FlashCard deleted = FlashCardRepository.deleteFlashCard(request().username(), id);
+    public CompletionStage<Result> deleteFlashCard(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            Logger.debug("Current user=" + request().username());
+            try {
+                FlashCard deleted = FlashCardRepository.deleteFlashCard(request().username(), id);
 
-            return ok(JsonUtil.prepareJsonStatus(OK, "The card with the id=" + deleted.getId()
-                    + " has been deleted. This includes questions and answers. All Tags for this card were disconnected and persist."));
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
-        } catch (IllegalArgumentException e) {
-            return badRequest(JsonUtil
-                    .prepareJsonStatus(BAD_REQUEST, e.getMessage()));
-        } catch (NotAuthorizedException e) {
-            return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
-        }
+                return ok(JsonUtil.prepareJsonStatus(OK, "The card with the id=" + deleted.getId()
+                        + " has been deleted. This includes questions and answers. All Tags for this card were disconnected and persist."));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
+            } catch (IllegalArgumentException e) {
+                return badRequest(JsonUtil
+                        .prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            } catch (NotAuthorizedException e) {
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
+            }
+        }, dbContext.current());
     }
 
     /**
@@ -97,43 +115,45 @@ public class FlashCardController {
      */
     @Security.Authenticated(ActionAuthenticator.class)
     @BodyParser.Of(BodyParser.Json.class)
-    public Result addFlashCard() {
-        JsonNode json = request().body().asJson();
-        Logger.debug("Current user=" + request().username());
-        try {
-            FlashCard addedCard = FlashCardRepository.addFlashCard(request().username(), json);
-            return created(JsonUtil.prepareJsonStatus(CREATED, "FlashCard has been created!", addedCard.getId()));
-        } catch (IllegalArgumentException e) {
-            e.printStackTrace();
-            if (JsonKeys.debugging) {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS + " | cause: " + e.getCause()));
-            } else {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS));
-            }
+    public CompletionStage<Result> addFlashCard() {
+        return CompletableFuture.supplyAsync(() -> {
+            JsonNode json = request().body().asJson();
+            Logger.debug("Current user=" + request().username());
+            try {
+                FlashCard addedCard = FlashCardRepository.addFlashCard(request().username(), json);
+                return created(JsonUtil.prepareJsonStatus(CREATED, "FlashCard has been created!", addedCard.getId()));
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+                if (JsonKeys.debugging) {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS + " | cause: " + e.getCause()));
+                } else {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS));
+                }
 
-        } catch (ParameterNotSupportedException e) {
-            e.printStackTrace();
-            if (JsonKeys.debugging) {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS + " | cause: " + e.getCause()));
-            } else {
+            } catch (ParameterNotSupportedException e) {
+                e.printStackTrace();
+                if (JsonKeys.debugging) {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS + " | cause: " + e.getCause()));
+                } else {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS));
+                }
+            } catch (InvalidInputException e) {
+                e.printStackTrace();
                 return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS));
+                        .prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            } catch (PartiallyModifiedException e) {
+                return created(JsonUtil
+                        .prepareJsonStatus(CREATED, e.getMessage(), e.getObjectId()));
             }
-        } catch (InvalidInputException e) {
-            e.printStackTrace();
-            return badRequest(JsonUtil
-                    .prepareJsonStatus(BAD_REQUEST, e.getMessage()));
-        } catch (PartiallyModifiedException e) {
-            return created(JsonUtil
-                    .prepareJsonStatus(CREATED, e.getMessage(), e.getObjectId()));
-        }
+        }, dbContext.current());
     }
 
 
@@ -150,47 +170,49 @@ public class FlashCardController {
      */
     @Security.Authenticated(ActionAuthenticator.class)
     @BodyParser.Of(BodyParser.Json.class)
-    public Result updateFlashCard(long id) {
-        JsonNode json = request().body().asJson();
-        Map<String, String[]> urlParams = Controller.request().queryString();
-        Logger.debug("Current user=" + request().username());
+    public CompletionStage<Result> updateFlashCard(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            JsonNode json = request().body().asJson();
+            Map<String, String[]> urlParams = Controller.request().queryString();
+            Logger.debug("Current user=" + request().username());
 
-        try {
-            FlashCard updatedCard = FlashCardRepository.updateFlashCard(id, request().username(), json, urlParams);
-            return ok(JsonUtil.prepareJsonStatus(OK, "FlashCard has been updated!", updatedCard.getId()));
-        } catch (NullPointerException e) {
-            e.printStackTrace();
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
-        } catch (IllegalArgumentException e) {
-            if (JsonKeys.debugging) {
+            try {
+                FlashCard updatedCard = FlashCardRepository.updateFlashCard(id, request().username(), json, urlParams);
+                return ok(JsonUtil.prepareJsonStatus(OK, "FlashCard has been updated!", updatedCard.getId()));
+            } catch (NullPointerException e) {
                 e.printStackTrace();
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
+            } catch (IllegalArgumentException e) {
+                if (JsonKeys.debugging) {
+                    e.printStackTrace();
 
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, e.getMessage() + " | cause: " + e.getCause()));
-            } else {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, e.getMessage()));
-            }
-        } catch (ParameterNotSupportedException e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "An answerId is not accepted while creating new cards, " +
-                    "please provide a complete list of answers object with the following components: " + JsonKeys.QUESTION_JSON_ELEMENTS));
-        } catch (InvalidInputException e) {
-            e.printStackTrace();
-            if (JsonKeys.debugging /*&& !e.getCause().getMessage().contains("Body did contain")*/) {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS + " | cause: " + e.getCause()));
-            } else {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS));
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, e.getMessage() + " | cause: " + e.getCause()));
+                } else {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, e.getMessage()));
+                }
+            } catch (ParameterNotSupportedException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "An answerId is not accepted while creating new cards, " +
+                        "please provide a complete list of answers object with the following components: " + JsonKeys.QUESTION_JSON_ELEMENTS));
+            } catch (InvalidInputException e) {
+                e.printStackTrace();
+                if (JsonKeys.debugging /*&& !e.getCause().getMessage().contains("Body did contain")*/) {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS + " | cause: " + e.getCause()));
+                } else {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS));
+                }
+            } catch (NotAuthorizedException e) {
+                e.printStackTrace();
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
             }
-        } catch (NotAuthorizedException e) {
-            e.printStackTrace();
-            return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
-        }
+        }, dbContext.current());
     }
 
     /**
@@ -199,16 +221,18 @@ public class FlashCardController {
      * @param id of a card
      * @return httpresult
      */
-    public Result getQuestion(long id) {
-        Question ret;
-        try {
-            ret = FlashCardRepository.getQuestion(id);
-        } catch (Exception e) {
-            //System.err.println(e);
-            e.printStackTrace();
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
-        }
-        return ok(JsonUtil.toJson(ret));
+    public CompletionStage<Result> getQuestion(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            Question ret;
+            try {
+                ret = FlashCardRepository.getQuestion(id);
+            } catch (Exception e) {
+                //System.err.println(e);
+                e.printStackTrace();
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
+            }
+            return ok(JsonUtil.toJson(ret));
+        }, dbContext.current());
     }
 
     /**
@@ -217,16 +241,18 @@ public class FlashCardController {
      * @param id of a card
      * @return author of the card including a http result ok OR not found if nothing was found
      */
-    public Result getAuthor(long id) {
-        User ret;
-        try {
-            ret = FlashCardRepository.getAuthor(id);
-        } catch (NullPointerException e) {
-            //e.printStackTrace();
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
-        }
+    public CompletionStage<Result> getAuthor(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            User ret;
+            try {
+                ret = FlashCardRepository.getAuthor(id);
+            } catch (NullPointerException e) {
+                //e.printStackTrace();
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
+            }
 
-        return ok(JsonUtil.toJson(ret));
+            return ok(JsonUtil.toJson(ret));
+        }, dbContext.current());
     }
 
     /**
@@ -235,17 +261,19 @@ public class FlashCardController {
      * @param id of a card
      * @return answers of the card including a http result ok OR not found if nothing was found
      */
-    public Result getAnswers(long id) {
-        Map<String, String[]> urlParams = Controller.request().queryString();
-        List<Answer> ret;
-        try {
-            ret = FlashCardRepository.getAnswers(id, urlParams);
+    public CompletionStage<Result> getAnswers(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<String, String[]> urlParams = Controller.request().queryString();
+            List<Answer> ret;
+            try {
+                ret = FlashCardRepository.getAnswers(id, urlParams);
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
-        }
-        return ok(JsonUtil.toJson(ret));
+            } catch (Exception e) {
+                e.printStackTrace();
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
+            }
+            return ok(JsonUtil.toJson(ret));
+        }, dbContext.current());
     }
 
     /**
@@ -254,17 +282,19 @@ public class FlashCardController {
      * @param id of a card
      * @return list of Tags as json to the caller
      */
-    public Result getTags(long id) {
-        Map<String, String[]> urlParams = Controller.request().queryString();
+    public CompletionStage<Result> getTags(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<String, String[]> urlParams = Controller.request().queryString();
 
-        List<Tag> ret;
-        try {
-            ret = FlashCardRepository.getTags(id, urlParams);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
-        }
-        return ok(JsonUtil.toJson(ret));
+            List<Tag> ret;
+            try {
+                ret = FlashCardRepository.getTags(id, urlParams);
+            } catch (Exception e) {
+                e.printStackTrace();
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no card with id=" + id + " exists."));
+            }
+            return ok(JsonUtil.toJson(ret));
+        }, dbContext.current());
     }
 
 
@@ -14,28 +14,59 @@ import play.mvc.*;
 import repositories.CardDeckRepository;
 import repositories.CategoryRepository;
 import repositories.UserRepository;
+import services.CardStatisticsBuffer;
+import services.DatabaseExecutionContext;
+import services.MessageBroadcaster;
+import services.PasswordService;
+import services.TokenService;
 import util.ActionAuthenticator;
 import util.JsonKeys;
 import util.JsonUtil;
 import util.RequestKeys;
-import util.crypt.PasswordUtil;
-
+import util.cache.AuthTokenCache;
+import util.cache.CategoryTreeCache;
+import util.cache.GroupMembershipCache;
+import util.cache.LeaderboardCache;
+import util.cache.TokenDenyList;
+import util.crypt.SignedToken;
+
+import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.NoSuchAlgorithmException;
-import java.security.spec.InvalidKeySpecException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * This controller contains an action to handle HTTP requests
  * to the application's home page.
  */
 public class HomeController extends Controller {
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final DatabaseExecutionContext dbContext;
+    private final PasswordService passwordService;
+    private final TokenService tokenService;
+    private final CardStatisticsBuffer statisticsBuffer;
+    private final MessageBroadcaster messageBroadcaster;
+
+    @Inject
+    public HomeController(DatabaseExecutionContext dbContext, PasswordService passwordService, TokenService tokenService,
+                          CardStatisticsBuffer statisticsBuffer, MessageBroadcaster messageBroadcaster) {
+        this.dbContext = dbContext;
+        this.passwordService = passwordService;
+        this.tokenService = tokenService;
+        this.statisticsBuffer = statisticsBuffer;
+        this.messageBroadcaster = messageBroadcaster;
+    }
 
     /**
      * displays the flashcardslogo.
@@ -57,54 +88,56 @@ public class HomeController extends Controller {
      * @return matching http result
      */
     @Security.Authenticated(ActionAuthenticator.class)
-    public Result upload() {
-        Logger.debug("upload!");
-        Http.MultipartFormData<File> body = request().body().asMultipartFormData();
-        Http.MultipartFormData.FilePart<File> picture = body.getFile("picture");
-        Logger.debug("picture=" + picture);
-        if (picture != null) {
-            String fileName = picture.getFilename();
-            String contentType = picture.getContentType();
-            String fileType = determineFileType(fileName);
-
-            if (contentType.contains("image")) {
-                File pictureFile = picture.getFile();
-                Calendar c = Calendar.getInstance();
-                int year = c.get(Calendar.YEAR);
-                int month = c.get(Calendar.MONTH);
-                File directoryFile = new File("/var/www/html/img/" + year + "/" + month + "/");
-                directoryFile.mkdirs();
-                try {
-                    directoryFile = File.createTempFile("img", "." + fileType, directoryFile);
-                    Files.write(directoryFile.toPath(), Files.readAllBytes(pictureFile.toPath()));
-                } catch (IOException e) {
-                    return internalServerError(JsonUtil.prepareJsonStatus(INTERNAL_SERVER_ERROR, "Could not place file on the server"));
-                }
-                Logger.debug("Filepath:" + directoryFile.toPath());
-
-                int i = 0;
-                String host = "http://" + request().host();
-                i = host.lastIndexOf(":");
-                host = host.substring(0, i);
-                String url = host + getUrl(directoryFile.toPath(), "img");
-
-
-                try {
-                    UploadedMedia mediaRecord = new UploadedMedia(new URI(url), UserRepository.findUserByEmail(request().username()), contentType);
-                    Logger.debug("Uploaded file=" + mediaRecord);
-                    mediaRecord.save();
-                    return created(JsonUtil.toJson(mediaRecord));
-                } catch (URISyntaxException e) {
-                    e.printStackTrace();
-                    Logger.error(e.getMessage());
-                }
-
+    public CompletionStage<Result> upload() {
+        return CompletableFuture.supplyAsync(() -> {
+            Logger.debug("upload!");
+            Http.MultipartFormData<File> body = request().body().asMultipartFormData();
+            Http.MultipartFormData.FilePart<File> picture = body.getFile("picture");
+            Logger.debug("picture=" + picture);
+            if (picture != null) {
+                String fileName = picture.getFilename();
+                String contentType = picture.getContentType();
+                String fileType = determineFileType(fileName);
+
+                if (contentType.contains("image")) {
+                    File pictureFile = picture.getFile();
+                    Calendar c = Calendar.getInstance();
+                    int year = c.get(Calendar.YEAR);
+                    int month = c.get(Calendar.MONTH);
+                    File directoryFile = new File("/var/www/html/img/" + year + "/" + month + "/");
+                    directoryFile.mkdirs();
+                    try {
+                        directoryFile = File.createTempFile("img", "." + fileType, directoryFile);
+                        Files.write(directoryFile.toPath(), Files.readAllBytes(pictureFile.toPath()));
+                    } catch (IOException e) {
+                        return internalServerError(JsonUtil.prepareJsonStatus(INTERNAL_SERVER_ERROR, "Could not place file on the server"));
+                    }
+                    Logger.debug("Filepath:" + directoryFile.toPath());
+
+                    int i = 0;
+                    String host = "http://" + request().host();
+                    i = host.lastIndexOf(":");
+                    host = host.substring(0, i);
+                    String url = host + getUrl(directoryFile.toPath(), "img");
+
+
+                    try {
+                        UploadedMedia mediaRecord = new UploadedMedia(new URI(url), UserRepository.findUserByEmail(request().username()), contentType);
+                        Logger.debug("Uploaded file=" + mediaRecord);
+                        mediaRecord.save();
+                        return created(JsonUtil.toJson(mediaRecord));
+                    } catch (URISyntaxException e) {
+                        e.printStackTrace();
+                        Logger.error(e.getMessage());
+                    }
+
+                } else
+                    Logger.debug("contenttype does not contain image!");
             } else
-                Logger.debug("contenttype does not contain image!");
-        } else
-            Logger.debug("picture is null!");
-        return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Request did not contain a 'picture' key or valid picture."));
+                Logger.debug("picture is null!");
+            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Request did not contain a 'picture' key or valid picture."));
 
+        }, dbContext.current());
     }
 
     /**
@@ -140,52 +173,84 @@ public class HomeController extends Controller {
 
     /**
      * Checks the credentials in the body - users password and email and returns a token if valid or forbidden if invalid.
+     * The password is verified on the pool of the {@link PasswordService}, if it is saturated the login is rejected with
+     * 503, repeated failures for one email are rejected with 429.
      *
      * @return appropriate http result
      */
     @BodyParser.Of(BodyParser.Json.class)
-    public Result login() {
-        Logger.debug("Login: json=" + request().body().asText());
+    public CompletionStage<Result> login() {
         JsonNode json = request().body().asJson();
         if (request().secure())
             Logger.debug("Secure!");
-        if (json.has(JsonKeys.USER_PASSWORD) && json.has(JsonKeys.USER_EMAIL)) {
-            String pass = json.get(JsonKeys.USER_PASSWORD).asText();
-            String email = json.get(JsonKeys.USER_EMAIL).asText();
+        if (!json.has(JsonKeys.USER_PASSWORD) || !json.has(JsonKeys.USER_EMAIL))
+            return CompletableFuture.completedFuture(forbidden(JsonUtil.prepareJsonStatus(FORBIDDEN, "Login failed, check email and password for errors.")));
 
-            //User logInTo = User.find.where().and(like(JsonKeys.USER_EMAIL, email), like(JsonKeys.USER_PASSWORD, pass)).findUnique();
-            User logInTo = User.find.where().like(JsonKeys.USER_EMAIL, email).findUnique();
-            try {
-
-                Logger.debug("Login attempt with email=" + email + " User found=" + logInTo + " valid? " + PasswordUtil.validatePassword(pass, logInTo.getPassword()));
-                if (logInTo != null && PasswordUtil.validatePassword(pass, logInTo.getPassword())) {
-                    ObjectNode result = Json.newObject();
-                    result.put(JsonKeys.STATUS_CODE, OK);
-                    result.put(JsonKeys.DESCRIPTION, "Login succeeded.");
-                    Logger.debug("result=" + result);
-                    AuthToken token = new AuthToken(logInTo);
-                    token.save();
-                    Logger.debug("Token=" + token);
-                    logInTo.addAuthToken(token);
-                    Logger.debug("Added authtoken to user");
-                    result.put(JsonKeys.TOKEN, token.getToken());
-                    Logger.debug("finished result node: " + result);
-                    result.put(JsonKeys.USER_ID, logInTo.getId());
-                    return ok(result);
-                }
+        String pass = json.get(JsonKeys.USER_PASSWORD).asText();
+        String email = json.get(JsonKeys.USER_EMAIL).asText();
+        if (passwordService.isLockedOut(email))
+            return CompletableFuture.completedFuture(tooManyAttempts());
 
-            } catch (NoSuchAlgorithmException e) {
-                e.printStackTrace();
-            } catch (InvalidKeySpecException e) {
-                e.printStackTrace();
-            } catch (NullPointerException e) {
-                e.printStackTrace();
-                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "User does not exist."));
-            } catch (NumberFormatException e) {
+        Executor db = dbContext.current();
+        return CompletableFuture.supplyAsync(() -> {
+            //User logInTo = User.find.where().and(like(JsonKeys.USER_EMAIL, email), like(JsonKeys.USER_PASSWORD, pass)).findUnique();
+            return User.find.where().like(JsonKeys.USER_EMAIL, email).findUnique();
+        }, db).thenCompose(logInTo -> {
+            Logger.debug("Login attempt with email=" + email + " User found=" + logInTo);
+            if (logInTo == null)
+                return CompletableFuture.completedFuture(badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "User does not exist.")));
+            return passwordService.verify(email, pass, logInTo.getPassword())
+                    .thenApplyAsync(verification -> login(logInTo, verification), db);
+        }).exceptionally(throwable -> {
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause instanceof RejectedExecutionException)
+                return status(SERVICE_UNAVAILABLE, JsonUtil.prepareJsonStatus(SERVICE_UNAVAILABLE, "Too many logins at the moment, please retry."))
+                        .withHeader(RETRY_AFTER, "1");
+            if (cause instanceof NumberFormatException)
                 return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Using old legacy plaintext passwords. Please create a new user if that happens."));
-            }
+            Logger.error("Login failed.", cause);
+            return forbidden(JsonUtil.prepareJsonStatus(FORBIDDEN, "Login failed, check email and password for errors."));
+        });
+    }
+
+    /**
+     * Creates the token after the password was verified, saves the new hash if the stored one was outdated.
+     *
+     * @param logInTo      user of the login
+     * @param verification of the password
+     * @return appropriate http result
+     */
+    private Result login(User logInTo, PasswordService.Verification verification) {
+        if (verification.getStatus() == PasswordService.Verification.Status.LOCKED)
+            return tooManyAttempts();
+        if (verification.getStatus() != PasswordService.Verification.Status.VALID)
+            return forbidden(JsonUtil.prepareJsonStatus(FORBIDDEN, "Login failed, check email and password for errors."));
+
+        if (verification.getNewHash() != null) {
+            logInTo.setPassword(verification.getNewHash());
+            logInTo.update();
+            Logger.debug("Upgraded the password hash of user=" + logInTo.getId());
+        }
+        ObjectNode result = Json.newObject();
+        result.put(JsonKeys.STATUS_CODE, OK);
+        result.put(JsonKeys.DESCRIPTION, "Login succeeded.");
+        Logger.debug("result=" + result);
+        if (tokenService.isSigned()) {
+            result.put(JsonKeys.TOKEN, tokenService.issue(logInTo));
+        } else {
+            //the token references the user, loading and updating the token list of the user is not necessary
+            AuthToken token = new AuthToken(logInTo);
+            token.save();
+            Logger.debug("Token=" + token);
+            result.put(JsonKeys.TOKEN, token.getToken());
         }
-        return forbidden(JsonUtil.prepareJsonStatus(FORBIDDEN, "Login failed, check email and password for errors."));
+        Logger.debug("finished result node: " + result);
+        result.put(JsonKeys.USER_ID, logInTo.getId());
+        return ok(result);
+    }
+
+    private Result tooManyAttempts() {
+        return status(TOO_MANY_REQUESTS, JsonUtil.prepareJsonStatus(TOO_MANY_REQUESTS, "Too many failed login attempts, please try again later."));
     }
 
 
@@ -200,20 +265,28 @@ public class HomeController extends Controller {
      * @return
      */
     @Security.Authenticated(ActionAuthenticator.class)
-    public Result invalidateToken() {
-        String tokenString = "";
-        String[] authTokenHeaderValues = request().headers().get(RequestKeys.TOKEN_HEADER);
-        if ((authTokenHeaderValues != null) && (authTokenHeaderValues.length == 1) && (authTokenHeaderValues[0] != null)) {
-            String[] tokenHeader = authTokenHeaderValues[0].split(" ");
-            if (tokenHeader.length == 2) {
-                tokenString = tokenHeader[1];
+    public CompletionStage<Result> invalidateToken() {
+        return CompletableFuture.supplyAsync(() -> {
+            String tokenString = "";
+            String[] authTokenHeaderValues = request().headers().get(RequestKeys.TOKEN_HEADER);
+            if ((authTokenHeaderValues != null) && (authTokenHeaderValues.length == 1) && (authTokenHeaderValues[0] != null)) {
+                String[] tokenHeader = authTokenHeaderValues[0].split(" ");
+                if (tokenHeader.length == 2) {
+                    tokenString = tokenHeader[1];
+                }
             }
-        }
-        Logger.debug("Token Value: " + tokenString);
-        AuthToken authToken = AuthToken.find.where().eq(JsonKeys.TOKEN, tokenString).findUnique();
-        Logger.debug("Token: " + authToken);
-        authToken.delete();
-        return noContent();
+            Logger.debug("Token Value: " + tokenString);
+            //signed tokens are not stored, they are denied until they expire
+            if (SignedToken.isSigned(tokenString)) {
+                tokenService.revoke(tokenString);
+                return noContent();
+            }
+            AuthToken authToken = AuthToken.find.where().eq(JsonKeys.TOKEN, tokenString).findUnique();
+            Logger.debug("Token: " + authToken);
+            AuthTokenCache.invalidate(tokenString);
+            authToken.delete();
+            return noContent();
+        }, dbContext.current());
     }
 
     public Result test() {
@@ -223,6 +296,25 @@ public class HomeController extends Controller {
     public Result heartbeat() {
         Map<String, Object> map = new HashMap<>();
         map.put("currentDate", "" + new SimpleDateFormat(JsonKeys.DATE_FORMAT).format(new Date()));
+        Map<String, Object> tokenCache = new HashMap<>();
+        tokenCache.put("size", AuthTokenCache.size());
+        tokenCache.put("hits", AuthTokenCache.getHits());
+        tokenCache.put("misses", AuthTokenCache.getMisses());
+        map.put("authTokenCache", tokenCache);
+        map.put("tokenDenyList", TokenDenyList.size());
+        Map<String, Object> membershipCache = new HashMap<>();
+        membershipCache.put("size", GroupMembershipCache.size());
+        membershipCache.put("hits", GroupMembershipCache.getHits());
+        membershipCache.put("misses", GroupMembershipCache.getMisses());
+        map.put("groupMembershipCache", membershipCache);
+        map.put("categoryTreeLoads", CategoryTreeCache.getLoads());
+        Map<String, Object> leaderboard = new HashMap<>();
+        leaderboard.put("size", LeaderboardCache.size());
+        leaderboard.put("loads", LeaderboardCache.getLoads());
+        map.put("leaderboard", leaderboard);
+        map.put("passwordHashing", passwordService.getMetrics());
+        map.put("statisticsBuffer", statisticsBuffer.getMetrics());
+        map.put("messageStreams", messageBroadcaster.getMetrics());
         return ok(JsonUtil.convertToJsonNode(map));
     }
 
@@ -1,47 +1,85 @@
 package controllers;
 
+import models.User;
 import models.msg.AbstractMessage;
 import play.mvc.BodyParser;
 import play.mvc.Controller;
+import play.mvc.Http;
 import play.mvc.Result;
 import play.mvc.Security;
 import repositories.MessagingRepository;
+import repositories.UserRepository;
+import services.DatabaseExecutionContext;
+import services.MessageBroadcaster;
 import util.ActionAuthenticator;
 import util.JsonUtil;
 import util.exceptions.InvalidInputException;
 import util.exceptions.NotAuthorizedException;
 
+import javax.inject.Inject;
 import java.text.ParseException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Created by fabianwidmann on 10/02/17.
  */
 public class MessagingController extends Controller {
+    private final DatabaseExecutionContext dbContext;
+    private final MessageBroadcaster broadcaster;
 
+    @Inject
+    public MessagingController(DatabaseExecutionContext dbContext, MessageBroadcaster broadcaster) {
+        this.dbContext = dbContext;
+        this.broadcaster = broadcaster;
+    }
+
+    @Security.Authenticated(ActionAuthenticator.class)
+    public CompletionStage<Result> getMessages() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                List<AbstractMessage> messageList = MessagingRepository.getMessages(request().username());
+                return ok(JsonUtil.toJson(messageList));
+            } catch (NotAuthorizedException e) {
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage()));
+            } catch (InvalidInputException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            } catch (ParseException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Error while parsing date. Date should have the format: 'yyyy-MM-dd HH:mm:ss z'. Example: ?startDate=2017-02-10 13:24:29 UTC"));
+            }
+        }, dbContext.current());
+    }
+
+    /**
+     * Opens a server-sent event stream that receives every new message of the logged in user, see
+     * {@link MessageBroadcaster}.
+     *
+     * @return chunked event stream or UNAUTHORIZED if the user does not exist
+     */
     @Security.Authenticated(ActionAuthenticator.class)
-    public Result getMessages() {
-        try {
-            List<AbstractMessage> messageList = MessagingRepository.getMessages(request().username());
-            return ok(JsonUtil.toJson(messageList));
-        } catch (NotAuthorizedException e) {
-            return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage()));
-        } catch (ParseException e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Error while parsing date. Date should have the format: 'yyyy-MM-dd HH:mm:ss z'. Example: ?startDate=2017-02-10 13:24:29 UTC"));
-        }
+    public CompletionStage<Result> streamMessages() {
+        return CompletableFuture.supplyAsync(() -> {
+            User user = UserRepository.findUserByEmail(request().username());
+            if (user == null)
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, "User has to be logged in to receive messages."));
+            return ok().chunked(broadcaster.subscribe(user.getId())).as(Http.MimeTypes.EVENT_STREAM);
+        }, dbContext.current());
     }
 
     @Security.Authenticated(ActionAuthenticator.class)
-    public Result getMessage(Long id) {
-        try {
-            AbstractMessage message = MessagingRepository.getMessage(id, request().username());
-            return ok(JsonUtil.toJson(message));
-        } catch (NotAuthorizedException e) {
-            return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage()));
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND,
-                    "The message could not be found.", id));
-        }
+    public CompletionStage<Result> getMessage(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                AbstractMessage message = MessagingRepository.getMessage(id, request().username());
+                return ok(JsonUtil.toJson(message));
+            } catch (NotAuthorizedException e) {
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage()));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND,
+                        "The message could not be found.", id));
+            }
+        }, dbContext.current());
     }
 
     /**
@@ -51,23 +89,28 @@ public class MessagingController extends Controller {
      */
     @Security.Authenticated(ActionAuthenticator.class)
     @BodyParser.Of(BodyParser.Json.class)
-    public Result createMessage() {
-        try {
-            AbstractMessage msg = MessagingRepository.createMessage(request().username(), request().body().asJson());
-            return ok(JsonUtil.prepareJsonStatus(OK, "Message has been created.", msg.getId()));
-        } catch (InvalidInputException e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
-        }
+    public CompletionStage<Result> createMessage() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                AbstractMessage msg = MessagingRepository.createMessage(request().username(), request().body().asJson());
+                broadcaster.publish(msg);
+                return ok(JsonUtil.prepareJsonStatus(OK, "Message has been created.", msg.getId()));
+            } catch (InvalidInputException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            }
+        }, dbContext.current());
     }
 
     @Security.Authenticated(ActionAuthenticator.class)
-    public Result deleteMessage(Long id) {
-        try {
-            MessagingRepository.deleteMessage(id, request().username());
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND,
-                    "The message could not be found.", id));
-        }
-        return noContent();
+    public CompletionStage<Result> deleteMessage(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                MessagingRepository.deleteMessage(id, request().username());
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND,
+                        "The message could not be found.", id));
+            }
+            return noContent();
+        }, dbContext.current());
     }
 }
\ No newline at end of file
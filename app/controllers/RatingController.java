@@ -7,6 +7,7 @@ import play.mvc.Controller;
 import play.mvc.Result;
 import play.mvc.Security;
 import repositories.RatingRepository;
+import services.DatabaseExecutionContext;
 import util.ActionAuthenticator;
 import util.JsonKeys;
 import util.JsonUtil;
@@ -16,14 +17,24 @@ import util.exceptions.InvalidInputException;
 import util.exceptions.NotAuthorizedException;
 import util.exceptions.ObjectNotFoundException;
 
+import javax.inject.Inject;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 
 /**
  * @author Fabian Widmann
  */
 public class RatingController extends Controller {
+    private final DatabaseExecutionContext dbContext;
+
+    @Inject
+    public RatingController(DatabaseExecutionContext dbContext) {
+        this.dbContext = dbContext;
+    }
+
     /**
      * Returns a list of all Ratings per default. When needed, the caller can pre-filter the list via:
      * {@link RequestKeys#FLASHCARD_RATING}, {@link RequestKeys#ANSWER_RATING}, {@link RequestKeys#ANSWER_ID},
@@ -31,10 +42,16 @@ public class RatingController extends Controller {
      *
      * @return a (filtered) list of Ratings
      */
-    public Result getRatingList() {
-        Map<String, String[]> urlParams = Controller.request().queryString();
-        List<Rating> ratingList = RatingRepository.getRatings(urlParams);
-        return ok(JsonUtil.toJson(ratingList));
+    public CompletionStage<Result> getRatingList() {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<String, String[]> urlParams = Controller.request().queryString();
+            try {
+                List<Rating> ratingList = RatingRepository.getRatings(urlParams);
+                return ok(JsonUtil.toJson(ratingList));
+            } catch (InvalidInputException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            }
+        }, dbContext.current());
     }
 
     /**
@@ -43,13 +60,15 @@ public class RatingController extends Controller {
      * @param id of our rating
      * @return either the card or a notfound with an error status
      */
-    public Result getRating(long id) {
-        try {
-            Rating card = RatingRepository.getRating(id);
-            return ok(JsonUtil.toJson(card));
-        } catch (ObjectNotFoundException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, e.getMessage(), e.getObjectId()));
-        }
+    public CompletionStage<Result> getRating(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Rating card = RatingRepository.getRating(id);
+                return ok(JsonUtil.toJson(card));
+            } catch (ObjectNotFoundException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, e.getMessage(), e.getObjectId()));
+            }
+        }, dbContext.current());
     }
 
     /**
@@ -59,29 +78,31 @@ public class RatingController extends Controller {
      */
     @Security.Authenticated(ActionAuthenticator.class)
     @BodyParser.Of(BodyParser.Json.class)
-    public Result addRating() {
-        try {
-            JsonNode json = request().body().asJson();
-            Rating rating = RatingRepository.addRating(json);
-            return created(JsonUtil.prepareJsonStatus(CREATED, "Rating has been created.", rating.getId()));
+    public CompletionStage<Result> addRating() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                JsonNode json = request().body().asJson();
+                Rating rating = RatingRepository.addRating(json);
+                return created(JsonUtil.prepareJsonStatus(CREATED, "Rating has been created.", rating.getId()));
 
-        } catch (DuplicateKeyException e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage(), e.getObjectId()));
-        } catch (InvalidInputException e) {
-            e.printStackTrace();
-            if (JsonKeys.debugging) {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS + " | cause: " + e.getCause()));
-            } else {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS));
+            } catch (DuplicateKeyException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage(), e.getObjectId()));
+            } catch (InvalidInputException e) {
+                e.printStackTrace();
+                if (JsonKeys.debugging) {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS + " | cause: " + e.getCause()));
+                } else {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS));
+                }
+            } catch (ObjectNotFoundException e) {
+                //Duplicate keys
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
             }
-        } catch (ObjectNotFoundException e) {
-            //Duplicate keys
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
-        }
+        }, dbContext.current());
     }
 
     /**
@@ -92,27 +113,29 @@ public class RatingController extends Controller {
      */
     @Security.Authenticated(ActionAuthenticator.class)
     @BodyParser.Of(BodyParser.Json.class)
-    public Result changeRating(Long id) {
-        JsonNode json = request().body().asJson();
-        try {
-            Rating rating = RatingRepository.changeRating(id, request().username(), json);
-            return ok(JsonUtil.prepareJsonStatus(OK, "Rating has been changed.", rating.getId()));
-        } catch (InvalidInputException e) {
-            e.printStackTrace();
-            if (JsonKeys.debugging && !e.getMessage().contains("did contain")) {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS + " | cause: " + e.getCause()));
-            } else {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS));
+    public CompletionStage<Result> changeRating(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            JsonNode json = request().body().asJson();
+            try {
+                Rating rating = RatingRepository.changeRating(id, request().username(), json);
+                return ok(JsonUtil.prepareJsonStatus(OK, "Rating has been changed.", rating.getId()));
+            } catch (InvalidInputException e) {
+                e.printStackTrace();
+                if (JsonKeys.debugging && !e.getMessage().contains("did contain")) {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS + " | cause: " + e.getCause()));
+                } else {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, "Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS));
+                }
+            } catch (Exception e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            } catch (NotAuthorizedException e) {
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
             }
-        } catch (Exception e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
-        } catch (NotAuthorizedException e) {
-            return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
-        }
+        }, dbContext.current());
     }
 
     /**
@@ -121,12 +144,14 @@ public class RatingController extends Controller {
      * @param id of a rating
      * @return noContent if successful, notFound if not found
      */
-    public Result deleteRating(Long id) {
-        try {
-            Rating rating = RatingRepository.deleteRating(id);
-            return noContent();
-        } catch (ObjectNotFoundException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, e.getMessage(), e.getObjectId()));
-        }
+    public CompletionStage<Result> deleteRating(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Rating rating = RatingRepository.deleteRating(id);
+                return noContent();
+            } catch (ObjectNotFoundException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, e.getMessage(), e.getObjectId()));
+            }
+        }, dbContext.current());
     }
 }
@@ -5,34 +5,50 @@ import play.Logger;
 import play.mvc.Controller;
 import play.mvc.Result;
 import repositories.TagRepository;
+import services.DatabaseExecutionContext;
 import util.JsonUtil;
+import util.JsonViews;
 import util.RequestKeys;
+import util.UrlParamHelper;
+import util.exceptions.InvalidInputException;
 import util.exceptions.ParameterNotSupportedException;
 
+import javax.inject.Inject;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 
 /**
  * @author Fabian Widmann
  */
 public class TagController extends Controller {
+    private final DatabaseExecutionContext dbContext;
+
+    @Inject
+    public TagController(DatabaseExecutionContext dbContext) {
+        this.dbContext = dbContext;
+    }
+
     /**
      * Returns a json list of all tags
      *
      * @return ok - contains a list of tags or an empty list
      */
-    public Result getTags() {
-        List<Tag> tagList = null;
-        try {
-            tagList = TagRepository.getTags();
-            return ok(JsonUtil.toJson(tagList));
-        } catch (ParameterNotSupportedException e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
-        }
+    public CompletionStage<Result> getTags() {
+        return CompletableFuture.supplyAsync(() -> {
+            List<Tag> tagList = null;
+            try {
+                tagList = TagRepository.getTags();
+                return ok(JsonUtil.toJson(tagList));
+            } catch (ParameterNotSupportedException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            }
 
+        }, dbContext.current());
     }
 
 
@@ -42,57 +58,82 @@ public class TagController extends Controller {
      * @param id of the tag
      * @return ok - and the card or notFound if the object with the given id does not exist
      */
-    public Result getTag(Long id) {
-        try {
-            Tag tag = TagRepository.getTag(id);
-            return ok(JsonUtil.toJson(tag));
+    public CompletionStage<Result> getTag(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Tag tag = TagRepository.getTag(id);
+                return ok(JsonUtil.toJson(tag));
 
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no tag with id=" + id + " exists."));
-        }
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no tag with id=" + id + " exists."));
+            }
+        }, dbContext.current());
     }
 
-    public Result getAttachedCards(Long id) {
-        try {
-            return ok(JsonUtil.toJson(TagRepository.getAttachedCards(id)));
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no tag with id=" + id + " exists."));
-        }
+    public CompletionStage<Result> getAttachedCards(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ok(JsonUtil.toJson(TagRepository.getAttachedCards(id)));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no tag with id=" + id + " exists."));
+            }
+        }, dbContext.current());
     }
 
     /**
      * get all cards attached to the tag. this is done by providing key value pairs via the query string.
+     * Tags are combined via ?mode=and (default, cards need every tag) or ?mode=or (cards need one of the tags),
+     * cards with tags given via ?excludeId=x or ?excludeName=y are removed from the result. Excluding tags without
+     * including one is rejected.
      *
      * @return appropriate Result containing the cards or error
      */
-    public Result getAttachedCardsByTags() {
-        List<Long> ids = new ArrayList<>();
-        List<String> names = new ArrayList<>();
-        try {
-            Controller.request().queryString().forEach(
-                    (String key, String[] values) -> {
-                        Logger.debug("k=" + key + " v=" + Arrays.toString(values));
-                        if (key.toLowerCase().contains(RequestKeys.GET_BY_ID)) {
-                            for (String value : values) {
-                                ids.add(Long.parseLong(value));
+    public CompletionStage<Result> getAttachedCardsByTags() {
+        return CompletableFuture.supplyAsync(() -> {
+            List<Long> ids = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            List<Long> excludedIds = new ArrayList<>();
+            List<String> excludedNames = new ArrayList<>();
+            try {
+                Controller.request().queryString().forEach(
+                        (String key, String[] values) -> {
+                            Logger.debug("k=" + key + " v=" + Arrays.toString(values));
+                            //the exclude keys contain id/name as well, thus they have to be checked first
+                            if (key.equalsIgnoreCase(RequestKeys.EXCLUDE_BY_ID)) {
+                                for (String value : values) {
+                                    excludedIds.add(Long.parseLong(value));
+                                }
+                            } else if (key.equalsIgnoreCase(RequestKeys.EXCLUDE_BY_NAME)) {
+                                Collections.addAll(excludedNames, values);
+                            } else if (key.toLowerCase().contains(RequestKeys.GET_BY_ID)) {
+                                for (String value : values) {
+                                    ids.add(Long.parseLong(value));
+                                }
+                            } else if (key.toLowerCase().contains(RequestKeys.GET_BY_NAME)) {
+                                Collections.addAll(names, values);
                             }
-                        }
-                        if (key.toLowerCase().contains(RequestKeys.GET_BY_NAME)) {
-                            Collections.addAll(names, values);
-                        }
-                    });
-            Logger.debug("names.size=" + names.size() + " || ids.size=" + ids.size());
-            if (ids.size() == 0 && names.size() == 0)
+                        });
+                Logger.debug("names.size=" + names.size() + " || ids.size=" + ids.size());
+                if (ids.size() == 0 && names.size() == 0 && excludedIds.size() == 0 && excludedNames.size() == 0)
+                    return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST,
+                            "This method does only work when ids and/or names of tags are passed via URL parameters '"
+                                    + RequestKeys.GET_BY_ID + "' or '" + RequestKeys.GET_BY_NAME + "' example: 'tags//cards?id=1&id=2&id=3...'"));
+
+                String mode = UrlParamHelper.getValue(RequestKeys.MODE);
+                if (mode != null && !mode.equalsIgnoreCase(RequestKeys.MODE_AND) && !mode.equalsIgnoreCase(RequestKeys.MODE_OR))
+                    return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST,
+                            "The parameter '" + RequestKeys.MODE + "' has to be '" + RequestKeys.MODE_AND + "' or '" + RequestKeys.MODE_OR + "'."));
+                boolean matchAll = mode == null || mode.equalsIgnoreCase(RequestKeys.MODE_AND);
+
+                return ok(JsonUtil.toJson(TagRepository.getCardsByTagArray(ids, names, excludedIds, excludedNames, matchAll), JsonViews.Summary.class));
+            } catch (NumberFormatException e) {
+                e.printStackTrace();
                 return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST,
                         "This method does only work when ids and/or names of tags are passed via URL parameters '"
                                 + RequestKeys.GET_BY_ID + "' or '" + RequestKeys.GET_BY_NAME + "' example: 'tags//cards?id=1&id=2&id=3...'"));
-
-            return ok(JsonUtil.toJson(TagRepository.getCardsByTagArray(ids, names)));
-        } catch (NumberFormatException e) {
-            e.printStackTrace();
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST,
-                    "This method does only work when ids and/or names of tags are passed via URL parameters '"
-                            + RequestKeys.GET_BY_ID + "' or '" + RequestKeys.GET_BY_NAME + "' example: 'tags//cards?id=1&id=2&id=3...'"));
-        }
+            } catch (InvalidInputException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            }
+        }, dbContext.current());
     }
 }
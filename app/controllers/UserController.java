@@ -9,37 +9,56 @@ import play.mvc.Controller;
 import play.mvc.Result;
 import play.mvc.Security;
 import repositories.UserRepository;
+import services.DatabaseExecutionContext;
 import util.ActionAuthenticator;
 import util.JsonKeys;
 import util.JsonUtil;
+import util.JsonViews;
 import util.exceptions.InvalidInputException;
 import util.exceptions.NotAuthorizedException;
 
+import javax.inject.Inject;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 public class UserController extends Controller {
+    private final DatabaseExecutionContext dbContext;
+
+    @Inject
+    public UserController(DatabaseExecutionContext dbContext) {
+        this.dbContext = dbContext;
+    }
 
     /**
      * Return all users in the database.
      *
      * @return HTTP Status OK with a list of all users.
      */
-    public Result getUserList() {
-        Map<String, String[]> urlParams = Controller.request().queryString();
-        List<User> users = UserRepository.getUsers(urlParams);
-        return ok(JsonUtil.toJson(users));
+    public CompletionStage<Result> getUserList() {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<String, String[]> urlParams = Controller.request().queryString();
+            try {
+                List<User> users = UserRepository.getUsers(urlParams);
+                return ok(JsonUtil.toJson(users));
+            } catch (InvalidInputException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            }
+        }, dbContext.current());
     }
 
 
-    public Result getUserGroups(Long id) {
-        try {
-            List<UserGroup> group = User.find.byId(id).getUserGroups();
-            return ok(JsonUtil.toJson(group));
-        } catch (NullPointerException e) {
-            e.printStackTrace();
-        }
-        return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, ""));
+    public CompletionStage<Result> getUserGroups(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                List<UserGroup> group = User.find.byId(id).getUserGroups();
+                return ok(JsonUtil.toJson(group));
+            } catch (NullPointerException e) {
+                e.printStackTrace();
+            }
+            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, ""));
+        }, dbContext.current());
     }
 
     /**
@@ -49,34 +68,36 @@ public class UserController extends Controller {
      */
     @Security.Authenticated(ActionAuthenticator.class)
     @BodyParser.Of(BodyParser.Json.class)
-    public Result updateUser(Long id) {
-        try {
-            JsonNode json = request().body().asJson();
-            Map<String, String[]> urlParams = Controller.request().queryString();
-            String updateMethod = request().method();
-
-            User u = UserRepository.changeUser(id, request().username(), json, urlParams, updateMethod);
-
-        } catch (NullPointerException e) {
-            e.printStackTrace();
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no user with the specified id exists.", id));
-        } catch (InvalidInputException e) {
-            e.printStackTrace();
-            if (JsonKeys.debugging) {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, e.getMessage() + " | cause: " + e.getCause()));
-            } else {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, e.getMessage()));
+    public CompletionStage<Result> updateUser(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                JsonNode json = request().body().asJson();
+                Map<String, String[]> urlParams = Controller.request().queryString();
+                String updateMethod = request().method();
+
+                User u = UserRepository.changeUser(id, request().username(), json, urlParams, updateMethod);
+
+            } catch (NullPointerException e) {
+                e.printStackTrace();
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no user with the specified id exists.", id));
+            } catch (InvalidInputException e) {
+                e.printStackTrace();
+                if (JsonKeys.debugging) {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, e.getMessage() + " | cause: " + e.getCause()));
+                } else {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, e.getMessage()));
+                }
+            } catch (NotAuthorizedException e) {
+                e.printStackTrace();
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
             }
-        } catch (NotAuthorizedException e) {
-            e.printStackTrace();
-            return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
-        }
-        return ok(JsonUtil.prepareJsonStatus(OK, "User has been changed.", id));
+            return ok(JsonUtil.prepareJsonStatus(OK, "User has been changed.", id));
 
+        }, dbContext.current());
     }
 
     /**
@@ -85,13 +106,46 @@ public class UserController extends Controller {
      * @param id of the user
      * @return HTTP Status Result OK if found or NOT_FOUND if not found.
      */
-    public Result getUser(Long id) {
-        User u = UserRepository.findById(id);
-        if (u == null)
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no user with the specified id exists.", id));
+    public CompletionStage<Result> getUser(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            User u = UserRepository.findById(id);
+            if (u == null)
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no user with the specified id exists.", id));
+
+            if (JsonKeys.debugging) if (JsonKeys.debugging) Logger.debug(u + "| USER_NAME Key=" + JsonKeys.USER_NAME);
+            return ok(JsonUtil.toJson(u));
+        }, dbContext.current());
+    }
 
-        if (JsonKeys.debugging) if (JsonKeys.debugging) Logger.debug(u + "| USER_NAME Key=" + JsonKeys.USER_NAME);
-        return ok(JsonUtil.toJson(u));
+    /**
+     * Returns the users with the highest ratings, supports <code>?limit=n</code>.
+     *
+     * @return HTTP Status OK with the users and their ranks, BAD_REQUEST if the limit is invalid
+     */
+    public CompletionStage<Result> getLeaderboard() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ok(JsonUtil.toJson(UserRepository.getLeaderboard(), JsonViews.Summary.class));
+            } catch (InvalidInputException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
+            }
+        }, dbContext.current());
+    }
+
+    /**
+     * Returns the rank of the user with a specific ID in the leaderboard.
+     *
+     * @param id of the user
+     * @return HTTP Status OK with the user and its rank or NOT_FOUND if the user does not exist
+     */
+    public CompletionStage<Result> getUserRank(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ok(JsonUtil.toJson(UserRepository.getRank(id), JsonViews.Summary.class));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, no user with the specified id exists.", id));
+            }
+        }, dbContext.current());
     }
 
     /**
@@ -100,13 +154,15 @@ public class UserController extends Controller {
      * @param email of the user
      * @return OK when found, NOT_FOUND if it doesnt exist.
      */
-    public Result getUserByEmail(String email) {
-        // Find a task by ID
-        User u = UserRepository.findUserByEmail(email);
-        if (u == null)
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND,
-                    "The user with the email=" + email + " could not be found."));
-        return ok(JsonUtil.toJson(u));
+    public CompletionStage<Result> getUserByEmail(String email) {
+        return CompletableFuture.supplyAsync(() -> {
+            // Find a task by ID
+            User u = UserRepository.findUserByEmail(email);
+            if (u == null)
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND,
+                        "The user with the email=" + email + " could not be found."));
+            return ok(JsonUtil.toJson(u));
+        }, dbContext.current());
     }
 
 
@@ -117,16 +173,18 @@ public class UserController extends Controller {
      * @return ok if found else not found or unauthorized
      */
     @Security.Authenticated(ActionAuthenticator.class)
-    public Result deleteUser(Long id) {
-        try {
-            UserRepository.deleteUserById(id, request().username());
-
-            return ok(JsonUtil.prepareJsonStatus(OK, "The user has been deleted. All produced content now will be unlinked from this account (author set to null).", id));
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, user does not exist.", id));
-        } catch (NotAuthorizedException e) {
-            return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
-        }
+    public CompletionStage<Result> deleteUser(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                UserRepository.deleteUserById(id, request().username());
+
+                return ok(JsonUtil.prepareJsonStatus(OK, "The user has been deleted. All produced content now will be unlinked from this account (author set to null).", id));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, user does not exist.", id));
+            } catch (NotAuthorizedException e) {
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
+            }
+        }, dbContext.current());
     }
 
     /**
@@ -136,33 +194,35 @@ public class UserController extends Controller {
      * @return appropriate response depending on errors or ok with user id.
      */
     @BodyParser.Of(BodyParser.Json.class)
-    public Result addUser() {
-        JsonNode json = request().body().asJson();
-        User u;
-        try {
-            u = UserRepository.createUser(json);
-        } catch (InvalidInputException e) {
-            return badRequest(JsonUtil
-                    .prepareJsonStatus(
-                            BAD_REQUEST,
-                            e.getMessage()));
-        } catch (NumberFormatException e) {
-            e.printStackTrace();
-            return internalServerError(JsonUtil
-                    .prepareJsonStatus(
-                            INTERNAL_SERVER_ERROR,
-                            "Error in PasswordUtil."));
-        } catch (IllegalArgumentException e) {
-            return badRequest(JsonUtil
-                    .prepareJsonStatus(
-                            BAD_REQUEST,
-                            "Body did contain elements that are not allowed/expected. A user can contain: " + JsonKeys.USER_JSON_ELEMENTS));
-        } catch (Exception e) {
-            e.printStackTrace();
-            return forbidden(JsonUtil.prepareJsonStatus(FORBIDDEN,
-                    "The user could not be created, a user group has to be set via PATCH or PUT. It may not be content of POST."));
-        }
-        return created(JsonUtil.prepareJsonStatus(CREATED, "User has been created.", u.getId()));
+    public CompletionStage<Result> addUser() {
+        return CompletableFuture.supplyAsync(() -> {
+            JsonNode json = request().body().asJson();
+            User u;
+            try {
+                u = UserRepository.createUser(json);
+            } catch (InvalidInputException e) {
+                return badRequest(JsonUtil
+                        .prepareJsonStatus(
+                                BAD_REQUEST,
+                                e.getMessage()));
+            } catch (NumberFormatException e) {
+                e.printStackTrace();
+                return internalServerError(JsonUtil
+                        .prepareJsonStatus(
+                                INTERNAL_SERVER_ERROR,
+                                "Error in PasswordUtil."));
+            } catch (IllegalArgumentException e) {
+                return badRequest(JsonUtil
+                        .prepareJsonStatus(
+                                BAD_REQUEST,
+                                "Body did contain elements that are not allowed/expected. A user can contain: " + JsonKeys.USER_JSON_ELEMENTS));
+            } catch (Exception e) {
+                e.printStackTrace();
+                return forbidden(JsonUtil.prepareJsonStatus(FORBIDDEN,
+                        "The user could not be created, a user group has to be set via PATCH or PUT. It may not be content of POST."));
+            }
+            return created(JsonUtil.prepareJsonStatus(CREATED, "User has been created.", u.getId()));
+        }, dbContext.current());
     }
 
 }
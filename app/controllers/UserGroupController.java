@@ -8,17 +8,28 @@ import play.mvc.Controller;
 import play.mvc.Result;
 import play.mvc.Security;
 import repositories.UserGroupRepository;
+import services.DatabaseExecutionContext;
 import util.ActionAuthenticator;
 import util.JsonKeys;
 import util.JsonUtil;
+import util.JsonViews;
 import util.exceptions.InvalidInputException;
 import util.exceptions.NotAuthorizedException;
 import util.exceptions.ObjectNotFoundException;
 import util.exceptions.PartiallyModifiedException;
 
+import javax.inject.Inject;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 public class UserGroupController extends Controller {
+    private final DatabaseExecutionContext dbContext;
+
+    @Inject
+    public UserGroupController(DatabaseExecutionContext dbContext) {
+        this.dbContext = dbContext;
+    }
 
     /**
      * Returns all groups in the JSON format. Optional URL Paramerer is "?empty" which can either be true or false and
@@ -26,38 +37,44 @@ public class UserGroupController extends Controller {
      *
      * @return ok including a json node that contains all groups
      */
-    public Result getUserGroupList() {
-
-        Map<String, String[]> urlParams = Controller.request().queryString();
-        try {
-            return ok(JsonUtil.toJson(UserGroupRepository.getGroups(urlParams)));
-
-        } catch (NumberFormatException e) {
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Error while parsing the specified numbers, please recheck your request."));
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND,
-                    "Filtering by unkown user failed, re-check your request params."));
-        }
+    public CompletionStage<Result> getUserGroupList() {
+        return CompletableFuture.supplyAsync(() -> {
+
+            Map<String, String[]> urlParams = Controller.request().queryString();
+            try {
+                return ok(JsonUtil.toJson(UserGroupRepository.getGroups(urlParams)));
+
+            } catch (NumberFormatException e) {
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, "Error while parsing the specified numbers, please recheck your request."));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND,
+                        "Filtering by unkown user failed, re-check your request params."));
+            }
+        }, dbContext.current());
     }
 
-    public Result getDecksFromGroup(Long id) {
-        try {
-            return ok(JsonUtil.toJson(UserGroupRepository.getDecks(id)));
+    public CompletionStage<Result> getDecksFromGroup(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ok(JsonUtil.toJson(UserGroupRepository.getDecks(id), JsonViews.Summary.class));
 
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND,
-                    "The group with the id=" + id + " could not be found."));
-        }
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND,
+                        "The group with the id=" + id + " could not be found."));
+            }
+        }, dbContext.current());
     }
 
-    public Result getUsersInUserGroup(Long id) {
-        try {
-            return ok(JsonUtil.toJson(UserGroupRepository.getUsers(id)));
+    public CompletionStage<Result> getUsersInUserGroup(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ok(JsonUtil.toJson(UserGroupRepository.getUsers(id)));
 
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND,
-                    "The group with the id=" + id + " could not be found."));
-        }
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND,
+                        "The group with the id=" + id + " could not be found."));
+            }
+        }, dbContext.current());
     }
 
     /**
@@ -66,13 +83,15 @@ public class UserGroupController extends Controller {
      * @param id - GroupID of the group we want to get.
      * @return ok plus the group or notFound when the group does not exist.
      */
-    public Result getUserGroup(long id) {
-        UserGroup group = UserGroupRepository.getGroup(id);
-        if (group == null)
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND,
-                    "The group with the id=" + id + " could not be found."));
-
-        return ok(JsonUtil.toJson(group));
+    public CompletionStage<Result> getUserGroup(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            UserGroup group = UserGroupRepository.getGroup(id);
+            if (group == null)
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND,
+                        "The group with the id=" + id + " could not be found."));
+
+            return ok(JsonUtil.toJson(group));
+        }, dbContext.current());
     }
 
     /**
@@ -86,38 +105,40 @@ public class UserGroupController extends Controller {
      */
     @Security.Authenticated(ActionAuthenticator.class)
     @BodyParser.Of(BodyParser.Json.class)
-    public Result updateUserGroup(Long id) {
-        if (JsonKeys.debugging) Logger.debug(request().method());
-        JsonNode json = request().body().asJson();
-        Map<String, String[]> urlParams = Controller.request().queryString();
-        String updateMethod = request().method();
-        UserGroup userGroup;
-        try {
-            userGroup = UserGroupRepository.changeUserGroup(id, request().username(), json, urlParams, updateMethod);
-        } catch (IllegalArgumentException e) {
-            return badRequest(JsonUtil
-                    .prepareJsonStatus(
-                            BAD_REQUEST, "Body did contain elements that are not allowed/expected. A group can contain: " + JsonKeys.GROUP_JSON_ELEMENTS));
-        } catch (NullPointerException e) {
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, group does not exist", id));
-        } catch (InvalidInputException e) {
-            //e.printStackTrace();
-            if (JsonKeys.debugging) {
+    public CompletionStage<Result> updateUserGroup(Long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (JsonKeys.debugging) Logger.debug(request().method());
+            JsonNode json = request().body().asJson();
+            Map<String, String[]> urlParams = Controller.request().queryString();
+            String updateMethod = request().method();
+            UserGroup userGroup;
+            try {
+                userGroup = UserGroupRepository.changeUserGroup(id, request().username(), json, urlParams, updateMethod);
+            } catch (IllegalArgumentException e) {
                 return badRequest(JsonUtil
                         .prepareJsonStatus(
-                                BAD_REQUEST, e.getMessage() + " | cause: " + e.getCause()));
-            } else {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, e.getMessage()));
+                                BAD_REQUEST, "Body did contain elements that are not allowed/expected. A group can contain: " + JsonKeys.GROUP_JSON_ELEMENTS));
+            } catch (NullPointerException e) {
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Error, group does not exist", id));
+            } catch (InvalidInputException e) {
+                //e.printStackTrace();
+                if (JsonKeys.debugging) {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, e.getMessage() + " | cause: " + e.getCause()));
+                } else {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, e.getMessage()));
+                }
+            } catch (PartiallyModifiedException e) {
+                return ok(JsonUtil.prepareJsonStatus(OK, e.getMessage()));
+            } catch (NotAuthorizedException e) {
+                return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
             }
-        } catch (PartiallyModifiedException e) {
-            return ok(JsonUtil.prepareJsonStatus(OK, e.getMessage()));
-        } catch (NotAuthorizedException e) {
-            return unauthorized(JsonUtil.prepareJsonStatus(UNAUTHORIZED, e.getMessage(), id));
-        }
 
-        return ok(JsonUtil.prepareJsonStatus(200, "Group has been successfully changed. " + userGroup, id));
+            return ok(JsonUtil.prepareJsonStatus(200, "Group has been successfully changed. " + userGroup, id));
+        }, dbContext.current());
     }
 
     /**
@@ -128,31 +149,33 @@ public class UserGroupController extends Controller {
      */
     @Security.Authenticated(ActionAuthenticator.class)
     @BodyParser.Of(BodyParser.Json.class)
-    public Result addUserGroup() {
-        JsonNode json = request().body().asJson();
-
-        UserGroup userGroup;
-        try {
-            userGroup = UserGroupRepository.addUserGroup(json);
-        } catch (IllegalArgumentException e) {
-            //e.printStackTrace();
-            if (JsonKeys.debugging) {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, e.getMessage() + " | cause: " + e.getCause()));
-            } else {
-                return badRequest(JsonUtil
-                        .prepareJsonStatus(
-                                BAD_REQUEST, e.getMessage()));
-            }
-        } catch (ObjectNotFoundException e) {
-            if (e.getObjectId() > 0) {
-                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage(), e.getObjectId()));
+    public CompletionStage<Result> addUserGroup() {
+        return CompletableFuture.supplyAsync(() -> {
+            JsonNode json = request().body().asJson();
+
+            UserGroup userGroup;
+            try {
+                userGroup = UserGroupRepository.addUserGroup(json);
+            } catch (IllegalArgumentException e) {
+                //e.printStackTrace();
+                if (JsonKeys.debugging) {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, e.getMessage() + " | cause: " + e.getCause()));
+                } else {
+                    return badRequest(JsonUtil
+                            .prepareJsonStatus(
+                                    BAD_REQUEST, e.getMessage()));
+                }
+            } catch (ObjectNotFoundException e) {
+                if (e.getObjectId() > 0) {
+                    return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage(), e.getObjectId()));
+                }
+                return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
             }
-            return badRequest(JsonUtil.prepareJsonStatus(BAD_REQUEST, e.getMessage()));
-        }
-        return created(JsonUtil.prepareJsonStatus(CREATED, "Usergroup has been created!", userGroup.getId()));
+            return created(JsonUtil.prepareJsonStatus(CREATED, "Usergroup has been created!", userGroup.getId()));
 
+        }, dbContext.current());
     }
 
 /*    */
@@ -181,17 +204,19 @@ public class UserGroupController extends Controller {
      * @return ok when deletion is successful, notFound if the user does not exist.
      */
     @Security.Authenticated(ActionAuthenticator.class)
-    public Result unSubscribe(long id) {
-        try {
-            boolean isUnsubscribed = UserGroupRepository.unSubscribe(id, request().username());
-            if (isUnsubscribed)
-                return ok(JsonUtil.prepareJsonStatus(OK, "User unsubscribed from the group.", id));
-            else
-                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "User is no member of this group.", id));
-        } catch (NullPointerException e) {
-            e.printStackTrace();
-            return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Group with the id could not be found", id));
-        }
+    public CompletionStage<Result> unSubscribe(long id) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                boolean isUnsubscribed = UserGroupRepository.unSubscribe(id, request().username());
+                if (isUnsubscribed)
+                    return ok(JsonUtil.prepareJsonStatus(OK, "User unsubscribed from the group.", id));
+                else
+                    return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "User is no member of this group.", id));
+            } catch (NullPointerException e) {
+                e.printStackTrace();
+                return notFound(JsonUtil.prepareJsonStatus(NOT_FOUND, "Group with the id could not be found", id));
+            }
+        }, dbContext.current());
     }
 
 
@@ -1,5 +1,6 @@
 package models;
 
+import com.avaje.ebean.Ebean;
 import com.avaje.ebean.Model;
 import com.avaje.ebean.annotation.CreatedTimestamp;
 import com.avaje.ebean.annotation.UpdatedTimestamp;
@@ -7,8 +8,11 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonView;
 import play.data.validation.Constraints;
 import util.JsonKeys;
+import util.JsonViews;
+import util.cache.LeaderboardCache;
 
 import javax.persistence.*;
 import java.net.URI;
@@ -42,6 +46,7 @@ public class Answer extends Model {
     @ManyToOne
     @JoinColumn(name = JsonKeys.USER_ID, referencedColumnName = JsonKeys.USER_ID)
     @JsonProperty(JsonKeys.AUTHOR)
+    @JsonView(JsonViews.Detail.class)
     private User author;
     @ManyToOne
     @JoinColumn(name = JsonKeys.ANSWER_CARD_ID)
@@ -141,6 +146,15 @@ public class Answer extends Model {
         this.update();
     }
 
+    /**
+     * Sets the card of an answer that was not saved yet, does not update the db.
+     *
+     * @param card the answer belongs to
+     */
+    void assignCard(FlashCard card) {
+        this.card = card;
+    }
+
     public Date getCreated() {
         return created;
     }
@@ -154,14 +168,27 @@ public class Answer extends Model {
     }
 
     /**
-     * Adds the given rating to the current rating, updates this instance and calls the function on the corresponding user.
+     * Adds the given rating to the rating of this answer and its author. Both are changed with atomic increments in one
+     * transaction instead of read-modify-write updates, thus concurrent votes are never lost. This instance is reloaded
+     * afterwards to show the new rating, unsaved changes of it are discarded. The leaderboard is adjusted after the
+     * commit.
      *
      * @param ratingModifier - describes the value that is added/subtracted from the current rating
      */
     public void updateRating(int ratingModifier) {
-        this.rating += ratingModifier;
-        this.update();
-        //update user as well, work on the newest data from the db, not our local reference.
-        User.find.byId(author.getId()).updateRating(ratingModifier);
+        Long authorId = author == null ? null : author.getId();
+        long leaderboardLoads = LeaderboardCache.getLoads();
+        Ebean.execute(() -> {
+            Ebean.createSqlUpdate("update answer set " + JsonKeys.RATING + " = " + JsonKeys.RATING + " + :modifier where "
+                    + JsonKeys.ANSWER_ID + " = :id")
+                    .setParameter("modifier", ratingModifier)
+                    .setParameter("id", id)
+                    .execute();
+            User.incrementRating(authorId, ratingModifier);
+        });
+        //only committed ratings are ranked, a rolled back vote must not move the author on the leaderboard
+        if (authorId != null)
+            LeaderboardCache.adjust(authorId, ratingModifier, leaderboardLoads);
+        refresh();
     }
 }
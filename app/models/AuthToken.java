@@ -1,17 +1,16 @@
 package models;
 
+import com.avaje.ebean.Ebean;
 import com.avaje.ebean.Model;
+import com.avaje.ebean.SqlUpdate;
 import com.avaje.ebean.annotation.CreatedTimestamp;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import play.Logger;
 import util.JsonKeys;
+import util.crypt.TokenIssuer;
 
 import javax.persistence.*;
-import java.io.UnsupportedEncodingException;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.util.Base64;
 import java.util.Date;
 
 /**
@@ -39,48 +38,29 @@ public class AuthToken extends Model {
     private Date created;
 
     /**
-     * Create a new auth token, make sure it is unique.
+     * Create a new auth token, the token string is unique by construction, see {@link TokenIssuer}.
      *
      * @param user - the token belongs to this user.
      */
     public AuthToken(User user) {
         this.user = user;
-        //create new tokens while we find that it is already in use. Should not happen theoretically.
-        Logger.debug("Constructor of Authtoken for user=" + user);
-        do {
-            try {
-                token = nextBase64String(32);
-                Logger.debug("Authtoken generated: " + token);
-
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
-            }
-        } while (AuthToken.find.where().eq(JsonKeys.TOKEN, token).findUnique() != null);
+        this.token = TokenIssuer.nextToken();
+        Logger.debug("Authtoken generated for user=" + user);
     }
 
     /**
-     * Returns one random sequence of characters of length n in UTF-8.
+     * Deletes up to limit tokens that were created before the cutoff with one statement.
      *
-     * @param n length of the returned String
-     * @return random sequence of characters
-     * @throws UnsupportedEncodingException if encoding isnt supported.
+     * @param cutoff tokens created before are deleted
+     * @param limit  maximum number of deleted rows
+     * @return number of deleted tokens
      */
-    private String nextBase64String(int n) throws UnsupportedEncodingException {
-        SecureRandom csprng = null;
-        try {
-            csprng = SecureRandom.getInstance("SHA1PRNG");
-            Logger.debug("Using SHA1PRNG.");
-
-        } catch (NoSuchAlgorithmException e) {
-            Logger.debug("Falling back to normal SecureRandom.");
-            csprng = new SecureRandom();
-        }
-        // NIST SP800-90A recommends a seed length of 440 bits (i.e. 55 bytes)
-        csprng.setSeed(csprng.generateSeed(55));
-        byte[] bytes = new byte[n];
-        csprng.nextBytes(bytes);
-        byte[] encoded = Base64.getUrlEncoder().encode(bytes);
-        return new String(encoded, "UTF-8");
+    public static int deleteCreatedBefore(Date cutoff, int limit) {
+        SqlUpdate delete = Ebean.createSqlUpdate("delete from " + JsonKeys.AUTH_TOKEN_TABLE_NAME + " where "
+                + JsonKeys.DATE_CREATED + " < :cutoff limit :limit");
+        delete.setParameter("cutoff", cutoff);
+        delete.setParameter("limit", limit);
+        return delete.execute();
     }
 
     public Long getId() {
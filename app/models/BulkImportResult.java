@@ -0,0 +1,75 @@
+package models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import util.JsonKeys;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Outcome of a bulk import of cards. Contains the ids of the created cards in the order of the request and one
+ *         error per element that was rejected, referenced by its index in the request (line for ndjson). This class is
+ *         not persisted.
+ */
+@JsonPropertyOrder({JsonKeys.BULK_CREATED, JsonKeys.BULK_ERRORS})
+public class BulkImportResult {
+    @JsonProperty(JsonKeys.BULK_CREATED)
+    private final List<Long> created = new ArrayList<>();
+    @JsonProperty(JsonKeys.BULK_ERRORS)
+    private final List<ItemError> errors = new ArrayList<>();
+
+    public List<Long> getCreated() {
+        return created;
+    }
+
+    public List<ItemError> getErrors() {
+        return errors;
+    }
+
+    public void addCreated(long id) {
+        created.add(id);
+    }
+
+    public void addError(int index, String description) {
+        errors.add(new ItemError(index, description));
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BulkImportResult{" +
+                "created=" + created.size() +
+                ", errors=" + errors.size() +
+                '}';
+    }
+
+    /**
+     * Reason why one element of the request was not imported.
+     */
+    @JsonPropertyOrder({JsonKeys.BULK_INDEX})
+    public static class ItemError {
+        @JsonProperty(JsonKeys.BULK_INDEX)
+        private final int index;
+        @JsonProperty(JsonKeys.DESCRIPTION)
+        private final String description;
+
+        public ItemError(int index, String description) {
+            this.index = index;
+            this.description = description;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+}
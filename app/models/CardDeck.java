@@ -4,9 +4,11 @@ import com.avaje.ebean.Model;
 import com.avaje.ebean.annotation.PrivateOwned;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonView;
 import play.Logger;
 import play.data.validation.Constraints;
 import util.JsonKeys;
+import util.JsonViews;
 
 import javax.persistence.*;
 import java.util.List;
@@ -30,6 +32,7 @@ public class CardDeck extends Model {
     @ManyToOne
     @JoinColumn(name = JsonKeys.CARDDECK_GROUP)
     @JsonProperty(JsonKeys.CARDDECK_GROUP)
+    @JsonView(JsonViews.Detail.class)
     private UserGroup userGroup;
     @Constraints.Required
     @Column(name = JsonKeys.CARDDECK_NAME)
@@ -40,7 +43,7 @@ public class CardDeck extends Model {
     @JsonProperty(JsonKeys.CARDDECK_DESCRIPTION)
     private String description;
     //this cascades from the "tag" to "join_cards_tag" - e.g. tag.delete -> delete evey entry with tag.id
-    @OneToMany(/*cascade = CascadeType.ALL,*/ mappedBy = JsonKeys.FLASHCARD_DECK, fetch = FetchType.EAGER)
+    @OneToMany(/*cascade = CascadeType.ALL,*/ mappedBy = JsonKeys.FLASHCARD_DECK)
     @PrivateOwned
     @JsonProperty(JsonKeys.CARDDECK_CARDS)
     @JsonIgnore
@@ -0,0 +1,89 @@
+package models;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import util.JsonKeys;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Lightweight, read-only projection of a {@link CardDeck} that is used by the deck listing endpoints. It only
+ *         contains the scalar values of the deck and the aggregated number of cards and the date of the last change of
+ *         one of its cards. The cards themselves are only contained if the caller asked for them via ?expand=cards.
+ *         This class is not persisted.
+ */
+@JsonPropertyOrder({JsonKeys.CARDDECK_ID})
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CardDeckSummary {
+    @JsonProperty(JsonKeys.CARDDECK_ID)
+    private final long id;
+    @JsonProperty(JsonKeys.CARDDECK_NAME)
+    private final String name;
+    @JsonProperty(JsonKeys.CARDDECK_DESCRIPTION)
+    private final String description;
+    @JsonProperty(JsonKeys.CARDDECK_VISIBLE)
+    private final boolean visible;
+    @JsonProperty(JsonKeys.CARDDECK_CARD_COUNT)
+    private final int cardCount;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss z")
+    @JsonProperty(JsonKeys.DATE_UPDATED)
+    private final Date lastUpdated;
+    @JsonProperty(JsonKeys.CARDDECK_CARDS)
+    private List<FlashCard> cards;
+
+    public CardDeckSummary(CardDeck deck, int cardCount, Date lastUpdated) {
+        this.id = deck.getId();
+        this.name = deck.getName();
+        this.description = deck.getDescription();
+        this.visible = deck.isVisible();
+        this.cardCount = cardCount;
+        this.lastUpdated = lastUpdated;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    public int getCardCount() {
+        return cardCount;
+    }
+
+    public Date getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public List<FlashCard> getCards() {
+        return cards;
+    }
+
+    public void setCards(List<FlashCard> cards) {
+        this.cards = cards;
+    }
+
+    @Override
+    public String toString() {
+        return "CardDeckSummary{" +
+                "id=" + id +
+                ", name='" + name + '\'' +
+                ", cardCount=" + cardCount +
+                ", lastUpdated=" + lastUpdated +
+                '}';
+    }
+}
@@ -30,7 +30,7 @@ public class Category extends Model {
     @Constraints.MaxLength(30)
     private String name;
     @Column(name = JsonKeys.CATEGORY_DECK)
-    @OneToMany(mappedBy = JsonKeys.CARDDECK_CATEGORY, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = JsonKeys.CARDDECK_CATEGORY)
     @JsonProperty(JsonKeys.CATEGORY_DECK)
     @JsonIgnore
     private List<CardDeck> cardDecks;
@@ -39,6 +39,9 @@ public class Category extends Model {
 
     @ManyToOne
     private Category parent;
+    @Column(name = JsonKeys.CATEGORY_PATH)
+    @JsonIgnore
+    private String path;
 
     public Category(String name) {
         this.name = name;
@@ -103,6 +106,20 @@ public class Category extends Model {
         this.parent = parent;
     }
 
+    /**
+     * The path is maintained by the {@link repositories.CategoryRepository} whenever a category is created or moved.
+     *
+     * @return ids from the root down to this category, e.g. /1/4/9/
+     */
+    @JsonIgnore
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
     @Override
     public String toString() {
         return "Category{" +
@@ -3,6 +3,7 @@
  */
 package models;
 
+import com.avaje.ebean.Ebean;
 import com.avaje.ebean.Model;
 import com.avaje.ebean.annotation.CreatedTimestamp;
 import com.avaje.ebean.annotation.PrivateOwned;
@@ -11,9 +12,13 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonView;
 import models.statistics.CardStatistics;
+import models.statistics.StudySchedule;
 import play.Logger;
 import util.JsonKeys;
+import util.JsonViews;
+import util.cache.LeaderboardCache;
 
 import javax.persistence.*;
 import java.util.Date;
@@ -119,6 +124,27 @@ public class FlashCard extends Model {
         this.multipleChoice = multipleChoice;
     }
 
+    /**
+     * Creates a new card in the given deck without touching the database. The question and the answers are inserted
+     * together with the card via cascade when it is saved, this allows saving many cards in one batch.
+     *
+     * @param author         of the card
+     * @param question       unsaved question
+     * @param answers        unsaved answers
+     * @param deck           the card belongs to
+     * @param multipleChoice flag
+     */
+    public FlashCard(User author, Question question, List<Answer> answers, CardDeck deck, boolean multipleChoice) {
+        this.author = author;
+        this.question = question;
+        this.answers = answers;
+        for (Answer a : answers) {
+            a.assignCard(this);
+        }
+        this.deck = deck;
+        this.multipleChoice = multipleChoice;
+    }
+
     public FlashCard(FlashCard requestObject) {
         this.author = requestObject.getAuthor();
         this.answers = requestObject.getAnswers();
@@ -261,6 +287,7 @@ public class FlashCard extends Model {
         }
     }
 
+    @JsonView(JsonViews.Detail.class)
     public List<Tag> getTags() {
 //        for (Tag t: tags) {
 //            System.out.print(t.getName());
@@ -273,15 +300,28 @@ public class FlashCard extends Model {
     }
 
     /**
-     * Adds the given rating to the current rating, updates this instance and calls the function on the corresponding user.
+     * Adds the given rating to the rating of this card and its author. Both are changed with atomic increments in one
+     * transaction instead of read-modify-write updates, thus concurrent votes are never lost. This instance is reloaded
+     * afterwards to show the new rating, unsaved changes of it are discarded. The leaderboard is adjusted after the
+     * commit.
      *
-     * @param ratingModifier
+     * @param ratingModifier - describes the value that is added/subtracted from the current rating
      */
     public void updateRating(int ratingModifier) {
-        this.rating += ratingModifier;
-        this.update();
-        //update user as well, work on the newest data from the db, not our local reference.
-        User.find.byId(author.getId()).updateRating(ratingModifier);
+        Long authorId = author == null ? null : author.getId();
+        long leaderboardLoads = LeaderboardCache.getLoads();
+        Ebean.execute(() -> {
+            Ebean.createSqlUpdate("update flashCard set " + JsonKeys.RATING + " = " + JsonKeys.RATING + " + :modifier where "
+                    + JsonKeys.FLASHCARD_ID + " = :id")
+                    .setParameter("modifier", ratingModifier)
+                    .setParameter("id", id)
+                    .execute();
+            User.incrementRating(authorId, ratingModifier);
+        });
+        //only committed ratings are ranked, a rolled back vote must not move the author on the leaderboard
+        if (authorId != null)
+            LeaderboardCache.adjust(authorId, ratingModifier, leaderboardLoads);
+        refresh();
     }
 
     @Override
@@ -301,6 +341,7 @@ public class FlashCard extends Model {
         List<CardStatistics> cardStatisticsList=CardStatistics.finder.where().eq(JsonKeys.STATISTICS_CARD,this).findList();
         Logger.debug("statistics:"+ cardStatisticsList);
         cardStatisticsList.forEach(cardStatistics -> cardStatistics.delete());
+        StudySchedule.deleteByCard(id);
         super.delete();
     }
 }
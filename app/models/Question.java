@@ -3,9 +3,11 @@ package models;
 import com.avaje.ebean.Model;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonView;
 import com.fasterxml.jackson.databind.JsonNode;
 import play.data.validation.Constraints;
 import util.JsonKeys;
+import util.JsonViews;
 
 import javax.persistence.*;
 import java.net.URI;
@@ -38,6 +40,7 @@ public class Question extends Model {
     @ManyToOne
     @JoinColumn(name = JsonKeys.USER_ID, referencedColumnName = JsonKeys.USER_ID)
     @JsonProperty(JsonKeys.AUTHOR)
+    @JsonView(JsonViews.Detail.class)
     private User author;
 
     public Question(String questionText, User author) {
@@ -0,0 +1,40 @@
+package models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import util.JsonKeys;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         A user together with its position in the leaderboard, see {@link util.Leaderboard}. Users with the same
+ *         rating share the rank. This class is not persisted.
+ */
+@JsonPropertyOrder({JsonKeys.RANK})
+public class RankedUser {
+    @JsonProperty(JsonKeys.RANK)
+    private final int rank;
+    @JsonProperty(JsonKeys.RANK_USER)
+    private final User user;
+
+    public RankedUser(int rank, User user) {
+        this.rank = rank;
+        this.user = user;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    @Override
+    public String toString() {
+        return "RankedUser{" +
+                "rank=" + rank +
+                ", user=" + user +
+                '}';
+    }
+}
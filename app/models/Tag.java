@@ -1,5 +1,6 @@
 package models;
 
+import com.avaje.ebean.Ebean;
 import com.avaje.ebean.Model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -32,7 +33,8 @@ public class Tag extends Model implements Comparable<Tag> {
     @JsonProperty(JsonKeys.TAG_CARDS)
     @JsonIgnore
     private List<FlashCard> cards;
-    @Transient //not persistent.
+    //number of cards linked to this tag, kept in the table to allow sorting and paging in sql.
+    @Column(name = JsonKeys.TAG_USAGE_COUNT, nullable = false)
     @JsonIgnore
     private int usageCount;
 
@@ -81,6 +83,7 @@ public class Tag extends Model implements Comparable<Tag> {
         if (!cards.contains(flashCard)) {
             cards.add(flashCard);
             this.update();
+            incrementUsageCount(1);
             flashCard.addTag(this);
         }
     }
@@ -94,20 +97,30 @@ public class Tag extends Model implements Comparable<Tag> {
         if (cards.contains(flashCard)) {
             cards.remove(flashCard);
             this.update();
+            incrementUsageCount(-1);
         }
     }
 
+    /**
+     * Changes the usage count of this tag with one atomic update, concurrent link changes do not overwrite each other.
+     * The count never drops below 0.
+     *
+     * @param delta change of the count
+     */
+    private void incrementUsageCount(int delta) {
+        Ebean.createSqlUpdate("update tag set " + JsonKeys.TAG_USAGE_COUNT + " = greatest(" + JsonKeys.TAG_USAGE_COUNT
+                + " + :delta, 0) where " + JsonKeys.TAG_ID + " = :id")
+                .setParameter("delta", delta)
+                .setParameter("id", id)
+                .execute();
+    }
+
     @JsonIgnore
     public int getUsageCount() {
         return usageCount;
     }
 
 
-    public void updateUsageCount() {
-        usageCount = Tag.find.byId(id).getCards().size();
-    }
-
-
     @Override
     public String toString() {
         return "Tag{" +
@@ -1,26 +1,30 @@
 package models;
 
+import com.avaje.ebean.Ebean;
 import com.avaje.ebean.Model;
 import com.avaje.ebean.annotation.CreatedTimestamp;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
-import models.msg.AbstractMessage;
-import models.rating.Rating;
+import com.fasterxml.jackson.annotation.JsonView;
 import play.Logger;
 import play.data.validation.Constraints.Email;
 import play.data.validation.Constraints.MinLength;
 import play.data.validation.Constraints.Required;
 import util.JsonKeys;
+import util.JsonViews;
+import util.PermissionEngine;
 import util.UserOperations;
-import util.Permissions;
+import util.cache.AuthTokenCache;
+import util.cache.GroupMembershipCache;
+import util.cache.LeaderboardCache;
+import util.cache.TokenDenyList;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Objects;
 
 /**
  * @author Fabian Widmann
@@ -37,6 +41,7 @@ public class User extends Model {
     private Long id;
     @Lob //blob
     @JsonProperty(JsonKeys.USER_AVATAR)
+    @JsonView(JsonViews.Detail.class)
     private String avatar;
     @Required
     @MinLength(JsonKeys.USER_NAME_MIN_LENGTH)
@@ -57,10 +62,12 @@ public class User extends Model {
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss z")
     @CreatedTimestamp
     @JsonProperty(JsonKeys.DATE_CREATED)
+    @JsonView(JsonViews.Detail.class)
     private Date created;
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss z")
     @CreatedTimestamp
     @JsonProperty(JsonKeys.DATE_LAST_LOGIN)
+    @JsonView(JsonViews.Detail.class)
     @Column(name = JsonKeys.DATE_LAST_LOGIN)
     private Date lastLogin;
     @ManyToMany/*(cascade = CascadeType.ALL)*/
@@ -160,6 +167,7 @@ public class User extends Model {
             userGroups.addUser(this);
 		}*/
         this.update();
+        GroupMembershipCache.invalidate(id);
     }
 
     public List<AuthToken> getAuthTokenList() {
@@ -186,14 +194,20 @@ public class User extends Model {
      * Deletes all Tokens associated with this entity.
      */
     public void deleteTokens() {
-        authTokenList.forEach(token -> token.delete());
+        authTokenList.forEach(token -> {
+            AuthTokenCache.invalidate(token.getToken());
+            token.delete();
+        });
         authTokenList = new ArrayList<>();
+        TokenDenyList.denyUser(id);
         this.update();
     }
 
     public void deleteToken(AuthToken authToken) {
-        if (authTokenList.remove(authToken))
+        if (authTokenList.remove(authToken)) {
+            AuthTokenCache.invalidate(authToken.getToken());
             authToken.delete();
+        }
     }
 
     public String getAvatar() {
@@ -213,14 +227,23 @@ public class User extends Model {
     }
 
     /**
-     * Adds the given rating to the current rating, updates this instance.
+     * Adds the given rating to the rating of a user with one atomic update, concurrent votes on the content of the user
+     * neither read the row nor overwrite each other. It runs inside the transaction of the caller, who has to update the
+     * {@link LeaderboardCache} once the transaction committed.
      *
+     * @param userId         id of the user, nothing happens if it is null e.g. for content of deleted users
      * @param ratingModifier - describes the value that is added/subtracted from the current rating
      */
-    void updateRating(int ratingModifier) {
-        Logger.debug("Userid=" + id + " | " + new Date() + " Modifying rating from=" + rating + " by modifier=" + ratingModifier + " to=" + (rating + ratingModifier));
-        this.rating += ratingModifier;
-        this.update();
+    static void incrementRating(Long userId, int ratingModifier) {
+        if (userId == null)
+            return;
+        if (JsonKeys.debugging)
+            Logger.debug("Userid=" + userId + " | " + new Date() + " Modifying rating by modifier=" + ratingModifier);
+        Ebean.createSqlUpdate("update user set " + JsonKeys.RATING + " = " + JsonKeys.RATING + " + :modifier where "
+                + JsonKeys.USER_ID + " = :id")
+                .setParameter("modifier", ratingModifier)
+                .setParameter("id", userId)
+                .execute();
     }
 
 
@@ -262,6 +285,10 @@ public class User extends Model {
             Logger.debug(">> " + token);
             token.delete();
         });
+        AuthTokenCache.invalidateUser(id);
+        TokenDenyList.denyUser(id);
+        GroupMembershipCache.invalidate(id);
+        LeaderboardCache.remove(id);
 
         super.delete();
     }
@@ -270,6 +297,7 @@ public class User extends Model {
         if (userGroups.contains(userGroup)) {
             userGroups.remove(userGroup);
             this.update();
+            GroupMembershipCache.invalidate(id);
         }
     }
 
@@ -282,158 +310,14 @@ public class User extends Model {
      * @return true if the user can do the operation, else false.
      */
     public boolean hasPermission(UserOperations userOperation, Object manipulated) {
-        Logger.debug("Checking " + email + ": for (" + userOperation + "|" + manipulated + ")");
-
-
-        //Used class compare instead of instanceof due to performance reasons.
-        switch (userOperation) {
-            //message
-            case GET_MESSAGE:{
-                //receive single message
-                if (manipulated != null && manipulated instanceof AbstractMessage) {
-                    AbstractMessage msg = (AbstractMessage) manipulated;
-                    Logger.debug("is Recipient=" + (msg.getRecipient().getId() == this.getId()));
-
-                    //can delete own cards OR any cards when this user's rating is over a specific value
-                    if (msg.getRecipient().getId() == this.getId()) {
-                        return true;
-                    }
-                }
-                //receive list of messages
-                if(manipulated==null){
-
-                }
-            }
-            //category
-            case CREATE_CATEGORY: {
-                if (rating >= Permissions.RATING_CREATE_CATEGORY) {
-                    return true;
-                }
-            }
-            case DELETE_CATEGORY: {
-                if (rating >= Permissions.RATING_DELETE_CATEGORY) {
-                    return true;
-                }
-            }
-            case EDIT_CATEGORY: {
-                if (rating >= Permissions.RATING_EDIT_CATEGORY) {
-                    return true;
-                }
-            }
-            //cards
-            case DELETE_CARD: {
-                if (manipulated != null && manipulated.getClass() == FlashCard.class) {
-                    FlashCard card = (FlashCard) manipulated;
-                    Logger.debug("isAuthor=" + (card.getAuthor().getId()==this.id) + " | has Rating? " + (rating >= Permissions.RATING_DELETE_CARD));
-
-                    //can delete own cards OR any cards when this user's rating is over a specific value
-                    if (card.getAuthor().getId()==this.id || rating >= Permissions.RATING_DELETE_CARD) {
-                        return true;
-                    }
-                }
-            }
-            case EDIT_CARD: {
-                if (manipulated != null && manipulated.getClass() == FlashCard.class) {
-                    FlashCard card = (FlashCard) manipulated;
-                    Logger.debug("isAuthor=" + (card.getAuthor().getId() == this.id) + " | has Rating? " + (rating >= Permissions.RATING_EDIT_CARD));
-
-                    //can edit own cards OR any cards when this user's rating is over a specific value
-                    if (card.getAuthor().getId()==this.id || rating >= Permissions.RATING_EDIT_CARD) {
-                        return true;
-                    }
-                }
-            }
-            //answers
-            case DELETE_ANSWER: {
-                if (manipulated != null && manipulated.getClass() == Answer.class) {
-                    Answer answer = (Answer) manipulated;
-                    //can delete own cards OR any cards when this user's rating is over a specific value
-                    if (answer.getAuthor().getId()==this.id || rating >= Permissions.RATING_DELETE_ANSWER) {
-                        return true;
-                    }
-                }
-            }
-            case EDIT_ANSWER: {
-                if (manipulated != null && manipulated.getClass() == Answer.class) {
-                    Answer answer = (Answer) manipulated;
-                    //can edit own cards OR any cards when this user's rating is over a specific value
-                    if (answer.getAuthor().getId()==this.id || rating >= Permissions.RATING_EDIT_ANSWER) {
-                        return true;
-                    }
-                }
-            }
-            //deck - check users usergroups
-            case DELETE_DECK: {
-                if (manipulated != null && manipulated.getClass() == CardDeck.class) {
-                    CardDeck deck = (CardDeck) manipulated;
-                    UserGroup group = deck.getUserGroup();
-
-                    //can delete own cards OR any cards when this user's rating is over a specific value
-                    if (rating >= Permissions.RATING_DELETE_DECK || (group != null && group.getUsers().contains(this))) {
-                        return true;
-                    }
-                }
-            }
-            case EDIT_DECK: {
-                if (manipulated != null && manipulated.getClass() == CardDeck.class) {
-                    CardDeck deck = (CardDeck) manipulated;
-                    UserGroup group = deck.getUserGroup();
-                    Logger.debug("group: " + group.getUsers());
-                    //can delete own cards OR any cards when this user's rating is over a specific value
-
-                    if (rating >= Permissions.RATING_EDIT_DECK || group.getUsers().contains(this)) {
-                        return true;
-                    }
-                }
-            }
-            case EDIT_USER: {
-                if (manipulated != null && manipulated.getClass() == User.class) {
-                    User user = (User) manipulated;
-                    if (this.equals(user) || rating >= Permissions.RATING_EDIT_USER)
-                        return true;
-                }
-            }
-            case DELETE_USER: {
-                if (manipulated != null && manipulated.getClass() == User.class) {
-                    User user = (User) manipulated;
-                    if (this.equals(user))
-                        return true;
-                }
-            }
-            case EDIT_GROUP: {
-                if (manipulated != null && manipulated.getClass() == UserGroup.class) {
-                    UserGroup group = (UserGroup) manipulated;
-                    Logger.debug("First condition: " + group.getUsers().contains(this) + " | second condition: " + (rating > Permissions.RATING_EDIT_GROUP));
-                    group.getUsers().forEach(u -> Logger.debug("u=" + u));
-                    if (group.getUsers().contains(this) || rating > Permissions.RATING_EDIT_GROUP) {
-                        return true;
-                    }
-                }
-            }
-            case DELETE_GROUP: {
-                if (manipulated != null && manipulated instanceof UserGroup) {
-                    UserGroup group = (UserGroup) manipulated;
-                    if (group.getUsers().contains(this) || rating > Permissions.RATING_DELETE_GROUP) {
-                        return true;
-                    }
-                }
-            }
-            case EDIT_RATING: {
-                if (manipulated != null && (manipulated instanceof Rating)) {
-                    Rating ratingObj = (Rating) manipulated;
-                    if (Objects.equals(ratingObj.getAuthor().getId(), id)) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        return PermissionEngine.isAllowed(this, userOperation, manipulated);
     }
 
     public void addUserGroup(UserGroup newGroup) {
         if (!userGroups.contains(newGroup)) {
             userGroups.add(newGroup);
             this.save();
+            GroupMembershipCache.invalidate(id);
         }
     }
 }
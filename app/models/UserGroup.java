@@ -6,6 +6,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import play.data.validation.Constraints;
 import util.JsonKeys;
+import util.cache.GroupMembershipCache;
 
 import javax.persistence.*;
 import java.util.List;
@@ -102,6 +103,7 @@ public class UserGroup extends Model {
         if (!users.contains(user)) {
             users.add(user);
             this.save();
+            GroupMembershipCache.invalidate(user.getId());
         }
     }
 
@@ -120,6 +122,7 @@ public class UserGroup extends Model {
         if (users.contains(user)) {
             users.remove(user);
             this.update();
+            GroupMembershipCache.invalidate(user.getId());
         }
     }
 
@@ -132,6 +135,7 @@ public class UserGroup extends Model {
             System.out.println("Removing link to tag=" + user);
         }
         super.delete();
+        GroupMembershipCache.invalidateAll();
     }
 
     public List<CardDeck> getDecks() {
@@ -53,7 +53,6 @@ public class AnswerRating extends Rating {
     public void apply() {
         //System.out.println("Modifying rating of answer="+ ratedAnswer.getId()+": "+ratedAnswer.getRating()+" to: "+(ratedAnswer.getRating()+ratingModifier));
         ratedAnswer.updateRating(ratingModifier);
-        ratedAnswer.update();
     }
 
 
@@ -64,7 +63,6 @@ public class AnswerRating extends Rating {
     public void compensate() {
 //        System.out.println("Compensating rating of answer="+ ratedAnswer.getId()+": "+ratedAnswer.getRating()+" to: "+(ratedAnswer.getRating()-ratingModifier));
         ratedAnswer.updateRating(-1 * ratingModifier);
-        ratedAnswer.update();
     }
 
     @Override
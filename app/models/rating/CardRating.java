@@ -55,7 +55,6 @@ public class CardRating extends Rating {
 //        System.out.println("Modifying rating of ratedFlashCard="+ ratedFlashCard.getId()+": "+ratedFlashCard.getRating()+" to: "+(ratedFlashCard.getRating()+ratingModifier));
         Logger.debug("Modifying by " + (ratingModifier));
         ratedFlashCard.updateRating(ratingModifier);
-        ratedFlashCard.update();
     }
 
     /**
@@ -66,7 +65,6 @@ public class CardRating extends Rating {
 //        System.out.println("Compensating rating of answer="+ ratedFlashCard.getId()+": "+ratedFlashCard.getRating()+" to: "+(ratedFlashCard.getRating()-ratingModifier));
         Logger.debug("Compensating by " + (-1 * ratingModifier));
         ratedFlashCard.updateRating(-1 * ratingModifier);
-        ratedFlashCard.update();
     }
 
     @Override
@@ -0,0 +1,52 @@
+package models.statistics;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import models.BulkImportResult;
+import util.JsonKeys;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Outcome of <code>POST /cardStatistics/batch</code>. The statistics are written in the background, thus the
+ *         result only contains how many of them were accepted and one error per element that was rejected, referenced
+ *         by its index in the request. This class is not persisted.
+ */
+@JsonPropertyOrder({JsonKeys.BULK_ACCEPTED, JsonKeys.BULK_ERRORS})
+public class StatisticsBatchResult {
+    @JsonProperty(JsonKeys.BULK_ACCEPTED)
+    private int accepted;
+    @JsonProperty(JsonKeys.BULK_ERRORS)
+    private final List<BulkImportResult.ItemError> errors = new ArrayList<>();
+
+    public int getAccepted() {
+        return accepted;
+    }
+
+    public void setAccepted(int accepted) {
+        this.accepted = accepted;
+    }
+
+    public List<BulkImportResult.ItemError> getErrors() {
+        return errors;
+    }
+
+    public void addError(int index, String description) {
+        errors.add(new BulkImportResult.ItemError(index, description));
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "StatisticsBatchResult{" +
+                "accepted=" + accepted +
+                ", errors=" + errors.size() +
+                '}';
+    }
+}
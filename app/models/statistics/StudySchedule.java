@@ -0,0 +1,111 @@
+package models.statistics;
+
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.Model;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import models.FlashCard;
+import models.User;
+import util.JsonKeys;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Next review of one card by one user. There is at most one schedule per (user, card), it is derived from the
+ *         latest {@link CardStatistics} of the pair: the drawer of the statistic decides after how many days the card is
+ *         due again, see {@link repositories.StudyScheduleRepository}. The index on (user, dueDate) lets the due cards of a user be read
+ *         in order without looking at the statistics.
+ */
+@Entity
+@Table(name = JsonKeys.SCHEDULE_TABLE_NAME, uniqueConstraints = @UniqueConstraint(columnNames = {JsonKeys.STATISTICS_USER, JsonKeys.STATISTICS_CARD}))
+@JsonPropertyOrder({JsonKeys.SCHEDULE_ID})
+public class StudySchedule extends Model {
+    public static Model.Finder<Long, StudySchedule> finder = new Model.Finder<Long, StudySchedule>(StudySchedule.class);
+
+    @Id
+    @GeneratedValue
+    @Column(name = JsonKeys.SCHEDULE_ID)
+    @JsonProperty(JsonKeys.SCHEDULE_ID)
+    private long id;
+
+    @ManyToOne
+    @JoinColumn(name = JsonKeys.STATISTICS_USER, referencedColumnName = JsonKeys.USER_ID)
+    @JsonIgnore
+    private User user;
+    @ManyToOne
+    @JoinColumn(name = JsonKeys.STATISTICS_CARD, referencedColumnName = JsonKeys.FLASHCARD_ID)
+    @JsonProperty(JsonKeys.STATISTICS_CARD)
+    private FlashCard card;
+    @Column(name = JsonKeys.STATISTICS_DRAWER)
+    @JsonProperty(JsonKeys.STATISTICS_DRAWER)
+    private int drawer;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss z")
+    @Column(name = JsonKeys.SCHEDULE_DUE)
+    @JsonProperty(JsonKeys.SCHEDULE_DUE)
+    private Date dueDate;
+
+    public StudySchedule(User user, FlashCard card, int drawer, Date dueDate) {
+        this.user = user;
+        this.card = card;
+        this.drawer = drawer;
+        this.dueDate = dueDate;
+    }
+
+    /**
+     * Deletes the schedules of all users for one card with one statement, has to be called before the card is deleted.
+     *
+     * @param cardId id of the card
+     * @return number of deleted schedules
+     */
+    public static int deleteByCard(long cardId) {
+        return Ebean.createSqlUpdate("delete from " + JsonKeys.SCHEDULE_TABLE_NAME + " where " + JsonKeys.STATISTICS_CARD
+                + " = :card").setParameter("card", cardId).execute();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public FlashCard getCard() {
+        return card;
+    }
+
+    public void setCard(FlashCard card) {
+        this.card = card;
+    }
+
+    public int getDrawer() {
+        return drawer;
+    }
+
+    public void setDrawer(int drawer) {
+        this.drawer = drawer;
+    }
+
+    public Date getDueDate() {
+        return dueDate;
+    }
+
+    public void setDueDate(Date dueDate) {
+        this.dueDate = dueDate;
+    }
+
+    @Override
+    public String toString() {
+        return "StudySchedule{" +
+                "id=" + id +
+                ", drawer=" + drawer +
+                ", dueDate=" + dueDate +
+                '}';
+    }
+}
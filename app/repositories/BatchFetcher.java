@@ -0,0 +1,71 @@
+package repositories;
+
+import com.avaje.ebean.Model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Resolves a collection of ids or property values with a single IN query instead of one lookup per element.
+ *         The results are returned as map so the caller can keep the order of the request and detect missing elements
+ *         with {@link Map#get(Object)}. Duplicates and null values in the input are ignored.
+ */
+public class BatchFetcher {
+    //keeps the statements below the parameter limits of the database drivers
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    /**
+     * Loads all entities with the given ids.
+     *
+     * @param finder   of the entity
+     * @param ids      that should be loaded
+     * @param idGetter returns the id of one entity
+     * @param <T>      type of the entity
+     * @return map of id to entity, ids that do not exist are missing
+     */
+    public static <T> Map<Long, T> byIds(Model.Finder<Long, T> finder, Collection<Long> ids, Function<T, Long> idGetter) {
+        Map<Long, T> result = new HashMap<>();
+        for (List<Long> chunk : chunks(ids)) {
+            finder.where().idIn(chunk).findList().forEach(entity -> result.put(idGetter.apply(entity), entity));
+        }
+        return result;
+    }
+
+    /**
+     * Loads all entities where the given property has one of the given values, e.g. tags by name or users by email.
+     *
+     * @param finder    of the entity
+     * @param property  name of the property or column
+     * @param values    that should be loaded
+     * @param keyGetter returns the value of the property of one entity
+     * @param <K>       type of the property
+     * @param <T>       type of the entity
+     * @return map of property value to entity, values that do not exist are missing
+     */
+    public static <K, T> Map<K, T> byProperty(Model.Finder<Long, T> finder, String property, Collection<K> values, Function<T, K> keyGetter) {
+        Map<K, T> result = new HashMap<>();
+        for (List<K> chunk : chunks(values)) {
+            finder.where().in(property, chunk).findList().forEach(entity -> result.put(keyGetter.apply(entity), entity));
+        }
+        return result;
+    }
+
+    private static <K> List<List<K>> chunks(Collection<K> values) {
+        Set<K> distinct = new LinkedHashSet<>(values);
+        distinct.remove(null);
+        List<K> all = new ArrayList<>(distinct);
+        List<List<K>> chunks = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += MAX_BATCH_SIZE) {
+            chunks.add(all.subList(i, Math.min(all.size(), i + MAX_BATCH_SIZE)));
+        }
+        return chunks;
+    }
+}
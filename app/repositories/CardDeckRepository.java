@@ -1,8 +1,13 @@
 package repositories;
 
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.ExpressionList;
+import com.avaje.ebean.Query;
+import com.avaje.ebean.SqlRow;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import models.CardDeck;
+import models.CardDeckSummary;
 import models.FlashCard;
 import models.User;
 import models.UserGroup;
@@ -10,6 +15,9 @@ import play.Logger;
 import play.mvc.BodyParser;
 import play.mvc.Controller;
 import util.JsonKeys;
+import util.JsonUtil;
+import util.KeysetPagination;
+import util.NdjsonStream;
 import util.RequestKeys;
 import util.UrlParamHelper;
 import util.UserOperations;
@@ -19,16 +27,75 @@ import util.exceptions.NotAuthorizedException;
 import util.exceptions.ObjectNotFoundException;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * @author Fabian Widmann
  */
 public class CardDeckRepository {
-    public static List<CardDeck> getCardDecks() {
-        return CardDeck.find.all();
+    /**
+     * Returns summaries of all decks or one page of decks if ?limit=n&after=id is set, see {@link KeysetPagination}.
+     *
+     * @return list of deck summaries
+     * @throws InvalidInputException if the pagination parameters are invalid
+     */
+    public static List<CardDeckSummary> getCardDecks() throws InvalidInputException {
+        return summarize(KeysetPagination.findList(summaryQuery().where(), CardDeck::getId));
+    }
+
+    /**
+     * Returns a query that only loads the scalar values of decks that are needed for a {@link CardDeckSummary}.
+     *
+     * @return query
+     */
+    public static Query<CardDeck> summaryQuery() {
+        return CardDeck.find.select("id, name, description, visible");
+    }
+
+    /**
+     * Builds the summaries of the given decks. The number of cards and the last change of a card are aggregated by the
+     * database in one query for all decks. If ?expand=cards is set, the cards of all decks are loaded with one
+     * additional query.
+     *
+     * @param decks to summarize
+     * @return summaries in the same order as the decks
+     */
+    public static List<CardDeckSummary> summarize(List<CardDeck> decks) {
+        List<CardDeckSummary> summaries = new ArrayList<>();
+        if (decks.isEmpty())
+            return summaries;
+        List<Long> ids = decks.stream().map(CardDeck::getId).collect(Collectors.toList());
+
+        Map<Long, SqlRow> aggregates = new HashMap<>();
+        Ebean.createSqlQuery("select " + JsonKeys.FLASHCARD_PARENT_ID + " as deckId, count(*) as cardCount, max("
+                + JsonKeys.DATE_UPDATED + ") as lastUpdated from flashCard where " + JsonKeys.FLASHCARD_PARENT_ID
+                + " in (:ids) group by " + JsonKeys.FLASHCARD_PARENT_ID)
+                .setParameter("ids", ids)
+                .findList()
+                .forEach(row -> aggregates.put(row.getLong("deckId"), row));
+
+        Map<Long, List<FlashCard>> cardsPerDeck = null;
+        if (RequestKeys.EXPAND_CARDS.equals(UrlParamHelper.getValue(RequestKeys.EXPAND))) {
+            cardsPerDeck = FlashCardRepository.summaryQuery().where().in(JsonKeys.FLASHCARD_DECK + ".id", ids).orderBy("id asc").findList()
+                    .stream().collect(Collectors.groupingBy(card -> card.getDeck().getId()));
+        }
+
+        for (CardDeck deck : decks) {
+            SqlRow row = aggregates.get(deck.getId());
+            CardDeckSummary summary = row == null
+                    ? new CardDeckSummary(deck, 0, null)
+                    : new CardDeckSummary(deck, row.getInteger("cardCount"), row.getUtilDate("lastUpdated"));
+            if (cardsPerDeck != null)
+                summary.setCards(cardsPerDeck.getOrDefault(deck.getId(), new ArrayList<>()));
+            summaries.add(summary);
+        }
+        return summaries;
     }
 
     public static CardDeck getCardDeck(long id) {
@@ -46,8 +113,10 @@ public class CardDeckRepository {
      * @return cards of a deck or an error.
      */
     public static List<FlashCard> getCardDeckCards(long id) {
-        List<FlashCard> flashCards = new ArrayList<>();
-        flashCards=CardDeck.find.byId(id).getCards();
+        if (CardDeck.find.where().idEq(id).findRowCount() == 0)
+            throw new NullPointerException();
+        List<FlashCard> flashCards = FlashCardRepository.summaryQuery()
+                .where().eq(JsonKeys.FLASHCARD_DECK + ".id", id).orderBy("id asc").findList();
 
         if (UrlParamHelper.checkForKey(RequestKeys.SIZE) && UrlParamHelper.checkForKey(RequestKeys.START)) {
             String limitVal = UrlParamHelper.getValue(RequestKeys.SIZE);
@@ -72,6 +141,53 @@ public class CardDeckRepository {
         return flashCards;
     }
 
+    /**
+     * Streams the cards of one deck page by page instead of loading the whole deck, ?start=x and ?size=y are applied
+     * like in {@link #getCardDeckCards(long)}: the first page skips start cards, the following pages continue after the
+     * last id until size cards were sent. The question and the author of every card are joined, the request parameters
+     * are read immediately so the pages can be loaded without the request.
+     *
+     * @param id of the deck
+     * @return pages for {@link NdjsonStream#of}
+     * @throws NullPointerException  if the deck does not exist
+     * @throws InvalidInputException if start or size are no numbers
+     */
+    public static Function<Long, List<FlashCard>> streamCardDeckCards(long id) throws NullPointerException, InvalidInputException {
+        if (CardDeck.find.where().idEq(id).findRowCount() == 0)
+            throw new NullPointerException();
+        int start = 0;
+        int size = Integer.MAX_VALUE;
+        if (UrlParamHelper.checkForKey(RequestKeys.SIZE) && UrlParamHelper.checkForKey(RequestKeys.START)) {
+            start = parseNumber(RequestKeys.START);
+            size = parseNumber(RequestKeys.SIZE);
+            if (start < 0 || size <= 0)
+                return after -> new ArrayList<>();
+        }
+        int firstRow = start;
+        AtomicInteger remaining = new AtomicInteger(size);
+        return after -> {
+            //setMaxRows(0) would mean unlimited
+            if (remaining.get() <= 0)
+                return new ArrayList<>();
+            int pageSize = Math.min(NdjsonStream.PAGE_SIZE, remaining.get());
+            ExpressionList<FlashCard> query = FlashCardRepository.summaryQuery().where().eq(JsonKeys.FLASHCARD_DECK + ".id", id);
+            List<FlashCard> page = after == null
+                    ? query.orderBy("id asc").setFirstRow(firstRow).setMaxRows(pageSize).findList()
+                    : KeysetPagination.page(query, after, pageSize);
+            remaining.addAndGet(-page.size());
+            return page;
+        };
+    }
+
+    private static int parseNumber(String key) throws InvalidInputException {
+        String value = UrlParamHelper.getValue(key);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidInputException("The parameter " + key + " has to be a number, got: " + value + ".");
+        }
+    }
+
     /**
      * Delete a carddeck by id
      *
@@ -116,7 +232,7 @@ public class CardDeckRepository {
     @BodyParser.Of(BodyParser.Json.class)
     public static CardDeck addCardDeck(JsonNode json) throws InvalidInputException, DuplicateKeyException, NotAuthorizedException {
 
-        ObjectMapper mapper = new ObjectMapper();
+        ObjectMapper mapper = JsonUtil.mapper();
         CardDeck requestObject = mapper.convertValue(json, CardDeck.class);
 
         //retrieve the correct cards list by either parsing the id and getting the correct card or the attributes to a new card.
@@ -191,7 +307,6 @@ public class CardDeckRepository {
         if (JsonKeys.debugging)
             Logger.debug("Appending mode enabled? " + appendMode + " redirect the cards from other decks? " + redirectMode);
 
-        CardDeck toUpdate = CardDeck.find.byId(id);
         if (method.equals("PUT") && (!json.has(JsonKeys.CARDDECK_NAME) || !json.has(JsonKeys.CARDDECK_CARDS)
                 || !json.has(JsonKeys.CARDDECK_DESCRIPTION) || !json.has(JsonKeys.CARDDECK_GROUP))) {
             if (JsonKeys.debugging)
@@ -199,7 +314,7 @@ public class CardDeckRepository {
                         + " " + !json.has(JsonKeys.CARDDECK_DESCRIPTION));
             throw new InvalidInputException("Body did contain elements that are not allowed/expected. A card can contain: " + JsonKeys.FLASHCARD_JSON_ELEMENTS);
         }
-        ObjectMapper mapper = new ObjectMapper();
+        ObjectMapper mapper = JsonUtil.mapper();
         CardDeck requestObject = mapper.convertValue(json, CardDeck.class);
 
 
@@ -258,15 +373,21 @@ public class CardDeckRepository {
         Logger.debug("Parsecards: Got cardlist=" + requestObject.getCards());
 
         if (requestObject.getCards() != null) {
-            for (int i = 0; i < requestObject.getCards().size(); i++) {
-                FlashCard currentCard = requestObject.getCards().get(i);
-                Logger.debug("current id=" + currentCard.getId() + "  read from db=" + FlashCard.find.byId(currentCard.getId()));
+            //load all referenced cards with one query
+            List<Long> ids = requestObject.getCards().stream()
+                    .map(FlashCard::getId)
+                    .filter(cardId -> cardId > 0)
+                    .collect(Collectors.toList());
+            Map<Long, FlashCard> cards = BatchFetcher.byIds(FlashCard.find, ids, FlashCard::getId);
+
+            for (FlashCard currentCard : requestObject.getCards()) {
                 if (currentCard.getId() > 0) {
-                    FlashCard retrievedCard = FlashCard.find.byId(currentCard.getId());
+                    FlashCard retrievedCard = cards.get(currentCard.getId());
+                    Logger.debug("current id=" + currentCard.getId() + "  read from db=" + retrievedCard);
                     if (retrievedCard != null) {
                         cardList.add(retrievedCard);
                     } else
-                        throw new NullPointerException("Card with the id=" + requestObject.getCards().get(i).getId() + " does not exist");
+                        throw new NullPointerException("Card with the id=" + currentCard.getId() + " does not exist");
                 } else {
                     // TODO: 17.08.2016 Parse new questions if needed.
                 }
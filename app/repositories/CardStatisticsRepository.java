@@ -5,6 +5,7 @@ import models.CardDeck;
 import models.FlashCard;
 import models.User;
 import models.statistics.CardStatistics;
+import models.statistics.StatisticsBatchResult;
 import play.Logger;
 import play.api.mvc.Flash;
 import util.JsonKeys;
@@ -18,6 +19,7 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.function.Function;
 
 import static com.avaje.ebean.Expr.allEq;
 import static com.avaje.ebean.Expr.eq;
@@ -43,7 +45,7 @@ public class CardStatisticsRepository {
             throw new NotAuthorizedException("User has to be logged in to retrieve messages");
         if(UrlParamHelper.checkForKey(RequestKeys.DECK_ID)){
             Long deckId=Long.parseLong(UrlParamHelper.getValue(RequestKeys.DECK_ID));
-            return getCardStatisticsFromDeck(email,deckId);
+            return getCardStatisticsFromDeck(user,deckId);
         }
         if (UrlParamHelper.checkForKey(RequestKeys.COUNT)) {
             Long count = Long.parseLong(UrlParamHelper.getValue(RequestKeys.COUNT));
@@ -58,7 +60,8 @@ public class CardStatisticsRepository {
     }
 
     /**
-     * Creates one new CardStatistics object
+     * Creates one new CardStatistics object and moves the card into the drawer of the statistic, see
+     * {@link StudyScheduleRepository#record(CardStatistics)}.
      * @param email of the authenticated user
      * @param json content of the new object
      * @return new object or exception
@@ -66,8 +69,60 @@ public class CardStatisticsRepository {
      * @throws ParseException if we cannot retrieve the date from the datestring.
      */
     public static CardStatistics createCardStatistics(String email, JsonNode json) throws InvalidInputException, ParseException {
-        CardStatistics cardStatistics;
-        User user=UserRepository.findUserByEmail(email);;
+        User user=UserRepository.findUserByEmail(email);
+        CardStatistics cardStatistics = parseCardStatistics(user, json, FlashCardRepository::getFlashCard);
+        cardStatistics.save();
+        StudyScheduleRepository.record(cardStatistics);
+
+        return cardStatistics;
+    }
+
+    /**
+     * Parses a json array of statistics for the batch ingestion. The user is resolved once and all referenced cards
+     * are loaded with one query, invalid elements are reported in the result with their index and skipped.
+     *
+     * @param email  of the authenticated user
+     * @param json   array of statistics
+     * @param result collects the errors of rejected elements
+     * @return the valid statistics in the order of the request, not saved yet
+     * @throws InvalidInputException if the body is no json array
+     */
+    public static List<CardStatistics> parseCardStatisticsBatch(String email, JsonNode json, StatisticsBatchResult result) throws InvalidInputException {
+        if (json == null || !json.isArray())
+            throw new InvalidInputException("The body has to be a json array of card statistics.");
+        User user = UserRepository.findUserByEmail(email);
+
+        Set<Long> cardIds = new HashSet<>();
+        for (JsonNode item : json) {
+            if (item.has(JsonKeys.STATISTICS_CARD) && item.get(JsonKeys.STATISTICS_CARD).has(JsonKeys.FLASHCARD_ID))
+                cardIds.add(item.get(JsonKeys.STATISTICS_CARD).get(JsonKeys.FLASHCARD_ID).asLong());
+        }
+        Map<Long, FlashCard> cards = BatchFetcher.byIds(FlashCard.find, cardIds, FlashCard::getId);
+
+        List<CardStatistics> statistics = new ArrayList<>();
+        for (int i = 0; i < json.size(); i++) {
+            try {
+                statistics.add(parseCardStatistics(user, json.get(i), cards::get));
+            } catch (InvalidInputException e) {
+                result.addError(i, e.getMessage());
+            } catch (ParseException e) {
+                result.addError(i, "Error while parsing date. Dates should have the format: '" + JsonKeys.DATE_FORMAT + "'.");
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Parses and validates one statistic without saving it.
+     *
+     * @param user  the authenticated user
+     * @param json  content of the statistic
+     * @param cards returns the card with the given id or null
+     * @return new statistic
+     * @throws InvalidInputException if some of the required attributes are missing
+     * @throws ParseException        if we cannot retrieve the date from the datestring.
+     */
+    private static CardStatistics parseCardStatistics(User user, JsonNode json, Function<Long, FlashCard> cards) throws InvalidInputException, ParseException {
         FlashCard card=null;
         float knowledge=Float.MIN_VALUE;
         int drawer= Integer.MIN_VALUE;
@@ -76,7 +131,7 @@ public class CardStatisticsRepository {
 
         if (json.has(JsonKeys.STATISTICS_CARD)) {
             if(json.get(JsonKeys.STATISTICS_CARD).has(JsonKeys.FLASHCARD_ID))
-                card=FlashCardRepository.getFlashCard(json.get(JsonKeys.STATISTICS_CARD).get(JsonKeys.FLASHCARD_ID).asLong());
+                card=cards.apply(json.get(JsonKeys.STATISTICS_CARD).get(JsonKeys.FLASHCARD_ID).asLong());
         }
 
         if(json.has(JsonKeys.STATISTICS_KNOWLEDGE)){
@@ -93,7 +148,7 @@ public class CardStatisticsRepository {
         }
 
         if(json.has(JsonKeys.DATE_END)){
-            String textDate = json.get(JsonKeys.DATE_START).asText();;
+            String textDate = json.get(JsonKeys.DATE_END).asText();
             DateFormat format = new SimpleDateFormat(JsonKeys.DATE_FORMAT);
             endDate = format.parse(textDate);
             // TODO: 20.02.2017 decide if we want to invalidate sent dates.
@@ -105,12 +160,9 @@ public class CardStatisticsRepository {
             drawer=json.get(JsonKeys.STATISTICS_DRAWER).asInt();
         }
 
-        Logger.debug("user="+user);
-        Logger.debug("card="+card);
-        Logger.debug("startDate="+startDate);
-        Logger.debug("endDate="+endDate);
-        Logger.debug("knowledge="+knowledge);
-        Logger.debug("drawer="+drawer);
+        if (JsonKeys.debugging)
+            Logger.debug("user=" + user + " card=" + card + " startDate=" + startDate + " endDate=" + endDate
+                    + " knowledge=" + knowledge + " drawer=" + drawer);
 
         if(card==null)
             throw new InvalidInputException("The requested card does not exist. No CardStatistics-object was created.");
@@ -120,21 +172,23 @@ public class CardStatisticsRepository {
                     "(positive, float) and two timestamps: "+JsonKeys.DATE_START+", "+ JsonKeys.DATE_END+" in the format: "+JsonKeys.DATE_FORMAT+").");
         }
 
-        cardStatistics=new CardStatistics(user,card,knowledge,drawer,startDate,endDate);
-        cardStatistics.save();
-
-        return cardStatistics;
+        return new CardStatistics(user,card,knowledge,drawer,startDate,endDate);
     }
 
 
-    public static List<CardStatistics> getCardStatisticsFromDeck(String email,Long deckId) {
-        List<FlashCard> cards=FlashCard.find.where().eq(JsonKeys.FLASHCARD_DECK, CardDeck.find.byId(deckId)).findList();
-        List<CardStatistics> cardStatisticsList=new ArrayList<>();
-        cards.forEach(card-> {
-            Logger.debug("CardID="+card.getId());
-            cardStatisticsList.addAll(CardStatistics.finder.where().and(eq(JsonKeys.STATISTICS_USER, UserRepository.findUserByEmail(email)),/*allEq(queryMap)*/eq(JsonKeys.STATISTICS_CARD, card)).findList());
-        }
-        );
-        return cardStatisticsList;
+    /**
+     * Retrieve all cardStatistics of one user for the cards of one deck. The statistics are joined with their cards
+     * and filtered by the deck in one query, ordered by card.
+     *
+     * @param user   the logged in user
+     * @param deckId id of the deck
+     * @return statistics of the user for all cards in the deck, can be empty
+     */
+    public static List<CardStatistics> getCardStatisticsFromDeck(User user, Long deckId) {
+        return CardStatistics.finder.where()
+                .eq(JsonKeys.STATISTICS_USER, user)
+                .eq(JsonKeys.STATISTICS_CARD + "." + JsonKeys.FLASHCARD_DECK + ".id", deckId)
+                .orderBy(JsonKeys.STATISTICS_CARD + ".id asc, id asc")
+                .findList();
     }
 }
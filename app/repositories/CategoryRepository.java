@@ -1,72 +1,156 @@
 package repositories;
 
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.ExpressionList;
+import com.avaje.ebean.SqlUpdate;
+import com.avaje.ebean.Transaction;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import models.CardDeck;
+import models.CardDeckSummary;
 import models.Category;
+import models.FlashCard;
 import models.User;
 import play.Logger;
 import play.mvc.BodyParser;
 import util.JsonKeys;
+import util.JsonUtil;
+import util.KeysetPagination;
+import util.NdjsonStream;
 import util.RequestKeys;
 import util.UrlParamHelper;
 import util.UserOperations;
+import util.cache.CategoryTreeCache;
 import util.exceptions.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * @author Fabian Widmann
  */
 public class CategoryRepository {
     /**
-     * Retrieves all Categories.
+     * Retrieves all Categories or only the ones without a parent if ?root=true is set. The categories are read from the
+     * {@link CategoryTreeCache}.
      *
      * @return HTTPResult
      */
     public static List<Category> getCategoryList() {
         if (UrlParamHelper.checkBool(RequestKeys.ROOT)) {
-            List<Category> emptyGroups = Category.find.where().isNull(JsonKeys.CATEGORY_PARENT).findList();
-            return emptyGroups;
+            return CategoryTreeCache.get().getRoots();
         }
-        return Category.find.all();
+        return CategoryTreeCache.get().getAll();
     }
 
     /**
-     * Retrieves the Category with the specific id, if it does not exist, return notFound.
+     * Retrieves the Category with the specific id including its parents from the {@link CategoryTreeCache}.
      *
      * @param id of a category
      * @return category
+     * @throws NullPointerException if the category does not exist
      */
-    public static Category getCategory(Long id) {
-        return Category.find.byId(id);
+    public static Category getCategory(Long id) throws NullPointerException {
+        Category category = CategoryTreeCache.get().toCategory(id);
+        if (category == null)
+            throw new NullPointerException();
+        return category;
     }
 
     /**
-     * Get all card decks in a category.
+     * Get summaries of all card decks in a category, with ?recursive=true the decks of all descendants are included.
      *
      * @param id of a category
      * @return decks inside of the category
+     * @throws NullPointerException if the category does not exist
+     */
+    public static List<CardDeckSummary> getCategoryCardDecks(Long id) throws NullPointerException {
+        return CardDeckRepository.summarize(inCategory(CardDeckRepository.summaryQuery().where(),
+                JsonKeys.CARDDECK_CATEGORY, id).orderBy("id asc").findList());
+    }
+
+    /**
+     * Streams the summaries of all decks in a category page by page, every page of {@link NdjsonStream#PAGE_SIZE}
+     * decks is summarized with one query. The category is checked immediately, the pages read ?recursive=true and
+     * ?expand=cards and have to be loaded with the Http.Context of the request.
+     *
+     * @param id of the category
+     * @return pages for {@link NdjsonStream#of}
+     * @throws NullPointerException if the category does not exist
+     */
+    public static Function<Long, List<CardDeckSummary>> streamCategoryCardDecks(Long id) throws NullPointerException {
+        inCategory(CardDeck.find.where(), JsonKeys.CARDDECK_CATEGORY, id);
+        return after -> CardDeckRepository.summarize(KeysetPagination.page(
+                inCategory(CardDeckRepository.summaryQuery().where(), JsonKeys.CARDDECK_CATEGORY, id), after,
+                NdjsonStream.PAGE_SIZE));
+    }
+
+    /**
+     * Get the cards of all decks in a category, with ?recursive=true the cards in the decks of all descendants are
+     * included. The list can be paged with ?limit=n&after=id, see {@link KeysetPagination}.
+     *
+     * @param id of a category
+     * @return cards inside of the category
+     * @throws NullPointerException  if the category does not exist
+     * @throws InvalidInputException if the pagination parameters are invalid
+     */
+    public static List<FlashCard> getCategoryCards(Long id) throws NullPointerException, InvalidInputException {
+        return KeysetPagination.findList(inCategory(FlashCardRepository.summaryQuery().where(),
+                JsonKeys.FLASHCARD_DECK + "." + JsonKeys.CARDDECK_CATEGORY, id), FlashCard::getId);
+    }
+
+    /**
+     * Streams the cards of all decks in a category page by page. The category is checked immediately, the pages read
+     * ?recursive=true and have to be loaded with the Http.Context of the request.
+     *
+     * @param id of the category
+     * @return pages for {@link NdjsonStream#of}
+     * @throws NullPointerException if the category does not exist
      */
-    public static List<CardDeck> getCategoryCardDecks(Long id) {
-        return Category.find.byId(id).getCardDecks();
+    public static Function<Long, List<FlashCard>> streamCategoryCards(Long id) throws NullPointerException {
+        String deckCategory = JsonKeys.FLASHCARD_DECK + "." + JsonKeys.CARDDECK_CATEGORY;
+        inCategory(FlashCard.find.where(), deckCategory, id);
+        return after -> KeysetPagination.page(inCategory(FlashCardRepository.summaryQuery().where(), deckCategory, id),
+                after, NdjsonStream.PAGE_SIZE);
     }
 
     /**
-     * Returns the children of the specified carddeck.
+     * Restricts a query to the category with the given id. With ?recursive=true the whole subtree is selected with one
+     * indexed prefix match on the materialized path instead, e.g. path like '/1/4/%' for the category 4 below 1.
+     *
+     * @param where    query of decks or cards
+     * @param category name of the category property relative to the queried entity
+     * @param id       of the category
+     * @param <T>      type of the entity
+     * @return the restricted query
+     * @throws NullPointerException if the category does not exist
+     */
+    private static <T> ExpressionList<T> inCategory(ExpressionList<T> where, String category, Long id) throws NullPointerException {
+        CategoryTreeCache.Snapshot tree = CategoryTreeCache.get();
+        if (!tree.contains(id))
+            throw new NullPointerException();
+        if (!UrlParamHelper.checkBool(RequestKeys.RECURSIVE))
+            return where.eq(category + ".id", id);
+
+        //categories that existed before the paths were introduced have none until the first rebuild
+        if (tree.getPath(id) == null) {
+            rebuildPaths();
+            tree = CategoryTreeCache.get();
+        }
+        return where.startsWith(category + "." + JsonKeys.CATEGORY_PATH, tree.getPath(id));
+    }
+
+    /**
+     * Returns the children of the specified category from the {@link CategoryTreeCache}.
      *
      * @param id of a category
      * @return list of children
      */
     public static List<Category> getChildren(Long id) {
-        Category parent = Category.find.byId(id);
-        List<Category> children=new ArrayList<>();
-        if(parent!=null) {
-            children = Category.find.where().eq(JsonKeys.CATEGORY_PARENT, parent).findList();
-            children.forEach(c -> System.out.println("c=" + c));
-        }
-        return children;
+        return CategoryTreeCache.get().getChildren(id);
     }
 
     /**
@@ -77,7 +161,7 @@ public class CategoryRepository {
     @BodyParser.Of(BodyParser.Json.class)
     public static Category addCategory(JsonNode json) throws PartiallyModifiedException, ObjectNotFoundException {
         String information = "";
-        ObjectMapper mapper = new ObjectMapper();
+        ObjectMapper mapper = JsonUtil.mapper();
 
         Category receivedCategory = mapper.convertValue(json, Category.class);
         Category category = new Category(receivedCategory);
@@ -96,8 +180,9 @@ public class CategoryRepository {
         //handle cardDeck list
         List<CardDeck> cardDeckList = new ArrayList<>();
         if (receivedCategory.getCardDecks() != null) {
+            Map<Long, CardDeck> decks = fetchDecks(receivedCategory.getCardDecks());
             for (CardDeck cardDeck : receivedCategory.getCardDecks()) {
-                CardDeck tmp = CardDeck.find.byId(cardDeck.getId());
+                CardDeck tmp = decks.get(cardDeck.getId());
                 //add it to the list if it isnt already in and isnt null
                 if (!cardDeckList.contains(tmp) && tmp != null && tmp.getCategory() == null) {
                     cardDeckList.add(cardDeck);
@@ -119,6 +204,10 @@ public class CategoryRepository {
 
         Logger.debug("finishing=" + category);
         category.save();
+        //the path contains the generated id
+        category.setPath(buildPath(category.getParent(), category.getId()));
+        category.update();
+        CategoryTreeCache.invalidate();
         //cardDecks themselves can be re-set to a new category at the moment,
         for (CardDeck cardDeck : cardDeckList) {
             cardDeck.setCategory(category);
@@ -152,10 +241,12 @@ public class CategoryRepository {
         String information = "";
         boolean append = UrlParamHelper.checkBool(RequestKeys.APPEND);
         Logger.debug("Appending? " + append);
-        ObjectMapper mapper = new ObjectMapper();
+        ObjectMapper mapper = JsonUtil.mapper();
 
         Category receivedCategory = mapper.convertValue(json, Category.class);
         Category category = Category.find.byId(id);
+        String oldPath = category.getPath();
+        boolean moved = false;
 
         User author = User.find.where().eq(JsonKeys.USER_EMAIL, email).findUnique();
         // if the user has no rights to edit a category:
@@ -180,9 +271,10 @@ public class CategoryRepository {
                 Long parentId = json.get(JsonKeys.CATEGORY_PARENT).get(JsonKeys.CATEGORY_ID).asLong();
 
                 //do not allow self loops or loops between two objects
-                if (!containsEndlessLoop(id, parentId))
+                if (!containsEndlessLoop(id, parentId)) {
                     category.setParent(parseParent(parentId));
-                else
+                    moved = true;
+                } else
                     throw new DuplicateKeyException("This parent is not allowed as it would create an endless loop.", 1);
             }
         }
@@ -197,8 +289,9 @@ public class CategoryRepository {
                 }
             }
             if (receivedCategory.getCardDecks() != null) {
+                Map<Long, CardDeck> decks = fetchDecks(receivedCategory.getCardDecks());
                 for (CardDeck cardDeck : receivedCategory.getCardDecks()) {
-                    CardDeck tmp = CardDeck.find.byId(cardDeck.getId());
+                    CardDeck tmp = decks.get(cardDeck.getId());
                     //add it to the list if it isn't already in and isn't null
 
                     if (!cardDeckList.contains(tmp) && tmp != null && tmp.getCategory() == null) {
@@ -223,6 +316,9 @@ public class CategoryRepository {
         }
 
         category.update();
+        if (moved)
+            movePath(category, oldPath);
+        CategoryTreeCache.invalidate();
 
         if (information != "") {
             throw new PartiallyModifiedException("Category has been updated! Additional information: " + information, category.getId());
@@ -230,30 +326,99 @@ public class CategoryRepository {
         return category;
     }
 
+    /**
+     * Builds the materialized path of a category from the path of its parent.
+     *
+     * @param parent of the category, null for roots
+     * @param id     of the category
+     * @return path, e.g. /1/4/9/, or null if the parent has no path yet
+     */
+    private static String buildPath(Category parent, long id) {
+        if (parent == null)
+            return "/" + id + "/";
+        return parent.getPath() == null ? null : parent.getPath() + id + "/";
+    }
+
+    /**
+     * Rewrites the path of a moved category and of all of its descendants with one statement by replacing the old
+     * prefix. The descendants keep the remaining part of their paths as the subtree itself did not change.
+     *
+     * @param category with the new parent
+     * @param oldPath  of the category before the move
+     */
+    private static void movePath(Category category, String oldPath) {
+        String newPath = buildPath(category.getParent(), category.getId());
+        //a parent without a path or a category without one can only be fixed by building all paths
+        if (oldPath == null || newPath == null) {
+            CategoryTreeCache.invalidate();
+            rebuildPaths();
+            return;
+        }
+        if (newPath.equals(oldPath))
+            return;
+        SqlUpdate update = Ebean.createSqlUpdate("update category set " + JsonKeys.CATEGORY_PATH + " = concat(:newPath, substring("
+                + JsonKeys.CATEGORY_PATH + ", :from)) where " + JsonKeys.CATEGORY_PATH + " like :oldPrefix");
+        update.setParameter("newPath", newPath);
+        update.setParameter("from", oldPath.length() + 1);
+        update.setParameter("oldPrefix", oldPath + "%");
+        int moved = update.execute();
+        if (JsonKeys.debugging)
+            Logger.debug("Moved " + moved + " categories from " + oldPath + " to " + newPath);
+    }
+
+    /**
+     * Compares the materialized path of every category with the chain of its parents in the {@link CategoryTreeCache}
+     * and writes the missing or wrong ones in one transaction, e.g. for categories created before the paths existed.
+     *
+     * @return number of corrected categories
+     */
+    public static int rebuildPaths() {
+        Map<Long, String> stale = CategoryTreeCache.get().getStalePaths();
+        if (stale.isEmpty())
+            return 0;
+        Transaction transaction = Ebean.beginTransaction();
+        try {
+            transaction.setBatchMode(true);
+            for (Map.Entry<Long, String> entry : stale.entrySet()) {
+                SqlUpdate update = Ebean.createSqlUpdate("update category set " + JsonKeys.CATEGORY_PATH + " = :path where "
+                        + JsonKeys.CATEGORY_ID + " = :id");
+                update.setParameter("path", entry.getValue());
+                update.setParameter("id", entry.getKey());
+                update.execute();
+            }
+            transaction.commit();
+        } finally {
+            transaction.end();
+        }
+        CategoryTreeCache.invalidate();
+        return stale.size();
+    }
+
+    /**
+     * Loads the decks referenced in a request body with one query.
+     *
+     * @param requestDecks decks parsed from the body, only the ids are set
+     * @return map of id to deck from the database
+     */
+    private static Map<Long, CardDeck> fetchDecks(List<CardDeck> requestDecks) {
+        List<Long> ids = requestDecks.stream().map(CardDeck::getId).collect(Collectors.toList());
+        return BatchFetcher.byIds(CardDeck.find, ids, CardDeck::getId);
+    }
+
     /**
      * This method checks whether the Category with a given id is already a parent for the to-be parent with parentId.
      * e.g. 1<-2<-3<-4 are connected categories where cat.id. 4 has parent 3.
      * if we now wanted to set 1 as child to 4 this method would find the loop and deny the operation.
      * The result for the illegal operation would be 1<-2<-3<-4<-1.
+     * The ancestors of the parent are walked in the {@link CategoryTreeCache}.
      *
      * @param id       of the category
      * @param parentId of the future parent category
      * @return true if a loop would exist or false if none is contained.
      */
     private static boolean containsEndlessLoop(Long id, Long parentId) {
-        Category child = Category.find.byId(id);
-        Category parent = Category.find.byId(parentId);
-        Category temp = parent;
-        boolean hasLoop = false;
         Logger.debug("Checking if the current category is not already the parent to any nodes of our to-be parent.");
-        while (temp != null) {
-            Logger.debug("current id=" + temp.getId() + " parent=" + temp.getParent());
-            if (temp.getId() == child.getId())
-                hasLoop = true;
-            temp = temp.getParent();
-        }
-
-        return hasLoop;
+        return CategoryTreeCache.get().isAncestorOrSelf(parentId, id);
     }
 
 /*    public static Result deleteCategory(Long id){
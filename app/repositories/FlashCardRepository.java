@@ -1,5 +1,9 @@
 package repositories;
 
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.Query;
+import com.avaje.ebean.SqlUpdate;
+import com.avaje.ebean.Transaction;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import models.*;
@@ -7,11 +11,10 @@ import play.Logger;
 import util.*;
 import util.exceptions.*;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 import static com.avaje.ebean.Expr.eq;
 import static play.mvc.Controller.request;
@@ -20,11 +23,15 @@ import static play.mvc.Controller.request;
  * @author Fabian Widmann
  */
 public class FlashCardRepository {
+    public static final int MAX_BULK_CARDS = 10000;
+    private static final int BULK_BATCH_SIZE = 500;
+
     /**
      * Retrieves all Flashcards.
      * - If ?authorId=id is set - return all cards of the author - return all cards without a user if null is set.
      * - If ?deckId=id is set - return all cards with the specific deck - return all without a deck if null is set.
      * - ?authorId=id&deckId=id - return all decks from a specific author and deck - see above for null handling.
+     * - ?limit=n&after=id - pages through the (filtered) list, see {@link KeysetPagination}.
      *
      * @return list of cards
      */
@@ -39,9 +46,9 @@ public class FlashCardRepository {
 
                 if (!deckId.toLowerCase().equals("null")) {
                     CardDeck deck = CardDeckRepository.getCardDeck(Long.parseLong(deckId));
-                    flashCardList = FlashCard.find.where().and(eq(JsonKeys.AUTHOR, author), eq(JsonKeys.FLASHCARD_PARENT_ID, deck.getId())).findList();
+                    flashCardList = KeysetPagination.findList(summaryQuery().where().and(eq(JsonKeys.AUTHOR, author), eq(JsonKeys.FLASHCARD_PARENT_ID, deck.getId())), FlashCard::getId);
                 } else
-                    flashCardList = FlashCard.find.where().and(eq(JsonKeys.AUTHOR, author), eq(JsonKeys.FLASHCARD_PARENT_ID, null)).findList();
+                    flashCardList = KeysetPagination.findList(summaryQuery().where().and(eq(JsonKeys.AUTHOR, author), eq(JsonKeys.FLASHCARD_PARENT_ID, null)), FlashCard::getId);
             } else
                 throw new NullPointerException("User cannot be null.");
         } else if (UrlParamHelper.checkForKey(RequestKeys.AUTHOR_ID)) {
@@ -49,34 +56,50 @@ public class FlashCardRepository {
             User author = null;
             if (!userId.toLowerCase().equals("null"))
                 author = UserRepository.findById(Long.valueOf(userId));
-            flashCardList = FlashCard.find.where().eq(JsonKeys.AUTHOR, author).findList();
+            flashCardList = KeysetPagination.findList(summaryQuery().where().eq(JsonKeys.AUTHOR, author), FlashCard::getId);
 
         } else if (UrlParamHelper.checkForKey(RequestKeys.DECK_ID)) {
             String deckId = UrlParamHelper.getValue(RequestKeys.DECK_ID);
             CardDeck deck = null;
             if (!deckId.toLowerCase().equals("null")) {
                 deck = CardDeckRepository.getCardDeck(Long.parseLong(deckId));
-                flashCardList = FlashCard.find.where().eq(JsonKeys.FLASHCARD_PARENT_ID, deck.getId()).findList();
+                flashCardList = KeysetPagination.findList(summaryQuery().where().eq(JsonKeys.FLASHCARD_PARENT_ID, deck.getId()), FlashCard::getId);
             } else
-                flashCardList = FlashCard.find.where().eq(JsonKeys.FLASHCARD_PARENT_ID, null).findList();
+                flashCardList = KeysetPagination.findList(summaryQuery().where().eq(JsonKeys.FLASHCARD_PARENT_ID, null), FlashCard::getId);
 
         } else if (UrlParamHelper.checkForKey(RequestKeys.GET_BY_ID)) {
             String[] ids = UrlParamHelper.getValues(RequestKeys.GET_BY_ID);
+            List<Long> cardIds = new ArrayList<>();
             for (String id : ids) {
                 try {
-                    FlashCard currentCard = FlashCard.find.byId(Long.parseLong(id));
-                    if (currentCard != null)
-                        flashCardList.add(currentCard);
-
+                    cardIds.add(Long.parseLong(id));
                 } catch (NumberFormatException e) {
                     throw new InvalidInputException("Error while processing id. Please re-check your query string. IDs have to be >0. Cause: id=" + id+".");
                 }
             }
+            //one query for all ids, the order of the request is kept and unknown ids are skipped
+            Map<Long, FlashCard> cards = BatchFetcher.byIds(FlashCard.find, cardIds, FlashCard::getId);
+            for (Long cardId : cardIds) {
+                FlashCard currentCard = cards.get(cardId);
+                if (currentCard != null)
+                    flashCardList.add(currentCard);
+            }
         } else
-            flashCardList = FlashCard.find.all();
+            flashCardList = KeysetPagination.findList(summaryQuery().where(), FlashCard::getId);
         return flashCardList;
     }
 
+    /**
+     * Returns a query that loads cards together with the values of {@link JsonViews.Summary}. The question and the
+     * author are joined, thus serializing the cards in that view does not trigger lazy loading.
+     *
+     * @return query
+     */
+    public static Query<FlashCard> summaryQuery() {
+        return FlashCard.find.fetch(JsonKeys.FLASHCARD_QUESTION, "questionText, uri")
+                .fetch(JsonKeys.AUTHOR, "name, email, rating");
+    }
+
     /**
      * Retrieves everything from a flashcard with the given id.
      *
@@ -114,7 +137,7 @@ public class FlashCardRepository {
      * @return Card
      */
     public static FlashCard addFlashCard(String email, JsonNode json) throws InvalidInputException, ParameterNotSupportedException, PartiallyModifiedException {
-        ObjectMapper mapper = new ObjectMapper();
+        ObjectMapper mapper = JsonUtil.mapper();
 
         FlashCard requestObject = mapper.convertValue(json, FlashCard.class);
         requestObject.setTags(new ArrayList<>());
@@ -173,6 +196,7 @@ public class FlashCardRepository {
         card.save();
         card.setTags(tags);
         card.update();
+        TagRepository.adjustUsageCount(tags, 1);
         if (information != "") {
             throw new PartiallyModifiedException("FlashCard has been created! Additional information: " + information, card.getId());
         }
@@ -192,7 +216,7 @@ public class FlashCardRepository {
      * @return httpResult
      */
     public static FlashCard updateFlashCard(long id, String email, JsonNode json, Map<String, String[]> urlParams) throws InvalidInputException, ParameterNotSupportedException, NullPointerException, NotAuthorizedException {
-        ObjectMapper mapper = new ObjectMapper();
+        ObjectMapper mapper = JsonUtil.mapper();
         boolean appendMode = false;
 
         Question oldQuestion = null;
@@ -200,6 +224,7 @@ public class FlashCardRepository {
         User author = User.find.where().eq(JsonKeys.USER_EMAIL, email).findUnique();
         FlashCard toUpdate = FlashCard.find.byId(id);
         boolean hasPermission = author.hasPermission(UserOperations.EDIT_CARD, toUpdate);
+        List<Tag> oldTags = new ArrayList<>(toUpdate.getTags());
 
         //When using put we need to be able to edit everything inside our card.
         if (request().method().equals("PUT") && !hasPermission)
@@ -316,6 +341,8 @@ public class FlashCardRepository {
         }
 
         toUpdate.update();
+        if (json.has(JsonKeys.FLASHCARD_TAGS))
+            TagRepository.adjustUsageCount(oldTags, toUpdate.getTags());
         //delete old/replaced objects if no appendmode is enabled
         if (oldQuestion != null)
             oldQuestion.delete();
@@ -416,6 +443,221 @@ public class FlashCardRepository {
     }
 
 
+    /**
+     * Imports many cards into one deck with a single transaction. The body is either a json array of cards or ndjson
+     * (one card per line). Every card needs a complete question and may contain complete answers, tags (via
+     * {@link JsonKeys#TAG_ID} or {@link JsonKeys#TAG_NAME}) and the multiple choice flag, exactly like
+     * {@link #addFlashCard(String, JsonNode)} but without ids of existing questions or answers.
+     * <p>
+     * Invalid cards are skipped and reported with their index in the {@link BulkImportResult}, the valid ones are
+     * inserted. All tags of the request are resolved with one query, missing tag names are created once and the
+     * inserts are sent as jdbc batches.
+     *
+     * @param email  of the user that imports the cards
+     * @param deckId id of the deck the cards are added to
+     * @param body   request body as text
+     * @param ndjson true if the body is newline delimited json, else a json array is expected
+     * @return ids of the created cards and errors per rejected card
+     * @throws NullPointerException   if the deck does not exist
+     * @throws NotAuthorizedException if the user may not edit the deck
+     * @throws InvalidInputException  if the body is no array, empty or contains more than {@link #MAX_BULK_CARDS} cards
+     */
+    public static BulkImportResult importFlashCards(String email, long deckId, String body, boolean ndjson) throws NotAuthorizedException, InvalidInputException {
+        User author = User.find.where().eq(JsonKeys.USER_EMAIL, email).findUnique();
+        CardDeck deck = CardDeck.find.byId(deckId);
+        if (deck == null)
+            throw new NullPointerException();
+        if (!author.hasPermission(UserOperations.EDIT_DECK, deck))
+            throw new NotAuthorizedException("This user is not authorized to add cards to the deck with this id.");
+
+        BulkImportResult result = new BulkImportResult();
+        List<JsonNode> items = parseBulkBody(body, ndjson, result);
+
+        //parse everything before touching the database, invalid cards are reported and skipped
+        List<PendingCard> pending = new ArrayList<>();
+        Set<Long> tagIds = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i) == null)
+                continue;
+            try {
+                PendingCard card = parseBulkCard(i, items.get(i), author, deck);
+                tagIds.addAll(card.tagIds);
+                pending.add(card);
+            } catch (InvalidInputException e) {
+                result.addError(i, e.getMessage());
+            }
+        }
+
+        Map<Long, Tag> tagsById = BatchFetcher.byIds(Tag.find, tagIds, Tag::getId);
+        Set<String> tagNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (Iterator<PendingCard> iterator = pending.iterator(); iterator.hasNext(); ) {
+            PendingCard card = iterator.next();
+            Optional<Long> missing = card.tagIds.stream().filter(id -> !tagsById.containsKey(id)).findFirst();
+            if (missing.isPresent()) {
+                result.addError(card.index, "The tag with the id=" + missing.get() + " does not exist.");
+                iterator.remove();
+            } else
+                tagNames.addAll(card.tagNames);
+        }
+        //names are compared case insensitive by the database collation
+        Map<String, Tag> tagsByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        tagsByName.putAll(BatchFetcher.byProperty(Tag.find, JsonKeys.TAG_NAME, tagNames, Tag::getName));
+
+        Transaction transaction = Ebean.beginTransaction();
+        try {
+            transaction.setBatchMode(true);
+            transaction.setBatchSize(BULK_BATCH_SIZE);
+            for (String name : tagNames) {
+                if (!tagsByName.containsKey(name)) {
+                    Tag tag = new Tag(name);
+                    tag.save();
+                    tagsByName.put(name, tag);
+                }
+            }
+            //questions and answers are inserted via cascade
+            pending.forEach(card -> card.card.save());
+            //assigns the generated ids of the cards and new tags
+            transaction.flushBatch();
+
+            List<Tag> links = new ArrayList<>();
+            SqlUpdate insertLink = Ebean.createSqlUpdate("insert into " + JsonKeys.CARD_TAG_JOIN_TABLE + " ("
+                    + JsonKeys.FLASHCARD_ID + ", " + JsonKeys.TAG_ID + ") values (:card, :tag)");
+            for (PendingCard card : pending) {
+                //the same tag may be referenced by id and name, it is linked once
+                Map<Long, Tag> cardTags = new LinkedHashMap<>();
+                card.tagIds.forEach(id -> cardTags.put(id, tagsById.get(id)));
+                card.tagNames.forEach(name -> {
+                    Tag tag = tagsByName.get(name);
+                    cardTags.put(tag.getId(), tag);
+                });
+                for (Tag tag : cardTags.values()) {
+                    insertLink.setParameter("card", card.card.getId());
+                    insertLink.setParameter("tag", tag.getId());
+                    insertLink.execute();
+                    links.add(tag);
+                }
+                result.addCreated(card.card.getId());
+            }
+            TagRepository.adjustUsageCount(links, 1);
+            Ebean.commitTransaction();
+        } finally {
+            Ebean.endTransaction();
+        }
+        if (JsonKeys.debugging)
+            Logger.debug("Bulk import into deck=" + deckId + " result=" + result);
+        return result;
+    }
+
+    /**
+     * Splits the body of a bulk import into single cards. Lines of ndjson that are no valid json are reported as error
+     * of their line, empty lines are skipped.
+     *
+     * @param body   request body
+     * @param ndjson true if the body is newline delimited json
+     * @param result receives the errors of invalid lines
+     * @return one node per index, null for skipped or invalid lines
+     * @throws InvalidInputException if the body is empty, no array or too big
+     */
+    private static List<JsonNode> parseBulkBody(String body, boolean ndjson, BulkImportResult result) throws InvalidInputException {
+        ObjectMapper mapper = JsonUtil.mapper();
+        List<JsonNode> items = new ArrayList<>();
+        if (body == null || body.trim().isEmpty())
+            throw new InvalidInputException("The request did not contain any cards.");
+
+        if (ndjson) {
+            String[] lines = body.split("\r?\n");
+            for (int i = 0; i < lines.length; i++) {
+                if (lines[i].trim().isEmpty()) {
+                    items.add(null);
+                    continue;
+                }
+                try {
+                    items.add(mapper.readTree(lines[i]));
+                } catch (IOException e) {
+                    items.add(null);
+                    result.addError(i, "Line is no valid json.");
+                }
+            }
+        } else {
+            JsonNode array;
+            try {
+                array = mapper.readTree(body);
+            } catch (IOException e) {
+                throw new InvalidInputException("The request is no valid json.");
+            }
+            if (array == null || !array.isArray())
+                throw new InvalidInputException("Expected a json array of cards or " + RequestKeys.MIME_NDJSON + ".");
+            array.forEach(items::add);
+        }
+        if (items.stream().filter(Objects::nonNull).count() > MAX_BULK_CARDS)
+            throw new InvalidInputException("A bulk import may contain at most " + MAX_BULK_CARDS + " cards.");
+        return items;
+    }
+
+    /**
+     * Validates one card of a bulk import and creates the unsaved card with its question and answers.
+     *
+     * @param index  of the card in the request
+     * @param node   json of the card
+     * @param author of the card
+     * @param deck   the card is added to
+     * @return card with its requested tag ids and names
+     * @throws InvalidInputException if the card is incomplete or references existing questions/answers
+     */
+    private static PendingCard parseBulkCard(int index, JsonNode node, User author, CardDeck deck) throws InvalidInputException {
+        if (!node.isObject())
+            throw new InvalidInputException("Expected a card object.");
+        JsonNode questionNode = node.get(JsonKeys.FLASHCARD_QUESTION);
+        if (questionNode == null || !questionNode.isObject() || questionNode.has(JsonKeys.QUESTION_ID))
+            throw new InvalidInputException("Every card needs a complete question object with the following components: " + JsonKeys.QUESTION_JSON_ELEMENTS);
+
+        try {
+            Question question = Question.parseQuestion(author, questionNode);
+            List<Answer> answers = new ArrayList<>();
+            if (node.has(JsonKeys.FLASHCARD_ANSWERS)) {
+                for (JsonNode answerNode : node.get(JsonKeys.FLASHCARD_ANSWERS)) {
+                    if (answerNode.has(JsonKeys.ANSWER_ID))
+                        throw new InvalidInputException("An answerId is not accepted while creating new cards, " +
+                                "please provide a complete answer object with the following components: " + JsonKeys.ANSWER_JSON_ELEMENTS);
+                    Answer answer = parseAnswer(answerNode);
+                    answer.setAuthor(author);
+                    answers.add(answer);
+                }
+            }
+            boolean multipleChoice = node.has(JsonKeys.FLASHCARD_MULTIPLE_CHOICE) && node.get(JsonKeys.FLASHCARD_MULTIPLE_CHOICE).asBoolean();
+            PendingCard card = new PendingCard(index, new FlashCard(author, question, answers, deck, multipleChoice));
+
+            if (node.has(JsonKeys.FLASHCARD_TAGS)) {
+                for (JsonNode tagNode : node.get(JsonKeys.FLASHCARD_TAGS)) {
+                    if (tagNode.has(JsonKeys.TAG_ID))
+                        card.tagIds.add(tagNode.get(JsonKeys.TAG_ID).asLong());
+                    else if (tagNode.hasNonNull(JsonKeys.TAG_NAME) && !tagNode.get(JsonKeys.TAG_NAME).asText().isEmpty())
+                        card.tagNames.add(tagNode.get(JsonKeys.TAG_NAME).asText());
+                    else
+                        throw new InvalidInputException("Every tag needs either a " + JsonKeys.TAG_ID + " or a " + JsonKeys.TAG_NAME + ".");
+                }
+            }
+            return card;
+        } catch (URISyntaxException e) {
+            throw new InvalidInputException("Malformed uri: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Unsaved card of a bulk import and the tags it references.
+     */
+    private static class PendingCard {
+        private final int index;
+        private final FlashCard card;
+        private final Set<Long> tagIds = new LinkedHashSet<>();
+        private final Set<String> tagNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+        PendingCard(int index, FlashCard card) {
+            this.index = index;
+            this.card = card;
+        }
+    }
+
     /**
      * Retrieve all answers, passes the author as argument if the author is responsible for all created answers.
      * If no Author is specified (Null) we will parse the authors from the sent json.
@@ -7,6 +7,7 @@ import models.msg.AbstractMessage;
 import models.msg.DeckChallengeMessage;
 import play.Logger;
 import util.JsonKeys;
+import util.KeysetPagination;
 import util.RequestKeys;
 import util.UrlParamHelper;
 import util.UserOperations;
@@ -30,11 +31,12 @@ public class MessagingRepository {
     /**
      * Receive all messages for one user, can be filtered by specifying a start date where only Messages after this date
      * will be returned. One authenticated user is only able to receive messages for himself.
+     * Both variants can be paged with ?limit=n&after=id, see {@link KeysetPagination}.
      *
      * @param email of the user
      * @return list of messages (can be empty).
      */
-    public static List<AbstractMessage> getMessages(String email) throws NotAuthorizedException, ParseException {
+    public static List<AbstractMessage> getMessages(String email) throws NotAuthorizedException, ParseException, InvalidInputException {
         List<AbstractMessage> messages;
         User user = UserRepository.findUserByEmail(email);
         if(user==null)
@@ -45,10 +47,10 @@ public class MessagingRepository {
             DateFormat format = new SimpleDateFormat(JsonKeys.DATE_FORMAT);
             Date date = format.parse(textDate);
             Logger.debug("Got date=" + date);
-            messages = AbstractMessage.find.where().and(eq(JsonKeys.MESSAGE_RECIPIENT,user),between(JsonKeys.DATE_CREATED,date,new Date())).findList();
+            messages = KeysetPagination.findList(AbstractMessage.find.where().and(eq(JsonKeys.MESSAGE_RECIPIENT,user),between(JsonKeys.DATE_CREATED,date,new Date())), AbstractMessage::getId);
 
         } else {
-            messages = AbstractMessage.find.where().eq(JsonKeys.MESSAGE_RECIPIENT, user).findList();
+            messages = KeysetPagination.findList(AbstractMessage.find.where().eq(JsonKeys.MESSAGE_RECIPIENT, user), AbstractMessage::getId);
         }
         return messages;
 
@@ -10,6 +10,7 @@ import models.rating.Rating;
 import play.Logger;
 import play.mvc.BodyParser;
 import util.JsonKeys;
+import util.KeysetPagination;
 import util.RequestKeys;
 import util.UserOperations;
 import util.exceptions.DuplicateKeyException;
@@ -30,10 +31,12 @@ public class RatingRepository {
      * Returns a list of all Ratings per default. When needed, the caller can pre-filter the list via:
      * {@link RequestKeys#FLASHCARD_RATING}, {@link RequestKeys#ANSWER_RATING}, {@link RequestKeys#ANSWER_ID},
      * {@link RequestKeys#FLASHCARD_ID}, {@link RequestKeys#USER_ID}.
+     * The unfiltered list can be paged with ?limit=n&after=id, see {@link KeysetPagination}.
      *
      * @return a (filtered) list of Ratings
+     * @throws InvalidInputException if the pagination parameters are invalid
      */
-    public static List<Rating> getRatings(Map<String, String[]> urlParams) {
+    public static List<Rating> getRatings(Map<String, String[]> urlParams) throws InvalidInputException {
         List<Rating> ratingList;
         //by type
         if (urlParams.containsKey(RequestKeys.FLASHCARD_RATING)) {
@@ -76,7 +79,7 @@ public class RatingRepository {
             ratingList = Rating.find.where().eq(JsonKeys.ANSWER_ID, id).findList();
             return ratingList;
         } else {
-            ratingList = Rating.find.all();
+            ratingList = KeysetPagination.findList(Rating.find.where(), Rating::getId);
             return ratingList;
         }
     }
@@ -0,0 +1,201 @@
+package repositories;
+
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.SqlQuery;
+import com.avaje.ebean.SqlRow;
+import com.avaje.ebean.Transaction;
+import models.FlashCard;
+import models.User;
+import models.statistics.CardStatistics;
+import models.statistics.StudySchedule;
+import play.Logger;
+import util.JsonKeys;
+import util.RequestKeys;
+import util.UrlParamHelper;
+import util.exceptions.InvalidInputException;
+import util.exceptions.NotAuthorizedException;
+
+import javax.persistence.PersistenceException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Leitner schedule of the cards a user studies. Every new {@link CardStatistics} moves the card of the user
+ *         into its drawer, the card is due again {@link #INTERVAL_DAYS} days after the end of the session. The due
+ *         dates are kept in one {@link StudySchedule} per (user, card), thus the next due cards are read with one query
+ *         on the index (user, dueDate) instead of scanning all statistics of the user.
+ */
+public class StudyScheduleRepository {
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 500;
+    //days until a card is due again, indexed by drawer. Higher drawers use the last interval.
+    private static final int[] INTERVAL_DAYS = {0, 1, 2, 4, 8, 16, 32};
+
+    /**
+     * Returns the cards that are due for the logged in user, the most overdue first. Supports <code>?deckId=x</code>
+     * to only return cards of one deck and <code>?limit=n</code> (default {@link #DEFAULT_LIMIT}).
+     *
+     * @param email of the logged in user
+     * @return due cards, can be empty
+     * @throws NotAuthorizedException if the user does not exist
+     * @throws InvalidInputException  if deckId or limit are no valid numbers
+     */
+    public static List<FlashCard> getDueCards(String email) throws NotAuthorizedException, InvalidInputException {
+        User user = UserRepository.findUserByEmail(email);
+        if (user == null)
+            throw new NotAuthorizedException("User has to be logged in to retrieve due cards.");
+        int limit = parseLimit(UrlParamHelper.getValue(RequestKeys.LIMIT));
+        Long deckId = null;
+        if (UrlParamHelper.checkForKey(RequestKeys.DECK_ID)) {
+            try {
+                deckId = Long.parseLong(UrlParamHelper.getValue(RequestKeys.DECK_ID));
+            } catch (NumberFormatException e) {
+                throw new InvalidInputException("The parameter " + RequestKeys.DECK_ID + " has to be a number, got: "
+                        + UrlParamHelper.getValue(RequestKeys.DECK_ID) + ".");
+            }
+        }
+
+        String sql = "select s." + JsonKeys.STATISTICS_CARD + " as cardId from " + JsonKeys.SCHEDULE_TABLE_NAME + " s";
+        if (deckId != null)
+            sql += " join flashCard c on c." + JsonKeys.FLASHCARD_ID + " = s." + JsonKeys.STATISTICS_CARD
+                    + " and c." + JsonKeys.FLASHCARD_PARENT_ID + " = :deckId";
+        sql += " where s." + JsonKeys.STATISTICS_USER + " = :userId and s." + JsonKeys.SCHEDULE_DUE + " <= :now"
+                + " order by s." + JsonKeys.SCHEDULE_DUE + " asc";
+
+        SqlQuery query = Ebean.createSqlQuery(sql)
+                .setParameter("userId", user.getId())
+                .setParameter("now", new Date());
+        if (deckId != null)
+            query.setParameter("deckId", deckId);
+        List<Long> cardIds = query.setMaxRows(limit).findList().stream()
+                .map(row -> row.getLong("cardId"))
+                .collect(Collectors.toList());
+        if (JsonKeys.debugging)
+            Logger.debug("Due cards for user=" + user.getId() + " deck=" + deckId + ": " + cardIds);
+        if (cardIds.isEmpty())
+            return new ArrayList<>();
+
+        //the cards are loaded in one query, keep the order of their due dates
+        Map<Long, FlashCard> cards = FlashCardRepository.summaryQuery().where().idIn(cardIds).findList().stream()
+                .collect(Collectors.toMap(FlashCard::getId, Function.identity()));
+        return cardIds.stream().map(cards::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * Moves the card of the statistic into the drawer of the statistic and computes its next due date. Creates the
+     * schedule of the (user, card) if there is none yet.
+     *
+     * @param statistics a saved statistic
+     * @return the updated schedule
+     */
+    public static StudySchedule record(CardStatistics statistics) {
+        Date due = dueDate(statistics.getDrawer(), statistics.getStartDate(), statistics.getEndDate());
+        StudySchedule schedule = find(statistics.getUser(), statistics.getCard());
+        if (schedule == null) {
+            schedule = new StudySchedule(statistics.getUser(), statistics.getCard(), statistics.getDrawer(), due);
+            try {
+                schedule.save();
+                return schedule;
+            } catch (PersistenceException e) {
+                //a concurrent request created the schedule in the meantime, update that one instead
+                schedule = find(statistics.getUser(), statistics.getCard());
+                if (schedule == null)
+                    throw e;
+            }
+        }
+        schedule.setDrawer(statistics.getDrawer());
+        schedule.setDueDate(due);
+        schedule.update();
+        return schedule;
+    }
+
+    /**
+     * Records a batch of saved statistics. Only the last statistic of every (user, card) in the batch decides the
+     * schedule, thus a card that was answered several times in one session is updated once.
+     *
+     * @param statistics saved statistics in the order they were created
+     */
+    public static void recordAll(List<CardStatistics> statistics) {
+        Map<String, CardStatistics> latest = new LinkedHashMap<>();
+        for (CardStatistics cardStatistics : statistics) {
+            latest.put(cardStatistics.getUser().getId() + ":" + cardStatistics.getCard().getId(), cardStatistics);
+        }
+        latest.values().forEach(StudyScheduleRepository::record);
+    }
+
+    /**
+     * Computes the date when a card in the drawer is due again.
+     *
+     * @param drawer    of the card, >= 0
+     * @param startDate start of the session, may be null
+     * @param endDate   end of the session, may be null
+     * @return the due date
+     */
+    public static Date dueDate(int drawer, Date startDate, Date endDate) {
+        Date studied = endDate != null ? endDate : startDate != null ? startDate : new Date();
+        int days = INTERVAL_DAYS[Math.max(0, Math.min(drawer, INTERVAL_DAYS.length - 1))];
+        return new Date(studied.getTime() + TimeUnit.DAYS.toMillis(days));
+    }
+
+    /**
+     * Creates the schedules of all (user, card) pairs that have statistics but no schedule yet, e.g. statistics that
+     * were created before the schedule existed. The latest statistic of every pair decides the due date.
+     *
+     * @return number of created schedules
+     */
+    public static int backfill() {
+        String sql = "select s." + JsonKeys.STATISTICS_USER + " as userId, s." + JsonKeys.STATISTICS_CARD + " as cardId, s."
+                + JsonKeys.STATISTICS_DRAWER + " as drawer, s." + JsonKeys.DATE_START + " as startDate, s."
+                + JsonKeys.DATE_END + " as endDate from card_statistics s left join " + JsonKeys.SCHEDULE_TABLE_NAME
+                + " p on p." + JsonKeys.STATISTICS_USER + " = s." + JsonKeys.STATISTICS_USER + " and p."
+                + JsonKeys.STATISTICS_CARD + " = s." + JsonKeys.STATISTICS_CARD + " where p." + JsonKeys.SCHEDULE_ID
+                + " is null and s." + JsonKeys.STATISTICS_USER + " is not null and s." + JsonKeys.STATISTICS_CARD
+                + " is not null order by s." + JsonKeys.STATISTICS_ID + " asc";
+        //ordered by id, thus the latest statistic of a pair replaces the older ones
+        Map<String, SqlRow> latest = new LinkedHashMap<>();
+        for (SqlRow row : Ebean.createSqlQuery(sql).findList()) {
+            latest.put(row.getLong("userId") + ":" + row.getLong("cardId"), row);
+        }
+        if (latest.isEmpty())
+            return 0;
+
+        Transaction transaction = Ebean.beginTransaction();
+        try {
+            transaction.setBatchMode(true);
+            for (SqlRow row : latest.values()) {
+                int drawer = row.getInteger("drawer") == null ? 0 : row.getInteger("drawer");
+                Date due = dueDate(drawer, row.getTimestamp("startDate"), row.getTimestamp("endDate"));
+                new StudySchedule(User.find.ref(row.getLong("userId")), FlashCard.find.ref(row.getLong("cardId")),
+                        drawer, due).save();
+            }
+            transaction.commit();
+        } finally {
+            transaction.end();
+        }
+        return latest.size();
+    }
+
+    private static StudySchedule find(User user, FlashCard card) {
+        return StudySchedule.finder.where()
+                .eq(JsonKeys.STATISTICS_USER, user)
+                .eq(JsonKeys.STATISTICS_CARD, card)
+                .findUnique();
+    }
+
+    private static int parseLimit(String limitVal) throws InvalidInputException {
+        if (limitVal == null)
+            return DEFAULT_LIMIT;
+        try {
+            int limit = Integer.parseInt(limitVal);
+            if (limit <= 0)
+                throw new InvalidInputException("The parameter " + RequestKeys.LIMIT + " has to be >0.");
+            return Math.min(limit, MAX_LIMIT);
+        } catch (NumberFormatException e) {
+            throw new InvalidInputException("The parameter " + RequestKeys.LIMIT + " has to be a number, got: " + limitVal + ".");
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package repositories;
 
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.ExpressionList;
+import com.avaje.ebean.SqlQuery;
+import com.avaje.ebean.SqlUpdate;
 import com.fasterxml.jackson.databind.JsonNode;
 import models.FlashCard;
 import models.Tag;
@@ -11,8 +15,16 @@ import util.exceptions.InvalidInputException;
 import util.exceptions.ParameterNotSupportedException;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 /**
  * @author Fabian Widmann
@@ -22,52 +34,120 @@ public class TagRepository {
      * Retrieves all Tags.
      * Supports sorting by usage_count asc,desc -> ?sortBy=usageCount%20asc
      * Supports filtering by specifying a starting pattern that should be matched via ?startsWith=h -> h* is matched
+     * Supports paging via ?start=x&size=y
+     * Supports autocompletion via ?top=n, which returns the n most used tags (matching ?startsWith if set), ties are
+     * ordered by name desc so the index on (usageCount, tagName) can be read backwards without a filesort
+     * <p>
+     * Sorting, offset and limit are applied by the database, without ?sortBy the tags are ordered by id.
      *
      * @return HTTPResult
      */
     public static List<Tag> getTags() throws ParameterNotSupportedException {
         String requestInformation = "";
-        List<Tag> tagList;
-
         int buffer = -1;
         int start = 0;
+        int top = -1;
 
         try {
             if (UrlParamHelper.checkForKey(RequestKeys.SIZE))
                 buffer = Integer.parseInt(UrlParamHelper.getValue(RequestKeys.SIZE));
 
             if (UrlParamHelper.checkForKey(RequestKeys.START))
-                start = Math.max(0,Integer.parseInt(UrlParamHelper.getValue(RequestKeys.START)));
-        }catch (NumberFormatException e){
-            throw new ParameterNotSupportedException("Invalid number for '?size=y' or '?start=x' request parameter. Please re-check your request");
+                start = Math.max(0, Integer.parseInt(UrlParamHelper.getValue(RequestKeys.START)));
+
+            if (UrlParamHelper.checkForKey(RequestKeys.TOP))
+                top = Integer.parseInt(UrlParamHelper.getValue(RequestKeys.TOP));
+        } catch (NumberFormatException e) {
+            throw new ParameterNotSupportedException("Invalid number for '?size=y', '?start=x' or '?top=n' request parameter. Please re-check your request");
         }
-        Logger.debug("start="+start+", buffer="+buffer);
+        Logger.debug("start=" + start + ", buffer=" + buffer + ", top=" + top);
 
+        ExpressionList<Tag> query = Tag.find.where();
         if (UrlParamHelper.checkForKey(RequestKeys.STARTS_WITH)) {
             requestInformation = UrlParamHelper.getValue(RequestKeys.STARTS_WITH);
             Logger.debug("startswith=" + requestInformation);
             //match everything starting with the requestinformation -> searching for he* should return hell,help, ...
-            tagList = Tag.find.where().like(JsonKeys.TAG_NAME, requestInformation + "%").findList();
-        } else
-            tagList = Tag.find.all();
+            query = query.startsWith(JsonKeys.TAG_NAME, requestInformation);
+        }
 
+        if (top >= 0) {
+            return query.orderBy(JsonKeys.TAG_USAGE_COUNT + " desc, name desc")
+                    .setMaxRows(top)
+                    .findList();
+        }
 
+        boolean sorted = false;
         if (UrlParamHelper.checkForKey(RequestKeys.SORT_BY)) {
             requestInformation = UrlParamHelper.getValue(RequestKeys.SORT_BY);
             if (requestInformation.toUpperCase().contains(RequestKeys.USAGE_COUNT.toUpperCase())) {
                 Logger.debug("Sortby=" + requestInformation);
-
-                tagList.forEach(tag -> tag.updateUsageCount());
-                Collections.sort(tagList);
-                if (requestInformation.toUpperCase().contains(RequestKeys.DESC))
-                    Collections.reverse(tagList);
+                String direction = requestInformation.toUpperCase().contains(RequestKeys.DESC) ? "desc" : "asc";
+                query.orderBy(JsonKeys.TAG_USAGE_COUNT + " " + direction + ", name " + direction);
+                sorted = true;
             }
         }
+        //offsets are only stable on a deterministic order
+        if (!sorted)
+            query.orderBy("id asc");
 
-        //.subList(Math.max(0, start), Math.min(tagList.size(), start + buffer)
-        if (buffer == -1)
-            buffer = tagList.size();
-        return tagList.subList(Math.min(Math.max(0, start),tagList.size()), Math.min(tagList.size(), start + buffer));
+        if (buffer == 0)
+            return new ArrayList<>();
+        query.setFirstRow(start);
+        if (buffer > 0)
+            query.setMaxRows(buffer);
+        return query.findList();
+    }
+
+    /**
+     * Atomically changes {@link JsonKeys#TAG_USAGE_COUNT} of the given tags by delta, has to be called whenever links in
+     * the {@link JsonKeys#CARD_TAG_JOIN_TABLE} are created (+1) or removed (-1). A tag that occurs multiple times
+     * in the collection is changed once per occurrence.
+     *
+     * @param tags  that gained or lost links
+     * @param delta change per occurrence
+     */
+    public static void adjustUsageCount(Collection<Tag> tags, int delta) {
+        if (tags == null || tags.isEmpty() || delta == 0)
+            return;
+        Map<Long, Integer> deltaPerTag = new HashMap<>();
+        tags.stream().filter(Objects::nonNull).forEach(tag -> deltaPerTag.merge(tag.getId(), delta, Integer::sum));
+        //one statement per distinct delta, usually there is only one.
+        Map<Integer, List<Long>> tagsPerDelta = deltaPerTag.entrySet().stream()
+                .collect(Collectors.groupingBy(Map.Entry::getValue, Collectors.mapping(Map.Entry::getKey, Collectors.toList())));
+        tagsPerDelta.forEach((change, ids) -> {
+            SqlUpdate update = Ebean.createSqlUpdate("update tag set " + JsonKeys.TAG_USAGE_COUNT
+                    + " = greatest(" + JsonKeys.TAG_USAGE_COUNT + " + :delta, 0) where " + JsonKeys.TAG_ID + " in (:ids)");
+            update.setParameter("delta", change);
+            update.setParameter("ids", ids);
+            update.execute();
+        });
+    }
+
+    /**
+     * Changes the usage count for the difference between the old and new tags of one card.
+     *
+     * @param oldTags tags before the change
+     * @param newTags tags after the change
+     */
+    public static void adjustUsageCount(Collection<Tag> oldTags, Collection<Tag> newTags) {
+        Set<Long> oldIds = oldTags.stream().filter(Objects::nonNull).map(Tag::getId).collect(Collectors.toSet());
+        Set<Long> newIds = newTags.stream().filter(Objects::nonNull).map(Tag::getId).collect(Collectors.toSet());
+        adjustUsageCount(newTags.stream().filter(t -> t != null && !oldIds.contains(t.getId()))
+                .collect(Collectors.toList()), 1);
+        adjustUsageCount(oldTags.stream().filter(t -> t != null && !newIds.contains(t.getId()))
+                .collect(Collectors.toList()), -1);
+    }
+
+    /**
+     * Recounts the links of every tag in the {@link JsonKeys#CARD_TAG_JOIN_TABLE} and fixes all counters that drifted
+     * from the real value.
+     *
+     * @return number of corrected tags
+     */
+    public static int reconcileUsageCounts() {
+        String count = "(select count(*) from " + JsonKeys.CARD_TAG_JOIN_TABLE + " j where j." + JsonKeys.TAG_ID + " = tag." + JsonKeys.TAG_ID + ")";
+        return Ebean.createSqlUpdate("update tag set " + JsonKeys.TAG_USAGE_COUNT + " = " + count
+                + " where " + JsonKeys.TAG_USAGE_COUNT + " <> " + count).execute();
     }
 
     /**
@@ -91,23 +171,107 @@ public class TagRepository {
         return Tag.find.byId(id);
     }
 
-    public static List<FlashCard> getCardsByTagArray(List<Long> ids, List<String> names) {
-        List<FlashCard> cardList=new ArrayList<>();
-        List<Tag> tagList = retrieveTags(ids, names);
+    /**
+     * Returns the cards that match a combination of tags. The set operations are done by the database over the
+     * {@link JsonKeys#CARD_TAG_JOIN_TABLE}, only the matching cards are loaded afterwards.
+     * - AND: cards that are linked to every given tag (group by card having count = number of tags)
+     * - OR: cards that are linked to at least one of the given tags
+     * - NOT: cards that are linked to one of the excluded tags are removed from the result. At least one tag has to be
+     * included, otherwise the result would be almost every card.
+     * With AND an unknown tag id or name matches no card, with OR and NOT unknown tags are ignored.
+     *
+     * @param ids           of tags to include
+     * @param names         of tags to include
+     * @param excludedIds   of tags to exclude
+     * @param excludedNames of tags to exclude
+     * @param matchAll      true for AND, false for OR
+     * @return list of matching cards ordered by id
+     * @throws InvalidInputException if no tag to include was given
+     */
+    public static List<FlashCard> getCardsByTagArray(List<Long> ids, List<String> names, List<Long> excludedIds,
+                                                     List<String> excludedNames, boolean matchAll)
+            throws InvalidInputException {
+        if (ids.isEmpty() && names.isEmpty())
+            throw new InvalidInputException("Excluding tags requires at least one tag to include via the parameters '"
+                    + RequestKeys.GET_BY_ID + "' or '" + RequestKeys.GET_BY_NAME + "'.");
+        //a missing tag can not be matched by any card in AND mode
+        if (matchAll && !allTagsExist(ids, names))
+            return new ArrayList<>();
+        List<Long> included = retrieveTagIds(ids, names);
+        List<Long> excluded = retrieveTagIds(excludedIds, excludedNames);
+        Logger.debug("Tags included=" + included + " excluded=" + excluded + " matchAll=" + matchAll);
 
-        Logger.debug("Tags found=" + tagList);
-        for (int i = 0; i < tagList.size(); i++) {
-            List<FlashCard> retrievedCardList = tagList.get(i).getCards();
-            if(cardList.isEmpty()){
-                cardList=retrievedCardList;
-            }
-            Logger.debug("i="+i+" | retrievedCards: ");
-            FlashCard tmp = retrievedCardList.get(i);
-            cardList.retainAll(retrievedCardList); // keeps only values that are both in cardList AND retrievedCardlist
-            Logger.debug("retrievedList="+cardList);
+        //none of the requested tags exists, thus no card can match
+        if (included.isEmpty())
+            return new ArrayList<>();
+
+        String sql = "select j." + JsonKeys.FLASHCARD_ID + " as cardId from " + JsonKeys.CARD_TAG_JOIN_TABLE + " j"
+                + " where j." + JsonKeys.TAG_ID + " in (:included)";
+        if (!excluded.isEmpty())
+            sql += " and j." + JsonKeys.FLASHCARD_ID + " not in (" + excludedCardsSubQuery() + ")";
+        sql += " group by j." + JsonKeys.FLASHCARD_ID;
+        if (matchAll)
+            sql += " having count(distinct j." + JsonKeys.TAG_ID + ") = :tagCount";
+
+        SqlQuery query = Ebean.createSqlQuery(sql);
+        query.setParameter("included", included);
+        if (matchAll)
+            query.setParameter("tagCount", included.size());
+        if (!excluded.isEmpty())
+            query.setParameter("excluded", excluded);
 
+        List<Long> cardIds = query.findList().stream()
+                .map(row -> row.getLong("cardId"))
+                .collect(Collectors.toList());
+        if (cardIds.isEmpty())
+            return new ArrayList<>();
+        return FlashCardRepository.summaryQuery().where().idIn(cardIds).orderBy("id asc").findList();
+    }
+
+    private static String excludedCardsSubQuery() {
+        return "select x." + JsonKeys.FLASHCARD_ID + " from " + JsonKeys.CARD_TAG_JOIN_TABLE + " x where x."
+                + JsonKeys.TAG_ID + " in (:excluded)";
+    }
+
+    /**
+     * Checks whether every given tag id and name belongs to an existing tag with at most two queries.
+     *
+     * @param ids   of tags
+     * @param names of tags
+     * @return false if one of the tags does not exist
+     */
+    private static boolean allTagsExist(List<Long> ids, List<String> names) {
+        if (!ids.isEmpty()) {
+            Set<Long> foundIds = Tag.find.where().idIn(ids).findList().stream()
+                    .map(Tag::getId)
+                    .collect(Collectors.toSet());
+            if (!foundIds.containsAll(ids))
+                return false;
+        }
+        if (!names.isEmpty()) {
+            //names are compared case insensitive by the database collation
+            Set<String> foundNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            Tag.find.where().in(JsonKeys.TAG_NAME, names).findList().forEach(tag -> foundNames.add(tag.getName()));
+            if (!foundNames.containsAll(names))
+                return false;
         }
-        return cardList;
+        return true;
+    }
+
+    /**
+     * Resolves the given tag ids and names to the distinct ids of existing tags with at most two queries.
+     *
+     * @param ids   of tags
+     * @param names of tags
+     * @return ids of the existing tags
+     */
+    private static List<Long> retrieveTagIds(List<Long> ids, List<String> names) {
+        Set<Long> tagIds = new LinkedHashSet<>();
+        if (!ids.isEmpty())
+            Tag.find.where().idIn(ids).findList().forEach(tag -> tagIds.add(tag.getId()));
+        if (!names.isEmpty())
+            Tag.find.where().in(JsonKeys.TAG_NAME, names).findList().forEach(tag -> tagIds.add(tag.getId()));
+        return new ArrayList<>(tagIds);
     }
 
     /**
@@ -137,13 +301,26 @@ public class TagRepository {
         List<Tag> tags = new ArrayList<>();
         //get the specific nods in the json
         JsonNode tagNode = json.findValue(JsonKeys.FLASHCARD_TAGS);
+        //resolve every referenced id and name with one query each instead of one query per node
+        List<Long> requestedIds = new ArrayList<>();
+        List<String> requestedNames = new ArrayList<>();
+        for (JsonNode node : tagNode) {
+            if (node.has(JsonKeys.TAG_ID))
+                requestedIds.add(node.get(JsonKeys.TAG_ID).asLong());
+            else if (node.has(JsonKeys.TAG_NAME))
+                requestedNames.add(node.get(JsonKeys.TAG_NAME).asText());
+        }
+        Map<Long, Tag> tagsById = BatchFetcher.byIds(Tag.find, requestedIds, Tag::getId);
+        //names are compared case insensitive by the database collation
+        Map<String, Tag> tagsByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        tagsByName.putAll(BatchFetcher.byProperty(Tag.find, JsonKeys.TAG_NAME, requestedNames, Tag::getName));
         // Loop through all objects in the values associated with the
         // "users" key.
         for (JsonNode node : tagNode) {
             // when a user id is found we will get the object and add them to the userList.
             Logger.debug("Node=" + node);
             if (node.has(JsonKeys.TAG_ID)) {
-                Tag found = Tag.find.byId(node.get(JsonKeys.TAG_ID).asLong());
+                Tag found = tagsById.get(node.get(JsonKeys.TAG_ID).asLong());
                 if (found != null) {
                     System.out.println(">> tag: " + found);
                     if (!tags.contains(found))
@@ -152,13 +329,15 @@ public class TagRepository {
 
             } else {
                 Logger.debug("got name: " + node.get(JsonKeys.TAG_NAME).asText());
-                Tag lookupTag = Tag.find.where().eq(JsonKeys.TAG_NAME, node.get(JsonKeys.TAG_NAME).asText()).findUnique();
+                Tag lookupTag = tagsByName.get(node.get(JsonKeys.TAG_NAME).asText());
                 Logger.debug("LookupTag=" + lookupTag);
                 //check if the tag is unique
                 if (lookupTag == null) {
                     Tag tmpT = TagRepository.parseTag(node);
 
                     tmpT.save();
+                    //the same new name may occur multiple times in one request
+                    tagsByName.put(tmpT.getName(), tmpT);
                     System.out.println(">> found new tag: " + tmpT);
                     //save our new tag so that no foreign constraint fails
                     //((`flashcards`.`card_tag`, CONSTRAINT `fk_card_tag_tag_02` FOREIGN KEY (`tag_id`) REFERENCES `tag` (`tagId`))]]
@@ -186,14 +365,16 @@ public class TagRepository {
      */
     public static List<Tag> retrieveTags(List<Long> ids, List<String> names) {
         List<Tag> tags = new ArrayList<>();
-        Tag tmpTag;
+        Map<Long, Tag> tagsById = BatchFetcher.byIds(Tag.find, ids, Tag::getId);
+        Map<String, Tag> tagsByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        tagsByName.putAll(BatchFetcher.byProperty(Tag.find, JsonKeys.TAG_NAME, names, Tag::getName));
         for (Long id : ids) {
-            tmpTag = Tag.find.byId(id);
+            Tag tmpTag = tagsById.get(id);
             if (tmpTag != null)
                 tags.add(tmpTag);
         }
         for (String tagName : names) {
-            tmpTag = Tag.find.where().eq(JsonKeys.TAG_NAME, tagName).findUnique();
+            Tag tmpTag = tagsByName.get(tagName);
             Logger.debug("retrieveTags: found tmpTag="+tmpTag);
 
             if (tmpTag != null)
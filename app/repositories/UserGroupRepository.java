@@ -2,14 +2,16 @@ package repositories;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import models.CardDeck;
+import models.CardDeckSummary;
 import models.User;
 import models.UserGroup;
 import play.Logger;
 import util.JsonKeys;
+import util.JsonUtil;
 import util.RequestKeys;
 import util.UrlParamHelper;
 import util.UserOperations;
+import util.cache.GroupMembershipCache;
 import util.exceptions.InvalidInputException;
 import util.exceptions.NotAuthorizedException;
 import util.exceptions.ObjectNotFoundException;
@@ -36,14 +38,16 @@ public class UserGroupRepository {
     }
 
     /**
-     * Retrieve all Carddecks from one group.
+     * Retrieve summaries of all Carddecks from one group.
      *
-     * @param id of the user
-     * @return list of CardDecks
+     * @param id of the group
+     * @return list of CardDeck summaries
      */
-    public static List<CardDeck> getDecks(Long id) throws NullPointerException {
-        List<CardDeck> decks = UserGroup.find.byId(id).getDecks();
-        return decks;
+    public static List<CardDeckSummary> getDecks(Long id) throws NullPointerException {
+        if (UserGroup.find.byId(id) == null)
+            throw new NullPointerException();
+        return CardDeckRepository.summarize(CardDeckRepository.summaryQuery()
+                .where().eq(JsonKeys.CARDDECK_GROUP + ".id", id).orderBy("id asc").findList());
     }
 
     /**
@@ -97,7 +101,7 @@ public class UserGroupRepository {
      * @throws ObjectNotFoundException if one or more users do not exist
      */
     public static UserGroup addUserGroup(JsonNode json) throws ObjectNotFoundException {
-        ObjectMapper mapper = new ObjectMapper();
+        ObjectMapper mapper = JsonUtil.mapper();
 
         UserGroup requestGroup = mapper.convertValue(json, UserGroup.class);
         //we do not want the app to send complete users, thus the mapper cant create the list from itself.
@@ -110,12 +114,19 @@ public class UserGroupRepository {
             JsonNode users = json.findValue(JsonKeys.GROUP_USERS);
             if (users != null) {
                 if (JsonKeys.debugging) Logger.debug("Users=" + users);
+                //load every referenced user with one query
+                List<Long> userIds = new ArrayList<>();
+                users.forEach(n -> {
+                    if (n.has(JsonKeys.USER_ID))
+                        userIds.add(n.get(JsonKeys.USER_ID).asLong());
+                });
+                Map<Long, User> usersById = BatchFetcher.byIds(User.find, userIds, User::getId);
 
                 // Loop through all objects in the values associated with the
                 // JsonKeys.GROUP_USERS key.
                 for (JsonNode n : users) {
                     if (n.has(JsonKeys.USER_ID)) {
-                        User u = User.find.byId(n.get(JsonKeys.USER_ID).asLong());
+                        User u = usersById.get(n.get(JsonKeys.USER_ID).asLong());
                         if (u != null)
                             userList.add(u);
                         else
@@ -130,6 +141,8 @@ public class UserGroupRepository {
             }
         }
         group.save();
+        //the memberships of the new group are persisted now, drop the cached ones afterwards.
+        GroupMembershipCache.invalidateAll();
         if (JsonKeys.debugging) Logger.debug("group=" + group);
 
         return group;
@@ -167,7 +180,7 @@ public class UserGroupRepository {
             appendMode = Boolean.parseBoolean(urlParams.get(RequestKeys.APPEND)[0]);
         }
 
-        ObjectMapper mapper = new ObjectMapper();
+        ObjectMapper mapper = JsonUtil.mapper();
         UserGroup requestGroup = mapper.convertValue(json, UserGroup.class);
 
         if (JsonKeys.debugging) Logger.debug("Update group with details: " + requestGroup
@@ -195,11 +208,17 @@ public class UserGroupRepository {
                 // Loop through all objects in the values associated with the
                 // JsonKeys.GROUP_USERS key.
                 if (appendMode) {
+                    List<Long> userIds = new ArrayList<>();
+                    users.forEach(n -> {
+                        if (n.has(JsonKeys.USER_ID))
+                            userIds.add(n.get(JsonKeys.USER_ID).asLong());
+                    });
+                    Map<Long, User> usersById = BatchFetcher.byIds(User.find, userIds, User::getId);
                     for (JsonNode node : users) {
                         // when a user id is found we will get the object and
                         // update the usergroup.
-                        if (node.has(JsonKeys.USER_ID) && User.find.byId(node.get(JsonKeys.USER_ID).asLong()) != null) {
-                            User u = User.find.byId(node.get(JsonKeys.USER_ID).asLong());
+                        if (node.has(JsonKeys.USER_ID) && usersById.get(node.get(JsonKeys.USER_ID).asLong()) != null) {
+                            User u = usersById.get(node.get(JsonKeys.USER_ID).asLong());
 //                        u.addUserGroup(groupToUpdate);
                             groupToUpdate.addUser(u);
                         } else {
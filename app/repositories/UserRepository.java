@@ -2,13 +2,21 @@ package repositories;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import models.RankedUser;
 import models.User;
 import models.UserGroup;
 import play.Logger;
 import play.data.validation.Constraints;
 import util.JsonKeys;
+import util.JsonUtil;
+import util.KeysetPagination;
+import util.Leaderboard;
 import util.RequestKeys;
+import util.UrlParamHelper;
 import util.UserOperations;
+import util.cache.AuthTokenCache;
+import util.cache.LeaderboardCache;
+import util.cache.TokenDenyList;
 import util.crypt.PasswordUtil;
 import util.exceptions.InvalidInputException;
 import util.exceptions.NotAuthorizedException;
@@ -19,11 +27,15 @@ import java.security.spec.InvalidKeySpecException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * @author Fabian Widmann
  */
 public class UserRepository {
+    public static final int LEADERBOARD_DEFAULT_LIMIT = 10;
+    public static final int LEADERBOARD_MAX_LIMIT = 100;
+
     /**
      * Parses the given json to a new User object, then saves it in the database.
      *
@@ -34,7 +46,7 @@ public class UserRepository {
      */
     public static User createUser(JsonNode json) throws InvalidInputException, ParameterNotSupportedException {
 
-        ObjectMapper mapper = new ObjectMapper();
+        ObjectMapper mapper = JsonUtil.mapper();
 
         if (json.has(JsonKeys.USER_GROUPS)) {
             throw new ParameterNotSupportedException("The user could not be created, a user group has to be set via PATCH or PUT. It may not be content of POST.");
@@ -65,6 +77,7 @@ public class UserRepository {
             if (User.find.where().eq(JsonKeys.USER_EMAIL, tmp.getEmail()).findUnique() == null) {
                 User u = new User(tmp);
                 u.save();
+                LeaderboardCache.put(u.getId(), u.getRating());
                 return u;
             }
         }
@@ -113,8 +126,12 @@ public class UserRepository {
             Logger.debug("uCheck="+checkEmail);
             Logger.debug("author="+author);
             if (JsonKeys.debugging) Logger.debug("does email exist? " + checkEmail);
-            if (checkEmail == null)
+            if (checkEmail == null) {
                 editedUser.setEmail(json.get(JsonKeys.USER_EMAIL).asText());
+                //cached tokens still point to the old email.
+                AuthTokenCache.invalidateUser(editedUser.getId());
+                TokenDenyList.denyUser(editedUser.getId());
+            }
             else if (author.getEmail().equals(checkEmail.getEmail())) {
                 Logger.debug("same email");
             } else
@@ -166,6 +183,8 @@ public class UserRepository {
         }
 
         editedUser.update();
+        if (json.has(JsonKeys.RATING))
+            LeaderboardCache.put(editedUser.getId(), editedUser.getRating());
         return editedUser;
     }
 
@@ -205,11 +224,13 @@ public class UserRepository {
 
     /**
      * Get all users, all users with a specific name or all users with the same email (should not happen).
+     * The complete list can be paged with ?limit=n&after=id, see {@link KeysetPagination}.
      *
      * @param urlParams parameters of the requests url
      * @return list of users
+     * @throws InvalidInputException if the pagination parameters are invalid
      */
-    public static List<User> getUsers(Map<String, String[]> urlParams) {
+    public static List<User> getUsers(Map<String, String[]> urlParams) throws InvalidInputException {
         if (urlParams.containsKey(RequestKeys.EMAIL)) {
             String email = urlParams.get(RequestKeys.EMAIL)[0];
             return User.find.where().eq(JsonKeys.USER_EMAIL, email).findList();
@@ -220,9 +241,62 @@ public class UserRepository {
 
             return User.find.where().eq(JsonKeys.USER_NAME, name).findList();
         } else {
-            List<User> u = User.find.all();
-            return User.find.all();
+            return KeysetPagination.findList(User.find.where(), User::getId);
+        }
+    }
+
+    /**
+     * Returns the users with the highest ratings from the {@link LeaderboardCache}, <code>?limit=n</code> sets the
+     * number of users (default {@link #LEADERBOARD_DEFAULT_LIMIT}, at most {@link #LEADERBOARD_MAX_LIMIT}).
+     *
+     * @return users ordered by rank
+     * @throws InvalidInputException if limit is no positive number
+     */
+    public static List<RankedUser> getLeaderboard() throws InvalidInputException {
+        int limit = LEADERBOARD_DEFAULT_LIMIT;
+        if (UrlParamHelper.checkForKey(RequestKeys.LIMIT)) {
+            try {
+                limit = Integer.parseInt(UrlParamHelper.getValue(RequestKeys.LIMIT));
+            } catch (NumberFormatException e) {
+                throw new InvalidInputException("The parameter " + RequestKeys.LIMIT + " has to be a number, got: "
+                        + UrlParamHelper.getValue(RequestKeys.LIMIT) + ".");
+            }
+            if (limit <= 0)
+                throw new InvalidInputException("The parameter " + RequestKeys.LIMIT + " has to be >0.");
+            limit = Math.min(limit, LEADERBOARD_MAX_LIMIT);
         }
+
+        List<Leaderboard.Entry> entries = LeaderboardCache.top(limit);
+        List<Long> ids = entries.stream().map(Leaderboard.Entry::getUserId).collect(Collectors.toList());
+        Map<Long, User> users = BatchFetcher.byIds(User.find, ids, User::getId);
+        List<RankedUser> leaderboard = new ArrayList<>();
+        for (Leaderboard.Entry entry : entries) {
+            //users deleted by another instance are skipped until the board is loaded again
+            User user = users.get(entry.getUserId());
+            if (user != null)
+                leaderboard.add(new RankedUser(entry.getRank(), user));
+        }
+        return leaderboard;
+    }
+
+    /**
+     * Returns the rank of one user from the {@link LeaderboardCache}.
+     *
+     * @param id of the user
+     * @return the user with its rank
+     * @throws NullPointerException if the user does not exist
+     */
+    public static RankedUser getRank(long id) throws NullPointerException {
+        User user = User.find.byId(id);
+        if (user == null)
+            throw new NullPointerException();
+        Leaderboard.Entry entry = LeaderboardCache.rank(id);
+        if (entry == null || entry.getRating() != user.getRating()) {
+            //created or changed by another instance, the board is corrected on its next load
+            LeaderboardCache.put(id, user.getRating());
+            entry = LeaderboardCache.rank(id);
+        }
+        return new RankedUser(entry.getRank(), user);
     }
 
     /**
@@ -264,8 +338,6 @@ public class UserRepository {
             pwdGen = PasswordUtil.createHash(password);
             Logger.debug("Password generated from input is: " + pwdGen);
 
-            Logger.debug("Validation of password and hash returns: " + PasswordUtil.validatePassword(password, pwdGen));
-
         } catch (NoSuchAlgorithmException e) {
             e.printStackTrace();
         } catch (InvalidKeySpecException e) {
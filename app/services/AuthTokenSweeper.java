@@ -0,0 +1,68 @@
+package services;
+
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import models.AuthToken;
+import play.Configuration;
+import play.Logger;
+import play.inject.ApplicationLifecycle;
+import scala.concurrent.duration.Duration;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background job that deletes the auth tokens which are older than the lifetime configured in the {@link TokenService}.
+ * The tokens are deleted in batches of <code>flashcards.tokens.sweepBatchSize</code> rows, thus a large backlog does not
+ * lock the table for long. The {@link util.ActionAuthenticator} rejects expired tokens on its own, the sweeper only keeps
+ * the table small.
+ * <p>
+ * Registered as eager singleton in the {@link Module}, the interval can be configured via
+ * <code>flashcards.tokens.sweepInterval</code>.
+ */
+@Singleton
+public class AuthTokenSweeper {
+    private static final String INTERVAL_KEY = "flashcards.tokens.sweepInterval";
+    private static final String BATCH_SIZE_KEY = "flashcards.tokens.sweepBatchSize";
+    private static final long DEFAULT_INTERVAL_MINUTES = 60;
+
+    private final TokenService tokenService;
+    private final int batchSize;
+    private final Cancellable task;
+
+    @Inject
+    public AuthTokenSweeper(ActorSystem actorSystem, DatabaseExecutionContext dbContext, TokenService tokenService,
+                            Configuration configuration, ApplicationLifecycle appLifecycle) {
+        this.tokenService = tokenService;
+        this.batchSize = configuration.getInt(BATCH_SIZE_KEY, 1000);
+        long interval = configuration.getMilliseconds(INTERVAL_KEY, TimeUnit.MINUTES.toMillis(DEFAULT_INTERVAL_MINUTES));
+        task = actorSystem.scheduler().schedule(
+                Duration.create(1, TimeUnit.MINUTES),
+                Duration.create(interval, TimeUnit.MILLISECONDS),
+                this::sweep,
+                dbContext.executor());
+
+        appLifecycle.addStopHook(() -> {
+            task.cancel();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    private void sweep() {
+        try {
+            Date cutoff = new Date(System.currentTimeMillis() - tokenService.getLifetimeMillis());
+            int deleted = 0;
+            int batch;
+            do {
+                batch = AuthToken.deleteCreatedBefore(cutoff, batchSize);
+                deleted += batch;
+            } while (batch == batchSize);
+            Logger.debug("AuthTokenSweeper: deleted " + deleted + " tokens created before " + cutoff + ".");
+        } catch (Exception e) {
+            Logger.error("AuthTokenSweeper: sweeping failed.", e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package services;
+
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.Transaction;
+import models.statistics.CardStatistics;
+import play.Configuration;
+import play.Logger;
+import play.inject.ApplicationLifecycle;
+import repositories.StudyScheduleRepository;
+import scala.concurrent.ExecutionContextExecutor;
+import scala.concurrent.duration.Duration;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind buffer for the statistics of <code>POST /cardStatistics/batch</code>. The statistics are validated by
+ * the request and kept in a bounded queue, they are inserted with JDBC batches once
+ * <code>flashcards.statistics.batchSize</code> statistics are waiting or every
+ * <code>flashcards.statistics.flushInterval</code>. Afterwards the {@link StudyScheduleRepository} moves the cards into
+ * their drawers.
+ * <p>
+ * A batch is only accepted completely, if <code>flashcards.statistics.queueSize</code> would be exceeded it is rejected
+ * and the client has to retry later. The queue is flushed when the application stops, statistics that are waiting in
+ * the memory of a crashed instance are lost.
+ */
+@Singleton
+public class CardStatisticsBuffer {
+    private static final String QUEUE_SIZE_KEY = "flashcards.statistics.queueSize";
+    private static final String BATCH_SIZE_KEY = "flashcards.statistics.batchSize";
+    private static final String FLUSH_INTERVAL_KEY = "flashcards.statistics.flushInterval";
+
+    private final BlockingQueue<CardStatistics> queue;
+    private final int batchSize;
+    private final ExecutionContextExecutor executor;
+    private final Cancellable task;
+    //only one flush writes at a time, thus the statistics of a user are inserted in the order they were accepted
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @Inject
+    public CardStatisticsBuffer(ActorSystem actorSystem, DatabaseExecutionContext dbContext,
+                                Configuration configuration, ApplicationLifecycle appLifecycle) {
+        queue = new ArrayBlockingQueue<>(configuration.getInt(QUEUE_SIZE_KEY, 10000));
+        batchSize = configuration.getInt(BATCH_SIZE_KEY, 500);
+        executor = dbContext.executor();
+        long interval = configuration.getMilliseconds(FLUSH_INTERVAL_KEY, TimeUnit.SECONDS.toMillis(1));
+        task = actorSystem.scheduler().schedule(
+                Duration.create(interval, TimeUnit.MILLISECONDS),
+                Duration.create(interval, TimeUnit.MILLISECONDS),
+                this::flush,
+                executor);
+
+        appLifecycle.addStopHook(() -> {
+            task.cancel();
+            return CompletableFuture.runAsync(this::flush, executor);
+        });
+    }
+
+    /**
+     * Adds validated statistics to the queue, either all of them or none.
+     *
+     * @param statistics new statistics, not saved yet
+     * @return true if they were accepted, false if the queue is too full
+     */
+    public boolean offer(Collection<CardStatistics> statistics) {
+        //the flush only removes elements, thus the capacity can not shrink between the check and addAll
+        synchronized (queue) {
+            if (queue.remainingCapacity() < statistics.size()) {
+                rejected.addAndGet(statistics.size());
+                Logger.warn("CardStatisticsBuffer: rejected " + statistics.size() + " statistics, " + queue.size()
+                        + " are waiting.");
+                return false;
+            }
+            queue.addAll(statistics);
+        }
+        accepted.addAndGet(statistics.size());
+        if (queue.size() >= batchSize && flushScheduled.compareAndSet(false, true))
+            executor.execute(this::flush);
+        return true;
+    }
+
+    /**
+     * Writes all waiting statistics in batches of <code>batchSize</code>.
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        synchronized (flushLock) {
+            List<CardStatistics> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                try {
+                    write(batch);
+                } catch (Exception e) {
+                    Logger.error("CardStatisticsBuffer: writing " + batch.size() + " statistics failed.", e);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<CardStatistics> batch) {
+        boolean committed = false;
+        Transaction transaction = Ebean.beginTransaction();
+        try {
+            transaction.setBatchMode(true);
+            transaction.setBatchSize(batchSize);
+            batch.forEach(CardStatistics::save);
+            transaction.commit();
+            committed = true;
+        } catch (Exception e) {
+            Logger.warn("CardStatisticsBuffer: batch insert failed, retrying " + batch.size() + " statistics one by one.", e);
+        } finally {
+            transaction.end();
+        }
+        //e.g. a card was deleted after the statistic was accepted, the others are saved one by one
+        List<CardStatistics> saved = committed ? batch : saveEach(batch);
+        written.addAndGet(saved.size());
+        StudyScheduleRepository.recordAll(saved);
+    }
+
+    private List<CardStatistics> saveEach(List<CardStatistics> batch) {
+        List<CardStatistics> saved = new ArrayList<>();
+        for (CardStatistics statistics : batch) {
+            //the failed batch may have assigned ids already, thus the statistic is copied into a new bean
+            CardStatistics copy = new CardStatistics(statistics.getUser(), statistics.getCard(), statistics.getKnowledge(),
+                    statistics.getDrawer(), statistics.getStartDate(), statistics.getEndDate());
+            try {
+                copy.save();
+                saved.add(copy);
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                Logger.error("CardStatisticsBuffer: dropped the statistic of user=" + statistics.getUser().getId()
+                        + " card=" + statistics.getCard().getId() + ".", e);
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Returns the counters of the buffer for the heartbeat.
+     *
+     * @return map of metric name to value
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("queued", queue.size());
+        metrics.put("accepted", accepted.get());
+        metrics.put("rejected", rejected.get());
+        metrics.put("written", written.get());
+        metrics.put("failed", failed.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,49 @@
+package services;
+
+import akka.actor.ActorSystem;
+import play.libs.concurrent.HttpExecution;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.ExecutionContextExecutor;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.Executor;
+
+/**
+ * Execution context for blocking JDBC/Ebean work. It is backed by the fixed size dispatcher
+ * <code>contexts.database</code> from the <code>application.conf</code>, which should be sized like the connection pool.
+ * <p>
+ * Controllers run their repository calls on this context instead of Play's default dispatcher, so slow queries can not
+ * starve the threads that handle incoming requests. The returned executor keeps the current {@link play.mvc.Http.Context},
+ * thus <code>request()</code> and the {@link util.UrlParamHelper} keep working inside of the async code.
+ */
+@Singleton
+public class DatabaseExecutionContext {
+    public static final String DISPATCHER_NAME = "contexts.database";
+
+    private final ExecutionContextExecutor executor;
+
+    @Inject
+    public DatabaseExecutionContext(ActorSystem actorSystem) {
+        this.executor = actorSystem.dispatchers().lookup(DISPATCHER_NAME);
+    }
+
+    /**
+     * Returns an executor that runs tasks on the database dispatcher and propagates the Http.Context of the calling
+     * thread. Has to be called on the thread that owns the request.
+     *
+     * @return executor for the current request
+     */
+    public Executor current() {
+        return HttpExecution.fromThread((ExecutionContext) executor);
+    }
+
+    /**
+     * Returns the plain executor of the database dispatcher without any request context, e.g. for background jobs.
+     *
+     * @return executor
+     */
+    public ExecutionContextExecutor executor() {
+        return executor;
+    }
+}
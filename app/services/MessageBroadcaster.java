@@ -0,0 +1,131 @@
+package services;
+
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.Source;
+import akka.stream.javadsl.SourceQueueWithComplete;
+import akka.util.ByteString;
+import models.msg.AbstractMessage;
+import play.Configuration;
+import play.Logger;
+import play.inject.ApplicationLifecycle;
+import play.libs.EventSource;
+import scala.concurrent.duration.FiniteDuration;
+import util.JsonKeys;
+import util.JsonUtil;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes new messages to their recipients via server-sent events. Every open <code>GET /messages/stream</code> is an
+ * Akka Streams queue that is registered for the id of its user, {@link #publish(AbstractMessage)} offers a message to
+ * all queues of the recipient. A client that is too slow loses the oldest events once
+ * <code>flashcards.messages.streamBuffer</code> events are waiting, idle streams receive a keep-alive event every
+ * <code>flashcards.messages.keepAlive</code>.
+ * <p>
+ * Only the streams connected to this application instance are notified. Clients should load the messages they missed
+ * via <code>GET /messages?startDate=...</code> after they (re)connected.
+ */
+@Singleton
+public class MessageBroadcaster {
+    private static final String BUFFER_KEY = "flashcards.messages.streamBuffer";
+    private static final String KEEP_ALIVE_KEY = "flashcards.messages.keepAlive";
+    private static final String EVENT_MESSAGE = "message";
+    private static final String EVENT_KEEP_ALIVE = "keepAlive";
+
+    private final int bufferSize;
+    private final FiniteDuration keepAlive;
+    private final Map<Long, Set<SourceQueueWithComplete<EventSource.Event>>> streams = new ConcurrentHashMap<>();
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+
+    @Inject
+    public MessageBroadcaster(Configuration configuration, ApplicationLifecycle appLifecycle) {
+        bufferSize = configuration.getInt(BUFFER_KEY, 16);
+        keepAlive = FiniteDuration.create(configuration.getMilliseconds(KEEP_ALIVE_KEY, TimeUnit.SECONDS.toMillis(30)), TimeUnit.MILLISECONDS);
+
+        appLifecycle.addStopHook(() -> {
+            streams.values().forEach(queues -> queues.forEach(SourceQueueWithComplete::complete));
+            streams.clear();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Opens a new stream for the user. The stream is registered when the response starts and removed when the client
+     * disconnects.
+     *
+     * @param userId id of the logged in user
+     * @return body of the event stream response
+     */
+    public Source<ByteString, ?> subscribe(long userId) {
+        return Source.<EventSource.Event>queue(bufferSize, OverflowStrategy.dropHead())
+                .mapMaterializedValue(queue -> {
+                    //added inside compute, thus unsubscribe can not drop the set in between
+                    streams.compute(userId, (id, queues) -> {
+                        Set<SourceQueueWithComplete<EventSource.Event>> updated = queues == null ? new CopyOnWriteArraySet<>() : queues;
+                        updated.add(queue);
+                        return updated;
+                    });
+                    queue.watchCompletion().whenComplete((done, error) -> unsubscribe(userId, queue));
+                    if (JsonKeys.debugging)
+                        Logger.debug("Opened message stream of user=" + userId);
+                    return queue;
+                })
+                .keepAlive(keepAlive, () -> EventSource.Event.event("").withName(EVENT_KEEP_ALIVE))
+                .via(EventSource.flow());
+    }
+
+    private void unsubscribe(long userId, SourceQueueWithComplete<EventSource.Event> queue) {
+        streams.computeIfPresent(userId, (id, queues) -> {
+            queues.remove(queue);
+            return queues.isEmpty() ? null : queues;
+        });
+        if (JsonKeys.debugging)
+            Logger.debug("Closed message stream of user=" + userId);
+    }
+
+    /**
+     * Sends a saved message to all open streams of its recipient.
+     *
+     * @param message that was just created
+     */
+    public void publish(AbstractMessage message) {
+        published.incrementAndGet();
+        if (message.getRecipient() == null)
+            return;
+        Set<SourceQueueWithComplete<EventSource.Event>> queues = streams.get(message.getRecipient().getId());
+        if (queues == null)
+            return;
+        EventSource.Event event = EventSource.Event.event(JsonUtil.toJson(message))
+                .withId(String.valueOf(message.getId()))
+                .withName(EVENT_MESSAGE);
+        for (SourceQueueWithComplete<EventSource.Event> queue : queues) {
+            queue.offer(event);
+            delivered.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the counters of the broadcaster for the heartbeat.
+     *
+     * @return map of metric name to value
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("users", streams.size());
+        metrics.put("streams", streams.values().stream().mapToInt(Set::size).sum());
+        metrics.put("published", published.get());
+        metrics.put("delivered", delivered.get());
+        return metrics;
+    }
+}
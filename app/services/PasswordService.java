@@ -0,0 +1,213 @@
+package services;
+
+import play.Configuration;
+import play.Logger;
+import play.inject.ApplicationLifecycle;
+import util.crypt.PasswordUtil;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies passwords for the login on a small pool of its own. PBKDF2 is slow on purpose, thus running it on the
+ * database or request threads lets a burst of logins block every other request. The pool has a bounded queue, if it
+ * is full the login is rejected immediately with a {@link RejectedExecutionException} instead of piling up work.
+ * <p>
+ * Failed attempts are counted per email, after <code>flashcards.password.maxFailedAttempts</code> failures further
+ * attempts are rejected without hashing until <code>flashcards.password.lockoutDuration</code> passed. Hashes with
+ * parameters weaker than the ones in {@link PasswordUtil} are replaced after a successful login.
+ */
+@Singleton
+public class PasswordService {
+    private static final String THREADS_KEY = "flashcards.password.threads";
+    private static final String QUEUE_SIZE_KEY = "flashcards.password.queueSize";
+    private static final String MAX_FAILED_ATTEMPTS_KEY = "flashcards.password.maxFailedAttempts";
+    private static final String LOCKOUT_DURATION_KEY = "flashcards.password.lockoutDuration";
+    //expired entries are removed once the map grows beyond this size
+    private static final int MAX_TRACKED_EMAILS = 10000;
+
+    private final ThreadPoolExecutor executor;
+    private final int maxFailedAttempts;
+    private final long lockoutMillis;
+    private final Map<String, FailedAttempts> failedAttempts = new ConcurrentHashMap<>();
+
+    private final AtomicLong verifications = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong lockedOut = new AtomicLong();
+    private final AtomicLong rehashed = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    @Inject
+    public PasswordService(Configuration configuration, ApplicationLifecycle appLifecycle) {
+        int threads = configuration.getInt(THREADS_KEY, Runtime.getRuntime().availableProcessors());
+        int queueSize = configuration.getInt(QUEUE_SIZE_KEY, 64);
+        maxFailedAttempts = configuration.getInt(MAX_FAILED_ATTEMPTS_KEY, 5);
+        lockoutMillis = configuration.getMilliseconds(LOCKOUT_DURATION_KEY, TimeUnit.MINUTES.toMillis(5));
+
+        AtomicInteger threadIds = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "password-hashing-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+
+        appLifecycle.addStopHook(() -> {
+            executor.shutdown();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Checks whether the email reached the maximum number of failed attempts. This does not hash anything and should
+     * be called before the user is loaded.
+     *
+     * @param email of the login
+     * @return true if the login has to be rejected
+     */
+    public boolean isLockedOut(String email) {
+        FailedAttempts attempts = failedAttempts.get(key(email));
+        if (attempts == null)
+            return false;
+        if (attempts.isExpired(lockoutMillis)) {
+            failedAttempts.remove(key(email), attempts);
+            return false;
+        }
+        if (attempts.count.get() >= maxFailedAttempts) {
+            lockedOut.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Validates the password against the stored hash on the hashing pool. If the hash is outdated, the result contains
+     * a new hash of the password that should be saved by the caller.
+     *
+     * @param email    of the login, used to count failed attempts
+     * @param password sent by the user
+     * @param hash     stored for the user
+     * @return the verification, completes exceptionally with a {@link RejectedExecutionException} if the pool is
+     * saturated or a {@link NumberFormatException} if the stored password is no hash
+     */
+    public CompletionStage<Verification> verify(String email, String password, String hash) {
+        CompletableFuture<Verification> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(doVerify(email, password, hash));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            Logger.warn("PasswordService: rejected login, " + executor.getQueue().size() + " verifications are waiting.");
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private Verification doVerify(String email, String password, String hash) throws Exception {
+        //the lockout may have been reached while this attempt was waiting in the queue
+        if (isLockedOut(email))
+            return new Verification(Verification.Status.LOCKED, null);
+
+        long start = System.nanoTime();
+        boolean valid = PasswordUtil.validatePassword(password, hash);
+        String newHash = valid && PasswordUtil.needsRehash(hash) ? PasswordUtil.createHash(password) : null;
+        record(System.nanoTime() - start);
+
+        if (!valid) {
+            recordFailure(email);
+            return new Verification(Verification.Status.INVALID, null);
+        }
+        failedAttempts.remove(key(email));
+        if (newHash != null)
+            rehashed.incrementAndGet();
+        return new Verification(Verification.Status.VALID, newHash);
+    }
+
+    private void record(long nanos) {
+        verifications.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private void recordFailure(String email) {
+        if (failedAttempts.size() > MAX_TRACKED_EMAILS)
+            failedAttempts.values().removeIf(attempts -> attempts.isExpired(lockoutMillis));
+        failedAttempts.compute(key(email), (key, attempts) ->
+                attempts == null || attempts.isExpired(lockoutMillis) ? new FailedAttempts() : attempts)
+                .count.incrementAndGet();
+    }
+
+    private static String key(String email) {
+        return email.trim().toLowerCase();
+    }
+
+    /**
+     * Returns the counters of the service for the heartbeat.
+     *
+     * @return map of metric name to value
+     */
+    public Map<String, Object> getMetrics() {
+        long count = verifications.get();
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("verifications", count);
+        metrics.put("avgMillis", count == 0 ? 0 : totalNanos.get() / count / 1e6);
+        metrics.put("maxMillis", maxNanos.get() / 1e6);
+        metrics.put("queued", executor.getQueue().size());
+        metrics.put("rejected", rejected.get());
+        metrics.put("lockedOut", lockedOut.get());
+        metrics.put("rehashed", rehashed.get());
+        return metrics;
+    }
+
+    /**
+     * Result of one password verification.
+     */
+    public static class Verification {
+        public enum Status {VALID, INVALID, LOCKED}
+
+        private final Status status;
+        private final String newHash;
+
+        Verification(Status status, String newHash) {
+            this.status = status;
+            this.newHash = newHash;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the hash with the current parameters if the stored one is outdated, else null
+         */
+        public String getNewHash() {
+            return newHash;
+        }
+    }
+
+    private static class FailedAttempts {
+        private final long started = System.currentTimeMillis();
+        private final AtomicInteger count = new AtomicInteger();
+
+        boolean isExpired(long lockoutMillis) {
+            return System.currentTimeMillis() > started + lockoutMillis;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package services;
+
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import play.Logger;
+import play.inject.ApplicationLifecycle;
+import repositories.StudyScheduleRepository;
+import scala.concurrent.duration.Duration;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the missing {@link models.statistics.StudySchedule}s once after the start of the application, e.g. for
+ * statistics that were created before the schedule existed. New statistics update the schedule directly via
+ * {@link StudyScheduleRepository#record(models.statistics.CardStatistics)}.
+ * <p>
+ * Registered as eager singleton in the {@link Module}.
+ */
+@Singleton
+public class StudyScheduleBackfill {
+    private final Cancellable task;
+
+    @Inject
+    public StudyScheduleBackfill(ActorSystem actorSystem, DatabaseExecutionContext dbContext, ApplicationLifecycle appLifecycle) {
+        task = actorSystem.scheduler().scheduleOnce(
+                Duration.create(1, TimeUnit.MINUTES),
+                this::backfill,
+                dbContext.executor());
+
+        appLifecycle.addStopHook(() -> {
+            task.cancel();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    private void backfill() {
+        try {
+            int created = StudyScheduleRepository.backfill();
+            if (created > 0)
+                Logger.info("StudyScheduleBackfill: created the schedule of " + created + " cards.");
+            else
+                Logger.debug("StudyScheduleBackfill: all statistics are scheduled.");
+        } catch (Exception e) {
+            Logger.error("StudyScheduleBackfill: backfill failed.", e);
+        }
+    }
+}
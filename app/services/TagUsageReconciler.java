@@ -0,0 +1,58 @@
+package services;
+
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import play.Configuration;
+import play.Logger;
+import play.inject.ApplicationLifecycle;
+import repositories.TagRepository;
+import scala.concurrent.duration.Duration;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background job that periodically recounts the links of every tag and fixes usage counters that drifted from the
+ * cardTagJoinTable, e.g. after a failed request or manual changes in the database. The counters are normally kept up
+ * to date by {@link TagRepository#adjustUsageCount(java.util.Collection, int)}.
+ * <p>
+ * Registered as eager singleton in the {@link Module}, the interval can be configured via
+ * <code>flashcards.tags.reconcileInterval</code>.
+ */
+@Singleton
+public class TagUsageReconciler {
+    private static final String INTERVAL_KEY = "flashcards.tags.reconcileInterval";
+    private static final long DEFAULT_INTERVAL_MINUTES = 60;
+
+    private final Cancellable task;
+
+    @Inject
+    public TagUsageReconciler(ActorSystem actorSystem, DatabaseExecutionContext dbContext,
+                              Configuration configuration, ApplicationLifecycle appLifecycle) {
+        long interval = configuration.getMilliseconds(INTERVAL_KEY, TimeUnit.MINUTES.toMillis(DEFAULT_INTERVAL_MINUTES));
+        task = actorSystem.scheduler().schedule(
+                Duration.create(1, TimeUnit.MINUTES),
+                Duration.create(interval, TimeUnit.MILLISECONDS),
+                this::reconcile,
+                dbContext.executor());
+
+        appLifecycle.addStopHook(() -> {
+            task.cancel();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    private void reconcile() {
+        try {
+            int fixed = TagRepository.reconcileUsageCounts();
+            if (fixed > 0)
+                Logger.warn("TagUsageReconciler: corrected the usage count of " + fixed + " tags.");
+            else
+                Logger.debug("TagUsageReconciler: all usage counts are consistent.");
+        } catch (Exception e) {
+            Logger.error("TagUsageReconciler: reconciliation failed.", e);
+        }
+    }
+}
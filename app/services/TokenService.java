@@ -0,0 +1,105 @@
+package services;
+
+import models.AuthToken;
+import models.User;
+import play.Configuration;
+import util.cache.TokenDenyList;
+import util.crypt.SignedToken;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the lifetime of the tokens from the database, they expire after <code>flashcards.tokens.lifetime</code> and are
+ * deleted by the {@link AuthTokenSweeper}.
+ * <p>
+ * Issues and verifies the stateless {@link SignedToken}s. The mode is disabled by default, the login then keeps
+ * creating {@link models.AuthToken}s in the database. With <code>flashcards.tokens.signed = true</code> the login returns
+ * signed tokens that the {@link util.ActionAuthenticator} verifies without the database, they are signed with
+ * <code>play.crypto.secret</code> and expire after <code>flashcards.tokens.signedLifetime</code>.
+ */
+@Singleton
+public class TokenService {
+    private static final String SIGNED_KEY = "flashcards.tokens.signed";
+    private static final String LIFETIME_KEY = "flashcards.tokens.lifetime";
+    private static final String SIGNED_LIFETIME_KEY = "flashcards.tokens.signedLifetime";
+    private static final String SECRET_KEY = "play.crypto.secret";
+
+    private final long lifetimeMillis;
+    private final boolean signed;
+    private final long signedLifetimeSeconds;
+    private final byte[] secret;
+
+    @Inject
+    public TokenService(Configuration configuration) {
+        lifetimeMillis = configuration.getMilliseconds(LIFETIME_KEY, TimeUnit.DAYS.toMillis(30));
+        signed = configuration.getBoolean(SIGNED_KEY, false);
+        signedLifetimeSeconds = TimeUnit.MILLISECONDS.toSeconds(configuration.getMilliseconds(SIGNED_LIFETIME_KEY, TimeUnit.DAYS.toMillis(1)));
+        secret = configuration.getString(SECRET_KEY).getBytes(StandardCharsets.UTF_8);
+        TokenDenyList.setTokenLifetime(signedLifetimeSeconds);
+    }
+
+    /**
+     * Returns the time when a token from the database expires.
+     *
+     * @param token from the database
+     * @return expiry in milliseconds since the epoch
+     */
+    public long expiresAt(AuthToken token) {
+        //the creation date is set by the database on insert, tokens that were just created may not have it loaded
+        long created = token.getCreated() == null ? System.currentTimeMillis() : token.getCreated().getTime();
+        return created + lifetimeMillis;
+    }
+
+    public long getLifetimeMillis() {
+        return lifetimeMillis;
+    }
+
+    /**
+     * @return true if the login should issue signed tokens
+     */
+    public boolean isSigned() {
+        return signed;
+    }
+
+    /**
+     * Creates a signed token for the user.
+     *
+     * @param user that logged in
+     * @return token string
+     */
+    public String issue(User user) {
+        return SignedToken.create(user.getId(), user.getEmail(), signedLifetimeSeconds, secret);
+    }
+
+    /**
+     * Verifies a signed token. Signed tokens are only accepted while the mode is enabled.
+     *
+     * @param token sent by the client
+     * @return the token or null if it is invalid, expired or revoked
+     */
+    public SignedToken verify(String token) {
+        if (!signed)
+            return null;
+        SignedToken verified = SignedToken.verify(token, secret);
+        if (verified == null || TokenDenyList.isDenied(verified.getId(), verified.getUserId(), verified.getIssuedAt()))
+            return null;
+        return verified;
+    }
+
+    /**
+     * Revokes a signed token until it expires, used by the logout.
+     *
+     * @param token sent by the client
+     * @return true if the token was valid and is revoked now
+     */
+    public boolean revoke(String token) {
+        SignedToken verified = verify(token);
+        if (verified == null)
+            return false;
+        TokenDenyList.deny(verified.getId(), verified.getExpiresAt());
+        return true;
+    }
+}
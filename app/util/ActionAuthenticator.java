@@ -3,8 +3,13 @@ package util;
 import models.AuthToken;
 import models.User;
 import play.mvc.Http;
+import services.TokenService;
 import play.mvc.Result;
 import play.mvc.Security;
+import util.cache.AuthTokenCache;
+import util.crypt.SignedToken;
+
+import javax.inject.Inject;
 
 import static play.mvc.Http.Status.UNAUTHORIZED;
 
@@ -13,9 +18,17 @@ import static play.mvc.Http.Status.UNAUTHORIZED;
  */
 
 public class ActionAuthenticator extends Security.Authenticator {
+    private final TokenService tokenService;
+
+    @Inject
+    public ActionAuthenticator(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
 
     /**
-     * Returns the email (unique) of the user despite it's name to identify the user.
+     * Returns the email (unique) of the user despite it's name to identify the user. Signed tokens are verified without
+     * the database, see {@link TokenService}. Other tokens that were resolved recently are answered from the
+     * {@link AuthTokenCache} without hitting the database, tokens older than the configured lifetime are rejected.
      *
      * @param ctx context
      * @return email
@@ -25,10 +38,21 @@ public class ActionAuthenticator extends Security.Authenticator {
         String token = getTokenFromHeader(ctx);
         System.out.println("Token=" + token);
 
+        if (token != null && SignedToken.isSigned(token)) {
+            SignedToken signed = tokenService.verify(token);
+            return signed == null ? null : signed.getEmail();
+        }
         if (token != null) {
+            AuthTokenCache.Entry cached = AuthTokenCache.get(token);
+            if (cached != null)
+                return cached.getEmail();
+
             AuthToken authToken = AuthToken.find.where().eq(JsonKeys.TOKEN, token).findUnique();
-            if (authToken != null) {
+            //expired tokens are rejected even before the sweeper deleted them
+            long expiresAt = authToken == null ? 0 : tokenService.expiresAt(authToken);
+            if (authToken != null && expiresAt > System.currentTimeMillis()) {
                 User user = authToken.getUser();
+                AuthTokenCache.put(token, user.getId(), user.getEmail(), expiresAt);
                 return user.getEmail();
             }
         }
@@ -56,6 +56,7 @@ public class JsonKeys {
     //Tag
     public static final String TAG_ID = "tagId";
     public static final String TAG_NAME = "tagName";
+    public static final String TAG_USAGE_COUNT = "usageCount";
     public static final String TAG_CARDS = "cads";
 
     //Group
@@ -94,16 +95,27 @@ public class JsonKeys {
     public static final String CARDDECK_NAME = "cardDeckName";
     public static final String CARDDECK_DESCRIPTION = "cardDeckDescpription";
     public static final String CARDDECK_CARDS = "cards";
+    public static final String CARDDECK_CARD_COUNT = "cardCount";
     public static final String CARDDECK_VISIBLE = "visible";
     public static final String CARDDECK_GROUP = "userGroup";
     public static final String CARDDECK_CATEGORY = "category";
     public static final String CARDDECK_JSON_ELEMENTS = CARDDECK_NAME + ", " + CARDDECK_DESCRIPTION + ", " + CARDDECK_CARDS + " (child: list containing flashcardIds)";
 
+    //Bulk import
+    public static final String BULK_CREATED = "created";
+    public static final String BULK_ERRORS = "errors";
+    public static final String BULK_INDEX = "index";
+    public static final String BULK_ACCEPTED = "accepted";
+    public static final String RANK = "rank";
+    public static final String RANK_USER = "user";
+
     //Category
     public static final String CATEGORY_ID = "categoryId";
     public static final String CATEGORY_NAME = "categoryName";
     public static final String CATEGORY_PARENT = "parent";
     public static final String CATEGORY_DECK = "cardDecks";
+    //materialized path of ids from the root down to the category, e.g. /1/4/9/
+    public static final String CATEGORY_PATH = "path";
     public static final String CATEGORY_JSON_ELEMENTS = CATEGORY_NAME + ", " + CATEGORY_PARENT + ", " + CATEGORY_DECK + " (list containing cardDeckIds)";
 
     //Media Upload
@@ -134,4 +146,9 @@ public class JsonKeys {
     public static final String DATE_START = "startDate";
     public static final String DATE_END = "endDate";
 
+    //StudySchedule
+    public static final String SCHEDULE_TABLE_NAME = "study_schedule";
+    public static final String SCHEDULE_ID = "scheduleId";
+    public static final String SCHEDULE_DUE = "dueDate";
+
 }
\ No newline at end of file
@@ -3,13 +3,48 @@ package util;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
 import play.libs.Json;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Serializes models with one shared, thread safe {@link ObjectMapper}. It is configured like Play's default
+ *         mapper and additionally uses the Afterburner module, which replaces the reflective accessors of the models
+ *         with generated bytecode. Serializing in one of the {@link JsonViews} leaves out the properties of other
+ *         views, one mapper per view is created lazily and reused.
+ */
 public class JsonUtil {
 //	public final static String dateformat = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+    private static final ObjectMapper MAPPER = Json.newDefaultMapper().registerModule(new AfterburnerModule());
+    private static final Map<Class<?>, ObjectMapper> VIEW_MAPPERS = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the shared mapper, use it instead of creating new ones, e.g. to convert request bodies into models.
+     *
+     * @return mapper
+     */
+    public static ObjectMapper mapper() {
+        return MAPPER;
+    }
+
+    /**
+     * Returns the shared mapper that only serializes the properties of the given view.
+     *
+     * @param view one of the {@link JsonViews}
+     * @return mapper
+     */
+    public static ObjectMapper mapper(Class<?> view) {
+        return VIEW_MAPPERS.computeIfAbsent(view, v -> {
+            ObjectMapper viewMapper = MAPPER.copy();
+            viewMapper.setConfig(viewMapper.getSerializationConfig().withView(v));
+            return viewMapper;
+        });
+    }
 
     /**
      * Wraps the object it receives in a json file
@@ -18,11 +53,18 @@ public class JsonUtil {
      * @return JsonNode containing params of the object
      */
     public static JsonNode toJson(Object o) {
-        ObjectMapper mapper = new ObjectMapper();
-//		SimpleDateFormat outputFormat = new SimpleDateFormat(dateformat);
-//		mapper.setDateFormat(outputFormat);
-//		Json.setObjectMapper(mapper);
-        return Json.toJson(o);
+        return MAPPER.valueToTree(o);
+    }
+
+    /**
+     * Wraps the object it receives in a json file, only properties of the given view are contained.
+     *
+     * @param o    object we want to convert
+     * @param view one of the {@link JsonViews}
+     * @return JsonNode containing the params of the view
+     */
+    public static JsonNode toJson(Object o, Class<?> view) {
+        return mapper(view).valueToTree(o);
     }
 
     /**
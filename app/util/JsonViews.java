@@ -0,0 +1,19 @@
+package util;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Views for {@link JsonUtil#toJson(Object, Class)}. Properties without a view are part of every view.
+ *         <p>
+ *         {@link Summary} is used by list endpoints, it contains the values that the list queries load anyway.
+ *         Relations that would be loaded lazily for every element (e.g. the author of a question or the tags of a
+ *         card) and large columns (e.g. the avatar of a user) are only part of {@link Detail}. Serializing without a
+ *         view contains everything.
+ */
+public class JsonViews {
+    public interface Summary {
+    }
+
+    public interface Detail extends Summary {
+    }
+}
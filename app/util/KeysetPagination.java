@@ -0,0 +1,105 @@
+package util;
+
+import com.avaje.ebean.ExpressionList;
+import play.Logger;
+import play.mvc.Controller;
+import util.exceptions.InvalidInputException;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Keyset pagination on the primary key for list endpoints. A client requests a page with
+ *         <code>?limit=n</code> and continues with <code>?limit=n&after=lastId</code>. Every page is ordered by id asc
+ *         and fetched via <code>id > after</code>, which means the database never has to skip rows like it would with
+ *         offsets.
+ *         <p>
+ *         The id of the last element of a page is sent back in the {@link #NEXT_CURSOR_HEADER} header, it is missing on
+ *         the last page. The body stays a plain json array, thus clients that do not send the parameters get the
+ *         complete list as before.
+ */
+public class KeysetPagination {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+    //every entity names its primary key property id
+    private static final String ID_PROPERTY = "id";
+
+    /**
+     * Checks whether the current request asks for a page.
+     *
+     * @return true if limit or after are part of the query string
+     */
+    public static boolean isRequested() {
+        return UrlParamHelper.checkForKey(RequestKeys.LIMIT) || UrlParamHelper.checkForKey(RequestKeys.AFTER);
+    }
+
+    /**
+     * Executes the query. If the request contains {@link RequestKeys#LIMIT} or {@link RequestKeys#AFTER} only one
+     * page is loaded and the cursor of the next page is written into the response, else the complete list is returned.
+     *
+     * @param query      prepared query, may already contain filters
+     * @param idGetter   returns the id of one element
+     * @param <T>        type of the entity
+     * @return list of entities
+     * @throws InvalidInputException if limit or after are no positive numbers
+     */
+    public static <T> List<T> findList(ExpressionList<T> query, Function<T, Long> idGetter) throws InvalidInputException {
+        if (!isRequested())
+            return query.findList();
+
+        int limit = parseLimit(UrlParamHelper.getValue(RequestKeys.LIMIT));
+        String afterVal = UrlParamHelper.getValue(RequestKeys.AFTER);
+        if (afterVal != null) {
+            query = query.gt(ID_PROPERTY, parseCursor(afterVal));
+        }
+        //one more row than requested tells us whether there is a next page without a count query
+        List<T> page = query.orderBy(ID_PROPERTY + " asc").setMaxRows(limit + 1).findList();
+        if (page.size() > limit) {
+            page = page.subList(0, limit);
+            Long next = idGetter.apply(page.get(page.size() - 1));
+            Controller.response().setHeader(NEXT_CURSOR_HEADER, String.valueOf(next));
+            if (JsonKeys.debugging)
+                Logger.debug("Page of size=" + limit + " nextCursor=" + next);
+        }
+        return page;
+    }
+
+    /**
+     * Loads the elements that follow the given id without reading the request, e.g. the pages of a {@link NdjsonStream}.
+     *
+     * @param query prepared query, may already contain filters
+     * @param after id of the last element of the previous page, null for the first page
+     * @param size  maximum number of elements
+     * @param <T>   type of the entity
+     * @return page ordered by id asc
+     */
+    public static <T> List<T> page(ExpressionList<T> query, Long after, int size) {
+        if (after != null)
+            query = query.gt(ID_PROPERTY, after);
+        return query.orderBy(ID_PROPERTY + " asc").setMaxRows(size).findList();
+    }
+
+    private static int parseLimit(String limitVal) throws InvalidInputException {
+        if (limitVal == null)
+            return DEFAULT_LIMIT;
+        try {
+            int limit = Integer.parseInt(limitVal);
+            if (limit <= 0)
+                throw new InvalidInputException("The parameter " + RequestKeys.LIMIT + " has to be >0.");
+            return Math.min(limit, MAX_LIMIT);
+        } catch (NumberFormatException e) {
+            throw new InvalidInputException("The parameter " + RequestKeys.LIMIT + " has to be a number, got: " + limitVal + ".");
+        }
+    }
+
+    private static long parseCursor(String afterVal) throws InvalidInputException {
+        try {
+            return Long.parseLong(afterVal);
+        } catch (NumberFormatException e) {
+            throw new InvalidInputException("The parameter " + RequestKeys.AFTER + " has to be the id of the last element, got: " + afterVal + ".");
+        }
+    }
+}
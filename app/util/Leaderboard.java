@@ -0,0 +1,210 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Ranking of users by rating. The number of users per rating is kept in a Fenwick tree over the rating range,
+ *         thus the rank of a user (1 + number of users with a higher rating) is computed in O(log range) without
+ *         sorting. The users of every rating are kept in a sorted bucket for the top list, which walks the buckets from
+ *         the highest rating down. Users with the same rating share the rank and are listed by id.
+ *         <p>
+ *         The range of the tree grows when a rating outside of it is added. This class is not thread safe, see
+ *         {@link util.cache.LeaderboardCache}.
+ */
+public class Leaderboard {
+    private static final int INITIAL_SIZE = 1024;
+
+    private final Map<Long, Integer> ratings = new HashMap<>();
+    private final NavigableMap<Integer, NavigableSet<Long>> buckets = new TreeMap<>();
+    //rating of the first slot of the tree, slot i counts the users with rating offset + i
+    private int offset;
+    private long[] tree;
+
+    public Leaderboard() {
+        offset = -INITIAL_SIZE / 2;
+        tree = new long[INITIAL_SIZE + 1];
+    }
+
+    /**
+     * Sets the rating of a user, adds the user if it is not ranked yet.
+     *
+     * @param userId id of the user
+     * @param rating new rating
+     */
+    public void put(long userId, int rating) {
+        Integer old = ratings.put(userId, rating);
+        if (old != null) {
+            if (old == rating)
+                return;
+            removeFromBucket(userId, old);
+        }
+        buckets.computeIfAbsent(rating, key -> new TreeSet<>()).add(userId);
+        add(rating, 1);
+    }
+
+    /**
+     * Adds the modifier to the rating of a ranked user, unknown users are ignored.
+     *
+     * @param userId         id of the user
+     * @param ratingModifier value that is added to the rating
+     * @return true if the user is ranked
+     */
+    public boolean adjust(long userId, int ratingModifier) {
+        Integer old = ratings.get(userId);
+        if (old == null)
+            return false;
+        put(userId, old + ratingModifier);
+        return true;
+    }
+
+    /**
+     * Removes a user from the ranking.
+     *
+     * @param userId id of the user
+     */
+    public void remove(long userId) {
+        Integer old = ratings.remove(userId);
+        if (old != null)
+            removeFromBucket(userId, old);
+    }
+
+    /**
+     * Returns the rank of the user, 1 is the highest rating.
+     *
+     * @param userId id of the user
+     * @return rank or null if the user is not ranked
+     */
+    public Integer rank(long userId) {
+        Integer rating = ratings.get(userId);
+        if (rating == null)
+            return null;
+        return (int) (ratings.size() - countAtMost(rating)) + 1;
+    }
+
+    /**
+     * @param userId id of the user
+     * @return rating of the user or null if the user is not ranked
+     */
+    public Integer rating(long userId) {
+        return ratings.get(userId);
+    }
+
+    /**
+     * Returns the users with the highest ratings.
+     *
+     * @param count maximum number of entries
+     * @return entries ordered by rank, then by id
+     */
+    public List<Entry> top(int count) {
+        List<Entry> top = new ArrayList<>(Math.min(count, ratings.size()));
+        int rank = 1;
+        for (Map.Entry<Integer, NavigableSet<Long>> bucket : buckets.descendingMap().entrySet()) {
+            for (Long userId : bucket.getValue()) {
+                if (top.size() >= count)
+                    return top;
+                top.add(new Entry(userId, bucket.getKey(), rank));
+            }
+            rank += bucket.getValue().size();
+        }
+        return top;
+    }
+
+    public int size() {
+        return ratings.size();
+    }
+
+    private void removeFromBucket(long userId, int rating) {
+        NavigableSet<Long> bucket = buckets.get(rating);
+        bucket.remove(userId);
+        if (bucket.isEmpty())
+            buckets.remove(rating);
+        add(rating, -1);
+    }
+
+    /**
+     * Counts the users with a rating lower than or equal to the given one.
+     */
+    private long countAtMost(int rating) {
+        long slot = (long) rating - offset;
+        if (slot < 0)
+            return 0;
+        int i = (int) Math.min(slot + 1, tree.length - 1);
+        long count = 0;
+        for (; i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+
+    private void add(int rating, int delta) {
+        long slot = (long) rating - offset;
+        if (slot < 0 || slot >= tree.length - 1) {
+            grow(rating);
+            //the rebuilt tree already contains the change of the buckets
+            return;
+        }
+        for (int i = (int) slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Doubles the range until it contains the rating and rebuilds the tree from the buckets.
+     */
+    private void grow(int rating) {
+        long size = tree.length - 1;
+        long low = offset;
+        while (rating < low || rating >= low + size) {
+            //grow towards the rating, the old range stays covered
+            if (rating < low)
+                low -= size;
+            size *= 2;
+            if (size > Integer.MAX_VALUE / 2 || low < Integer.MIN_VALUE)
+                throw new IllegalStateException("Rating " + rating + " is out of the supported range.");
+        }
+        offset = (int) low;
+        tree = new long[(int) size + 1];
+        for (Map.Entry<Integer, NavigableSet<Long>> bucket : buckets.entrySet()) {
+            int count = bucket.getValue().size();
+            for (int i = bucket.getKey() - offset + 1; i < tree.length; i += i & -i) {
+                tree[i] += count;
+            }
+        }
+    }
+
+    /**
+     * Position of one user in the ranking.
+     */
+    public static class Entry {
+        private final long userId;
+        private final int rating;
+        private final int rank;
+
+        public Entry(long userId, int rating, int rank) {
+            this.userId = userId;
+            this.rating = rating;
+            this.rank = rank;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public int getRating() {
+            return rating;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package util;
+
+import akka.japi.Pair;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import akka.util.ByteStringBuilder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import play.Logger;
+import play.mvc.Http;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Streams elements as newline delimited json (one json object per line). The elements are pulled page by page
+ *         with keyset pagination on the id, a page is only loaded when the client consumed the previous one. Every page
+ *         is a short task on the given executor, thus a slow client does not hold a thread or a connection of the
+ *         database pool while it reads, and the memory usage does not depend on the number of elements.
+ *         <p>
+ *         An error while streaming can not change the status code anymore, the response is aborted and the error is
+ *         logged.
+ */
+public class NdjsonStream {
+    //number of elements loaded per query, a shorter page is the last one
+    public static final int PAGE_SIZE = 100;
+
+    /**
+     * Checks whether the client explicitly accepts ndjson, a wildcard is not enough.
+     *
+     * @param request current request
+     * @return true if the accept header contains {@link RequestKeys#MIME_NDJSON}
+     */
+    public static boolean isRequested(Http.Request request) {
+        String accept = request.getHeader(Http.HeaderNames.ACCEPT);
+        return accept != null && accept.toLowerCase().contains(RequestKeys.MIME_NDJSON);
+    }
+
+    /**
+     * Creates the body of a chunked response.
+     *
+     * @param pages    loads up to {@link #PAGE_SIZE} elements ordered by id that follow the given id, the first page is
+     *                 requested with null
+     * @param idGetter returns the id of one element, the id of the last element is the cursor of the next page
+     * @param view     one of the {@link JsonViews} the elements are serialized in
+     * @param executor loads the pages, has to propagate the Http.Context if the pages read the request
+     * @param <T>      type of the elements
+     * @return source of the response body
+     */
+    public static <T> Source<ByteString, ?> of(Function<Long, List<T>> pages, Function<T, Long> idGetter,
+                                               Class<?> view, Executor executor) {
+        ObjectMapper mapper = JsonUtil.mapper(view);
+        return Source.unfoldAsync(new Cursor(null, false),
+                cursor -> cursor.last ? CompletableFuture.completedFuture(Optional.empty())
+                        : nextPage(cursor, pages, idGetter, mapper, executor));
+    }
+
+    private static <T> CompletionStage<Optional<Pair<Cursor, ByteString>>> nextPage(Cursor cursor,
+            Function<Long, List<T>> pages, Function<T, Long> idGetter, ObjectMapper mapper, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                List<T> page = pages.apply(cursor.after);
+                if (page.isEmpty())
+                    return Optional.empty();
+                ByteStringBuilder chunk = new ByteStringBuilder();
+                for (T element : page) {
+                    chunk.putBytes(mapper.writeValueAsBytes(element));
+                    chunk.putByte((byte) '\n');
+                }
+                Cursor next = new Cursor(idGetter.apply(page.get(page.size() - 1)), page.size() < PAGE_SIZE);
+                return Optional.of(Pair.create(next, chunk.result()));
+            } catch (JsonProcessingException e) {
+                Logger.warn("Aborted ndjson stream: " + e.getMessage());
+                throw new UncheckedIOException(e);
+            } catch (RuntimeException e) {
+                Logger.warn("Aborted ndjson stream: " + e.getMessage());
+                throw e;
+            }
+        }, executor);
+    }
+
+    /**
+     * Position of a stream, the id of the last element sent and whether it was on the last page.
+     */
+    private static class Cursor {
+        private final Long after;
+        private final boolean last;
+
+        Cursor(Long after, boolean last) {
+            this.after = after;
+            this.last = last;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package util;
+
+import models.Answer;
+import models.CardDeck;
+import models.FlashCard;
+import models.User;
+import models.UserGroup;
+import models.msg.AbstractMessage;
+import models.rating.Rating;
+import play.Logger;
+import util.cache.GroupMembershipCache;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Decides whether a user may perform an operation. Every {@link UserOperations} has exactly one {@link Rule}
+ *         that names the type of the resource it expects and the condition, operations without a rule and resources
+ *         of another type are denied. Unlike a fall-through switch, a failed check never continues with the rule of
+ *         another operation.
+ *         <p>
+ *         Group memberships are answered by the {@link GroupMembershipCache}, thus deck and group checks compare
+ *         primitive ids instead of loading and scanning the members of a group.
+ */
+public class PermissionEngine {
+    private static final Map<UserOperations, Rule<?>> rules = new EnumMap<>(UserOperations.class);
+
+    static {
+        //message
+        rule(UserOperations.GET_MESSAGE, AbstractMessage.class, (user, msg) -> isSameUser(user, msg.getRecipient()));
+        //category, the category itself does not matter
+        rule(UserOperations.CREATE_CATEGORY, Object.class, (user, category) -> user.getRating() >= Permissions.RATING_CREATE_CATEGORY);
+        rule(UserOperations.DELETE_CATEGORY, Object.class, (user, category) -> user.getRating() >= Permissions.RATING_DELETE_CATEGORY);
+        rule(UserOperations.EDIT_CATEGORY, Object.class, (user, category) -> user.getRating() >= Permissions.RATING_EDIT_CATEGORY);
+        //cards and answers, own ones or any with enough rating
+        rule(UserOperations.DELETE_CARD, FlashCard.class, (user, card) -> isSameUser(user, card.getAuthor()) || user.getRating() >= Permissions.RATING_DELETE_CARD);
+        rule(UserOperations.EDIT_CARD, FlashCard.class, (user, card) -> isSameUser(user, card.getAuthor()) || user.getRating() >= Permissions.RATING_EDIT_CARD);
+        rule(UserOperations.DELETE_ANSWER, Answer.class, (user, answer) -> isSameUser(user, answer.getAuthor()) || user.getRating() >= Permissions.RATING_DELETE_ANSWER);
+        rule(UserOperations.EDIT_ANSWER, Answer.class, (user, answer) -> isSameUser(user, answer.getAuthor()) || user.getRating() >= Permissions.RATING_EDIT_ANSWER);
+        //decks, members of the group of the deck or any with enough rating
+        rule(UserOperations.DELETE_DECK, CardDeck.class, (user, deck) -> user.getRating() >= Permissions.RATING_DELETE_DECK || isMember(user, deck.getUserGroup()));
+        rule(UserOperations.EDIT_DECK, CardDeck.class, (user, deck) -> user.getRating() >= Permissions.RATING_EDIT_DECK || isMember(user, deck.getUserGroup()));
+        //users
+        rule(UserOperations.EDIT_USER, User.class, (user, target) -> isSameUser(user, target) || user.getRating() >= Permissions.RATING_EDIT_USER);
+        rule(UserOperations.DELETE_USER, User.class, PermissionEngine::isSameUser);
+        //groups
+        rule(UserOperations.EDIT_GROUP, UserGroup.class, (user, group) -> isMember(user, group) || user.getRating() > Permissions.RATING_EDIT_GROUP);
+        rule(UserOperations.DELETE_GROUP, UserGroup.class, (user, group) -> isMember(user, group) || user.getRating() > Permissions.RATING_DELETE_GROUP);
+        //ratings
+        rule(UserOperations.EDIT_RATING, Rating.class, (user, rating) -> isSameUser(user, rating.getAuthor()));
+    }
+
+    /**
+     * Checks whether the user may perform the operation on the resource.
+     *
+     * @param user      that performs the operation
+     * @param operation the operation the user wants to do
+     * @param resource  the manipulated object, may be null for operations that do not need one
+     * @return true if the user can do the operation, else false
+     */
+    public static boolean isAllowed(User user, UserOperations operation, Object resource) {
+        Rule<?> rule = rules.get(operation);
+        boolean allowed = user != null && rule != null && rule.test(user, resource);
+        if (JsonKeys.debugging)
+            Logger.debug("Permission " + operation + " for user=" + (user == null ? null : user.getId()) + " on "
+                    + (resource == null ? null : resource.getClass().getSimpleName()) + ": " + allowed);
+        return allowed;
+    }
+
+    private static <T> void rule(UserOperations operation, Class<T> type, Condition<T> condition) {
+        rules.put(operation, new Rule<>(type, condition));
+    }
+
+    private static boolean isSameUser(User user, User other) {
+        return other != null && user.getId() != null && user.getId().equals(other.getId());
+    }
+
+    private static boolean isMember(User user, UserGroup group) {
+        return group != null && group.getId() != null && user.getId() != null
+                && GroupMembershipCache.isMember(user.getId(), group.getId());
+    }
+
+    @FunctionalInterface
+    private interface Condition<T> {
+        boolean test(User user, T resource);
+    }
+
+    /**
+     * Condition of one operation together with the type of resource it applies to.
+     */
+    private static class Rule<T> {
+        private final Class<T> type;
+        private final Condition<T> condition;
+
+        Rule(Class<T> type, Condition<T> condition) {
+            this.type = type;
+            this.condition = condition;
+        }
+
+        boolean test(User user, Object resource) {
+            //rules for Object accept a missing resource, all others require one of their type
+            if (type == Object.class)
+                return condition.test(user, type.cast(resource));
+            return type.isInstance(resource) && condition.test(user, type.cast(resource));
+        }
+    }
+}
@@ -9,6 +9,8 @@ public class RequestKeys {
     public static final String DESC = "DESC";
 
     public static final String TOKEN_HEADER = "Authorization";
+    //newline delimited json, one object per line
+    public static final String MIME_NDJSON = "application/x-ndjson";
     public static final String USER_ID = "userId";
     public static final String AUTHOR_ID = "authorId";
 
@@ -31,14 +33,31 @@ public class RequestKeys {
 
     //category params
     public static final String ROOT = "root";
+    //decks and cards of the whole subtree
+    public static final String RECURSIVE = "recursive";
     //tag - sort by usage
     public static final String USAGE_COUNT = "usageCount";
+    //tag - top n by usage for autocompletion
+    public static final String TOP = "top";
     public static final String GET_BY_NAME = "name";
     public static final String GET_BY_ID = "id";
+    //tag - cards by tags: and/or combination and excluded tags
+    public static final String MODE = "mode";
+    public static final String MODE_AND = "and";
+    public static final String MODE_OR = "or";
+    public static final String EXCLUDE_BY_ID = "excludeId";
+    public static final String EXCLUDE_BY_NAME = "excludeName";
 
     public static final String START = "start";
 
     public static final String START_DATE = "startDate";
     public static final String COUNT = "count";
     public static final String DECK_ID = "deckId";
+    //deck listings - ?expand=cards includes the cards of every deck
+    public static final String EXPAND = "expand";
+    public static final String EXPAND_CARDS = "cards";
+
+    //keyset pagination
+    public static final String LIMIT = "limit";
+    public static final String AFTER = "after";
 }
@@ -0,0 +1,146 @@
+package util.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Bounded in-memory cache that maps auth tokens to the (userId, email) pair of their owner. Every authenticated
+ *         request resolves its bearer token through {@link util.ActionAuthenticator}, caching the result saves the
+ *         authToken and user lookups for tokens that were used recently.
+ *         <p>
+ *         Entries are evicted when they are older than {@link #TTL_MILLIS} or when the cache grows beyond
+ *         {@link #MAX_ENTRIES} (least recently used first). Logout and token deletion have to call
+ *         {@link #invalidate(String)} or {@link #invalidateUser(long)} explicitly.
+ */
+public class AuthTokenCache {
+    public static final int MAX_ENTRIES = 10000;
+    public static final long TTL_MILLIS = 5 * 60 * 1000;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    //access ordered map, the eldest entry is the least recently used one.
+    private static final LinkedHashMap<String, Entry> cache = new LinkedHashMap<String, Entry>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Returns the cached owner of the token or null if the token is unknown or expired.
+     *
+     * @param token sent by the client
+     * @return entry or null
+     */
+    public static Entry get(String token) {
+        Entry entry;
+        synchronized (cache) {
+            entry = cache.get(token);
+            if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+                cache.remove(token);
+                entry = null;
+            }
+        }
+        if (entry != null)
+            hits.incrementAndGet();
+        else
+            misses.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Caches the owner of one token.
+     *
+     * @param token  the token string
+     * @param userId id of the owner
+     * @param email  email of the owner
+     */
+    public static void put(String token, long userId, String email) {
+        put(token, userId, email, Long.MAX_VALUE);
+    }
+
+    /**
+     * Caches the owner of one token, the entry does not outlive the token itself.
+     *
+     * @param token     the token string
+     * @param userId    id of the owner
+     * @param email     email of the owner
+     * @param expiresAt expiry of the token in milliseconds since the epoch
+     */
+    public static void put(String token, long userId, String email, long expiresAt) {
+        synchronized (cache) {
+            cache.put(token, new Entry(userId, email, Math.min(expiresAt, System.currentTimeMillis() + TTL_MILLIS)));
+        }
+    }
+
+    /**
+     * Removes one token from the cache, has to be called whenever a token gets deleted.
+     *
+     * @param token the token string
+     */
+    public static void invalidate(String token) {
+        synchronized (cache) {
+            cache.remove(token);
+        }
+    }
+
+    /**
+     * Removes every token of one user, e.g. after the user logged out everywhere, changed the email or was deleted.
+     *
+     * @param userId id of the user
+     */
+    public static void invalidateUser(long userId) {
+        synchronized (cache) {
+            Iterator<Entry> iterator = cache.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getUserId() == userId)
+                    iterator.remove();
+            }
+        }
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Immutable owner information of one cached token.
+     */
+    public static class Entry {
+        private final long userId;
+        private final String email;
+        private final long expires;
+
+        Entry(long userId, String email, long expires) {
+            this.userId = userId;
+            this.email = email;
+            this.expires = expires;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        boolean isExpired(long now) {
+            return now > expires;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package util.cache;
+
+import models.Category;
+import play.Logger;
+import util.JsonKeys;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         In-memory copy of the category hierarchy. The whole tree (id, name and parent of every category) is loaded
+ *         with one query into an immutable {@link Snapshot}, which is shared by all readers and replaced atomically.
+ *         Listing children and roots, walking the ancestors, the loop detection and looking up the materialized path
+ *         of a subtree then work without the database.
+ *         <p>
+ *         Every write to a category has to call {@link #invalidate()} after it was saved, the next read loads a new
+ *         snapshot. A snapshot that was loaded while a write happened is not published. Writes from other application
+ *         instances are picked up after {@link #TTL_MILLIS}.
+ */
+public class CategoryTreeCache {
+    public static final long TTL_MILLIS = 5 * 60 * 1000;
+
+    private static final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    //incremented by every write, a snapshot of an older generation is outdated
+    private static final AtomicLong generation = new AtomicLong();
+    private static final AtomicLong loads = new AtomicLong();
+
+    /**
+     * Returns the current snapshot, loads a new one if there is none or it is outdated.
+     *
+     * @return snapshot of the tree
+     */
+    public static Snapshot get() {
+        Snapshot current = snapshot.get();
+        long currentGeneration = generation.get();
+        if (current != null && current.generation == currentGeneration
+                && System.currentTimeMillis() < current.loaded + TTL_MILLIS)
+            return current;
+
+        Snapshot loaded = Snapshot.load(currentGeneration);
+        loads.incrementAndGet();
+        //a write during the load makes this snapshot outdated, it is returned to this reader only
+        if (generation.get() == currentGeneration)
+            snapshot.compareAndSet(current, loaded);
+        if (JsonKeys.debugging)
+            Logger.debug("Loaded category tree with " + loaded.size() + " categories, generation=" + currentGeneration);
+        return loaded;
+    }
+
+    /**
+     * Drops the current snapshot, has to be called whenever a category was created, renamed or moved.
+     */
+    public static void invalidate() {
+        generation.incrementAndGet();
+        snapshot.set(null);
+    }
+
+    public static long getLoads() {
+        return loads.get();
+    }
+
+    /**
+     * Immutable tree of all categories at one point in time.
+     */
+    public static class Snapshot {
+        private final long generation;
+        private final long loaded;
+        private final Map<Long, Node> nodes;
+        private final List<Long> roots;
+
+        private Snapshot(long generation, Map<Long, Node> nodes, List<Long> roots) {
+            this.generation = generation;
+            this.loaded = System.currentTimeMillis();
+            this.nodes = nodes;
+            this.roots = roots;
+        }
+
+        private static Snapshot load(long generation) {
+            //only the id of the parent is selected, the parents are not loaded
+            List<Category> categories = Category.find.select("id, name, parent, " + JsonKeys.CATEGORY_PATH).orderBy("id asc").findList();
+            Map<Long, List<Long>> children = new HashMap<>();
+            List<Long> roots = new ArrayList<>();
+            for (Category category : categories) {
+                if (category.getParent() == null)
+                    roots.add(category.getId());
+                else
+                    children.computeIfAbsent(category.getParent().getId(), parent -> new ArrayList<>()).add(category.getId());
+            }
+            Map<Long, Node> nodes = new HashMap<>();
+            for (Category category : categories) {
+                Long parentId = category.getParent() == null ? null : category.getParent().getId();
+                List<Long> childIds = children.getOrDefault(category.getId(), Collections.emptyList());
+                nodes.put(category.getId(), new Node(category.getId(), category.getName(), parentId, category.getPath(), childIds));
+            }
+            return new Snapshot(generation, Collections.unmodifiableMap(nodes), Collections.unmodifiableList(roots));
+        }
+
+        public boolean contains(long id) {
+            return nodes.containsKey(id);
+        }
+
+        public int size() {
+            return nodes.size();
+        }
+
+        /**
+         * Returns a detached copy of the category including the chain of its parents, it can be serialized without
+         * hitting the database.
+         *
+         * @param id of the category
+         * @return category or null if it does not exist
+         */
+        public Category toCategory(long id) {
+            Node node = nodes.get(id);
+            if (node == null)
+                return null;
+            Category category = new Category(node.name, node.parentId == null ? null : toCategory(node.parentId));
+            category.setId(node.id);
+            category.setPath(node.path);
+            return category;
+        }
+
+        /**
+         * Returns detached copies of all categories ordered by id.
+         *
+         * @return categories
+         */
+        public List<Category> getAll() {
+            List<Long> ids = new ArrayList<>(nodes.keySet());
+            Collections.sort(ids);
+            return toCategories(ids);
+        }
+
+        /**
+         * Returns detached copies of all categories without a parent.
+         *
+         * @return root categories
+         */
+        public List<Category> getRoots() {
+            return toCategories(roots);
+        }
+
+        /**
+         * Returns detached copies of the direct children of a category.
+         *
+         * @param id of the parent
+         * @return children, empty if the category has none or does not exist
+         */
+        public List<Category> getChildren(long id) {
+            Node node = nodes.get(id);
+            return node == null ? new ArrayList<>() : toCategories(node.childIds);
+        }
+
+        /**
+         * Checks whether ancestorId is the category itself or one of its parents by walking up the tree.
+         *
+         * @param id         of the category
+         * @param ancestorId of the possible ancestor
+         * @return true if ancestorId is on the path from the category to its root
+         */
+        public boolean isAncestorOrSelf(long id, long ancestorId) {
+            Node node = nodes.get(id);
+            //the depth is bounded by the number of categories, even if the database contains a loop
+            for (int depth = 0; node != null && depth <= nodes.size(); depth++) {
+                if (node.id == ancestorId)
+                    return true;
+                node = node.parentId == null ? null : nodes.get(node.parentId);
+            }
+            return false;
+        }
+
+        /**
+         * Returns the materialized path of a category as it is stored in the database, e.g. /1/4/9/ for the category 9
+         * with the parent 4 and the root 1.
+         *
+         * @param id of the category
+         * @return path or null if the category does not exist or its path was not built yet
+         */
+        public String getPath(long id) {
+            Node node = nodes.get(id);
+            return node == null ? null : node.path;
+        }
+
+        /**
+         * Compares the stored path of every category with the path built from the chain of its parents.
+         *
+         * @return map of id to the correct path of every category whose stored path is missing or wrong
+         */
+        public Map<Long, String> getStalePaths() {
+            Map<Long, String> stale = new HashMap<>();
+            for (Node node : nodes.values()) {
+                String path = buildPath(node.id);
+                if (path != null && !path.equals(node.path))
+                    stale.put(node.id, path);
+            }
+            return stale;
+        }
+
+        /**
+         * Builds the path of a category by walking up to its root.
+         *
+         * @param id of the category
+         * @return path or null if the database contains a loop
+         */
+        private String buildPath(long id) {
+            StringBuilder path = new StringBuilder("/");
+            Node node = nodes.get(id);
+            for (int depth = 0; node != null; depth++) {
+                if (depth > nodes.size())
+                    return null;
+                path.insert(0, "/" + node.id);
+                node = node.parentId == null ? null : nodes.get(node.parentId);
+            }
+            return path.toString();
+        }
+
+        private List<Category> toCategories(List<Long> ids) {
+            List<Category> categories = new ArrayList<>();
+            for (Long id : ids) {
+                categories.add(toCategory(id));
+            }
+            return categories;
+        }
+    }
+
+    private static class Node {
+        private final long id;
+        private final String name;
+        private final Long parentId;
+        private final String path;
+        private final List<Long> childIds;
+
+        Node(long id, String name, Long parentId, String path, List<Long> childIds) {
+            this.id = id;
+            this.name = name;
+            this.parentId = parentId;
+            this.path = path;
+            this.childIds = Collections.unmodifiableList(childIds);
+        }
+    }
+}
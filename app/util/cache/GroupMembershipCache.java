@@ -0,0 +1,184 @@
+package util.cache;
+
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.SqlRow;
+import util.JsonKeys;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Bounded in-memory cache of the ids of the groups every user is a member of. The ids of one user are loaded
+ *         with a single query on the {@link JsonKeys#USER_GROUP_JOIN_TABLE} and kept in a {@link GroupIds} set of
+ *         primitive longs, thus the {@link util.PermissionEngine} checks a membership without loading the members of a
+ *         group.
+ *         <p>
+ *         Entries are evicted after {@link #TTL_MILLIS} or when the cache grows beyond {@link #MAX_ENTRIES} (least
+ *         recently used first). Every change of a membership has to call {@link #invalidate(long)} or
+ *         {@link #invalidateAll()}.
+ */
+public class GroupMembershipCache {
+    public static final int MAX_ENTRIES = 10000;
+    public static final long TTL_MILLIS = 5 * 60 * 1000;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    //access ordered map, the eldest entry is the least recently used one.
+    private static final LinkedHashMap<Long, GroupIds> cache = new LinkedHashMap<Long, GroupIds>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, GroupIds> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    //bumped by every invalidation, a load that overlapped an invalidation must not be put into the cache.
+    private static long generation;
+
+    /**
+     * Checks whether the user is a member of the group.
+     *
+     * @param userId  id of the user
+     * @param groupId id of the group
+     * @return true if the user is a member
+     */
+    public static boolean isMember(long userId, long groupId) {
+        return get(userId).contains(groupId);
+    }
+
+    /**
+     * Returns the ids of all groups of the user, loads them if they are not cached.
+     *
+     * @param userId id of the user
+     * @return group ids
+     */
+    public static GroupIds get(long userId) {
+        GroupIds groups;
+        long loadGeneration;
+        synchronized (cache) {
+            loadGeneration = generation;
+            groups = cache.get(userId);
+            if (groups != null && groups.isExpired(System.currentTimeMillis())) {
+                cache.remove(userId);
+                groups = null;
+            }
+        }
+        if (groups != null) {
+            hits.incrementAndGet();
+            return groups;
+        }
+        misses.incrementAndGet();
+        groups = load(userId);
+        synchronized (cache) {
+            //skip the put if the memberships were invalidated while loading, the loaded ids may be stale.
+            if (generation == loadGeneration)
+                cache.put(userId, groups);
+        }
+        return groups;
+    }
+
+    private static GroupIds load(long userId) {
+        List<SqlRow> rows = Ebean.createSqlQuery("select " + JsonKeys.GROUP_ID + " from " + JsonKeys.USER_GROUP_JOIN_TABLE
+                + " where " + JsonKeys.USER_ID + " = :userId").setParameter("userId", userId).findList();
+        long[] ids = new long[rows.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = rows.get(i).getLong(JsonKeys.GROUP_ID);
+        }
+        return new GroupIds(ids, System.currentTimeMillis() + TTL_MILLIS);
+    }
+
+    /**
+     * Removes the groups of one user, has to be called whenever the user joined or left a group.
+     *
+     * @param userId id of the user
+     */
+    public static void invalidate(long userId) {
+        synchronized (cache) {
+            cache.remove(userId);
+            generation++;
+        }
+    }
+
+    /**
+     * Removes all entries, e.g. after the members of a group were replaced or the group was deleted.
+     */
+    public static void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+            generation++;
+        }
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Immutable hash set of group ids with open addressing. The table is at most half full, thus a lookup probes only
+     * a few slots.
+     */
+    public static class GroupIds {
+        //ids are generated by the database and never 0
+        private static final long EMPTY = 0;
+
+        private final long[] table;
+        private final int size;
+        private final long expires;
+
+        GroupIds(long[] ids, long expires) {
+            int capacity = Integer.highestOneBit(Math.max(2, ids.length) * 2) * 2;
+            this.table = new long[capacity];
+            int count = 0;
+            for (long id : ids) {
+                if (id == EMPTY)
+                    continue;
+                int slot = slot(id);
+                while (table[slot] != EMPTY && table[slot] != id) {
+                    slot = (slot + 1) & (table.length - 1);
+                }
+                if (table[slot] == EMPTY)
+                    count++;
+                table[slot] = id;
+            }
+            this.size = count;
+            this.expires = expires;
+        }
+
+        public boolean contains(long id) {
+            if (id == EMPTY)
+                return false;
+            int slot = slot(id);
+            while (table[slot] != EMPTY) {
+                if (table[slot] == id)
+                    return true;
+                slot = (slot + 1) & (table.length - 1);
+            }
+            return false;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private int slot(long id) {
+            long hash = id * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & (table.length - 1);
+        }
+
+        boolean isExpired(long now) {
+            return now > expires;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package util.cache;
+
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.SqlRow;
+import play.Logger;
+import util.JsonKeys;
+import util.Leaderboard;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         The {@link Leaderboard} of all users. It is loaded with one query on the first access and afterwards kept up
+ *         to date by the changes of ratings, new users and deleted users, thus the top list and the rank of a user are
+ *         answered without the database. Changes made by other application instances are picked up after
+ *         {@link #TTL_MILLIS} when the board is loaded again.
+ *         <p>
+ *         All access is serialized on one lock, the load holds it as well so no change gets lost while the board is
+ *         loaded.
+ */
+public class LeaderboardCache {
+    public static final long TTL_MILLIS = 5 * 60 * 1000;
+
+    private static final Object lock = new Object();
+    private static final AtomicLong loads = new AtomicLong();
+    private static Leaderboard board;
+    private static long loaded;
+
+    /**
+     * Returns the users with the highest ratings.
+     *
+     * @param count maximum number of entries
+     * @return entries ordered by rank
+     */
+    public static List<Leaderboard.Entry> top(int count) {
+        synchronized (lock) {
+            return get().top(count);
+        }
+    }
+
+    /**
+     * Returns the position of one user.
+     *
+     * @param userId id of the user
+     * @return entry or null if the user does not exist
+     */
+    public static Leaderboard.Entry rank(long userId) {
+        synchronized (lock) {
+            Leaderboard current = get();
+            Integer rank = current.rank(userId);
+            return rank == null ? null : new Leaderboard.Entry(userId, current.rating(userId), rank);
+        }
+    }
+
+    /**
+     * Sets the rating of a user, has to be called after a user was created or its rating was set.
+     *
+     * @param userId id of the user
+     * @param rating current rating
+     */
+    public static void put(long userId, int rating) {
+        synchronized (lock) {
+            if (board != null)
+                board.put(userId, rating);
+        }
+    }
+
+    /**
+     * Adds the modifier to the rating of a user, has to be called after the increment in the database was committed.
+     * A load that ran in between may already contain the new rating, thus the caller passes {@link #getLoads()} from
+     * before its transaction and the board is dropped instead if it was loaded since.
+     *
+     * @param userId         id of the user
+     * @param ratingModifier value that was added
+     * @param loadsBefore    result of {@link #getLoads()} before the rating was changed
+     */
+    public static void adjust(long userId, int ratingModifier, long loadsBefore) {
+        synchronized (lock) {
+            if (board == null)
+                return;
+            //users that were created by another instance are not known yet, the next load adds them
+            if (loads.get() != loadsBefore || !board.adjust(userId, ratingModifier))
+                board = null;
+        }
+    }
+
+    /**
+     * Removes a deleted user.
+     *
+     * @param userId id of the user
+     */
+    public static void remove(long userId) {
+        synchronized (lock) {
+            if (board != null)
+                board.remove(userId);
+        }
+    }
+
+    public static long getLoads() {
+        return loads.get();
+    }
+
+    public static int size() {
+        synchronized (lock) {
+            return board == null ? 0 : board.size();
+        }
+    }
+
+    private static Leaderboard get() {
+        if (board != null && System.currentTimeMillis() < loaded + TTL_MILLIS)
+            return board;
+        Leaderboard loading = new Leaderboard();
+        List<SqlRow> rows = Ebean.createSqlQuery("select " + JsonKeys.USER_ID + ", " + JsonKeys.RATING + " from user").findList();
+        for (SqlRow row : rows) {
+            Integer rating = row.getInteger(JsonKeys.RATING);
+            loading.put(row.getLong(JsonKeys.USER_ID), rating == null ? 0 : rating);
+        }
+        board = loading;
+        loaded = System.currentTimeMillis();
+        loads.incrementAndGet();
+        if (JsonKeys.debugging)
+            Logger.debug("Loaded leaderboard with " + rows.size() + " users.");
+        return board;
+    }
+}
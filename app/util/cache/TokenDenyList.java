@@ -0,0 +1,80 @@
+package util.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Revoked signed tokens, see {@link util.crypt.SignedToken}. A signed token stays valid until it expires, thus
+ *         <code>/logout</code> adds its id here and every token of a user issued before a change of the email or the
+ *         deletion of the user is rejected as well. Entries are dropped once the tokens they deny have expired, so the
+ *         list only holds revocations of the last token lifetime.
+ *         <p>
+ *         The list is kept in memory of one application instance, a revocation is not visible to other instances.
+ */
+public class TokenDenyList {
+    //token id to expiry of the token in seconds
+    private static final Map<String, Long> deniedTokens = new ConcurrentHashMap<>();
+    //user id to the time in milliseconds up to which all tokens of the user were revoked
+    private static final Map<Long, Long> deniedUsers = new ConcurrentHashMap<>();
+    //lifetime of signed tokens in seconds, set by services.TokenService
+    private static volatile long tokenLifetime = 24 * 60 * 60;
+
+    /**
+     * Revokes one token.
+     *
+     * @param id        of the token
+     * @param expiresAt expiry of the token in seconds since the epoch
+     */
+    public static void deny(String id, long expiresAt) {
+        purge();
+        deniedTokens.put(id, expiresAt);
+    }
+
+    /**
+     * Revokes all tokens of a user that were issued up to the current millisecond, e.g. after the email was changed or
+     * the user was deleted. A login in the very same millisecond is rejected as well and has to be retried.
+     *
+     * @param userId id of the user
+     */
+    public static void denyUser(long userId) {
+        purge();
+        deniedUsers.put(userId, System.currentTimeMillis());
+    }
+
+    /**
+     * Sets the lifetime of signed tokens, revocations of users are kept that long.
+     *
+     * @param seconds lifetime
+     */
+    public static void setTokenLifetime(long seconds) {
+        tokenLifetime = seconds;
+    }
+
+    /**
+     * Checks whether a token was revoked.
+     *
+     * @param id       of the token
+     * @param userId   id of the owner
+     * @param issuedAt time of issue in milliseconds since the epoch
+     * @return true if the token must not be accepted
+     */
+    public static boolean isDenied(String id, long userId, long issuedAt) {
+        if (deniedTokens.containsKey(id))
+            return true;
+        Long deniedUntil = deniedUsers.get(userId);
+        return deniedUntil != null && issuedAt <= deniedUntil;
+    }
+
+    public static int size() {
+        return deniedTokens.size() + deniedUsers.size();
+    }
+
+    private static void purge() {
+        long nowMillis = System.currentTimeMillis();
+        long now = nowMillis / 1000;
+        deniedTokens.values().removeIf(expiresAt -> expiresAt < now);
+        deniedUsers.values().removeIf(deniedUntil -> deniedUntil + tokenLifetime * 1000 < nowMillis);
+    }
+}
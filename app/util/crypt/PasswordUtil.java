@@ -17,13 +17,19 @@ public class PasswordUtil {
     // Define constants
     public static final String PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA1";
     // The following constants may be changed without breaking existing hashes.
-    public static final int SALT_BYTES = 8;
-    public static final int HASH_BYTES = 8;
-    public static final int PBKDF2_ITERATIONS = 1000;
+    // Hashes created with weaker values are replaced on the next login, see needsRehash.
+    public static final int SALT_BYTES = 16;
+    // SHA1 produces 20 bytes, longer hashes would only cost time without being stronger
+    public static final int HASH_BYTES = 20;
+    public static final int PBKDF2_ITERATIONS = 10000;
     public static final int ITERATION_INDEX = 0;
     public static final int SALT_INDEX = 1;
     public static final int PBKDF2_INDEX = 2;
 
+    // SecretKeyFactory.getInstance searches all security providers, every thread keeps its own instance as they are not
+    // thread safe
+    private static final ThreadLocal<SecretKeyFactory> FACTORY = new ThreadLocal<>();
+
     /**
      * Tests the basic functionality of the PasswordHash class
      *
@@ -129,6 +135,20 @@ public class PasswordUtil {
         return slowEquals(hash, testHash);
     }
 
+    /**
+     * Checks whether a hash was created with weaker parameters than the current ones, in that case it should be replaced
+     * with a new hash of the password after it was validated successfully.
+     *
+     * @param goodHash the hash of the valid password
+     * @return true if the iterations, the salt or the hash are smaller than the current constants
+     */
+    public static boolean needsRehash(String goodHash) {
+        String[] params = goodHash.split(":");
+        return Integer.parseInt(params[ITERATION_INDEX]) < PBKDF2_ITERATIONS
+                || params[SALT_INDEX].length() / 2 < SALT_BYTES
+                || params[PBKDF2_INDEX].length() / 2 < HASH_BYTES;
+    }
+
     /**
      * Compares two byte arrays in length-constant time. This comparison method
      * is used so that password hashes cannot be extracted from an on-line
@@ -157,8 +177,16 @@ public class PasswordUtil {
     private static byte[] pbkdf2(char[] password, byte[] salt, int iterations, int bytes)
             throws NoSuchAlgorithmException, InvalidKeySpecException {
         PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, bytes * 8);
-        SecretKeyFactory skf = SecretKeyFactory.getInstance(PBKDF2_ALGORITHM);
-        return skf.generateSecret(spec).getEncoded();
+        SecretKeyFactory skf = FACTORY.get();
+        if (skf == null) {
+            skf = SecretKeyFactory.getInstance(PBKDF2_ALGORITHM);
+            FACTORY.set(skf);
+        }
+        try {
+            return skf.generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
     }
 
     /**
@@ -0,0 +1,162 @@
+package util.crypt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import util.JsonUtil;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Stateless auth token in the compact JWT format <code>header.payload.signature</code>, signed with HMAC-SHA256.
+ *         The payload carries the id and email of the user, the time of issue, the expiry and a unique token id, thus a
+ *         token can be verified without the database. Revoked tokens are tracked by the
+ *         {@link util.cache.TokenDenyList}.
+ */
+public class SignedToken {
+    public static final String ALGORITHM = "HmacSHA256";
+    private static final String HEADER = encode("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+    private static final String CLAIM_ID = "jti";
+    private static final String CLAIM_USER_ID = "sub";
+    private static final String CLAIM_EMAIL = "email";
+    private static final String CLAIM_ISSUED = "iat";
+    private static final String CLAIM_EXPIRES = "exp";
+    //private claim, iat has whole seconds only and a revocation has to deny tokens issued earlier in the same second
+    private static final String CLAIM_ISSUED_MILLIS = "iat_ms";
+
+    private final String id;
+    private final long userId;
+    private final String email;
+    //milliseconds since the epoch
+    private final long issuedAt;
+    //seconds since the epoch like in jwt
+    private final long expiresAt;
+
+    private SignedToken(String id, long userId, String email, long issuedAt, long expiresAt) {
+        this.id = id;
+        this.userId = userId;
+        this.email = email;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Checks whether a bearer token has the format of a signed token, the tokens from the database contain no dots.
+     *
+     * @param token sent by the client
+     * @return true if it should be verified via {@link #verify(String, byte[])}
+     */
+    public static boolean isSigned(String token) {
+        return token.indexOf('.') >= 0;
+    }
+
+    /**
+     * Creates and signs a new token.
+     *
+     * @param userId     id of the owner
+     * @param email      of the owner
+     * @param ttlSeconds lifetime of the token
+     * @param key        secret of the application
+     * @return the token string
+     */
+    public static String create(long userId, String email, long ttlSeconds, byte[] key) {
+        long nowMillis = System.currentTimeMillis();
+        long now = nowMillis / 1000;
+        ObjectNode payload = JsonUtil.mapper().createObjectNode();
+        payload.put(CLAIM_ID, TokenIssuer.nextToken());
+        payload.put(CLAIM_USER_ID, userId);
+        payload.put(CLAIM_EMAIL, email);
+        payload.put(CLAIM_ISSUED, now);
+        payload.put(CLAIM_ISSUED_MILLIS, nowMillis);
+        payload.put(CLAIM_EXPIRES, now + ttlSeconds);
+        String content = HEADER + "." + encode(payload.toString().getBytes(StandardCharsets.UTF_8));
+        return content + "." + encode(sign(content, key));
+    }
+
+    /**
+     * Checks the signature and expiry of a token and returns its content.
+     *
+     * @param token sent by the client
+     * @param key   secret of the application
+     * @return the token or null if it is malformed, not signed with the key or expired
+     */
+    public static SignedToken verify(String token, byte[] key) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 3 || !parts[0].equals(HEADER))
+            return null;
+        try {
+            byte[] signature = Base64.getUrlDecoder().decode(parts[2]);
+            //constant time comparison, the time must not reveal how many bytes of a forged signature were correct
+            if (!MessageDigest.isEqual(signature, sign(parts[0] + "." + parts[1], key)))
+                return null;
+            JsonNode payload = JsonUtil.mapper().readTree(Base64.getUrlDecoder().decode(parts[1]));
+            //tokens issued before the private claim existed only carry the seconds
+            long issuedAt = payload.has(CLAIM_ISSUED_MILLIS) ? payload.get(CLAIM_ISSUED_MILLIS).asLong()
+                    : payload.get(CLAIM_ISSUED).asLong() * 1000;
+            SignedToken signed = new SignedToken(payload.get(CLAIM_ID).asText(), payload.get(CLAIM_USER_ID).asLong(),
+                    payload.get(CLAIM_EMAIL).asText(), issuedAt, payload.get(CLAIM_EXPIRES).asLong());
+            return signed.isExpired() ? null : signed;
+        } catch (Exception e) {
+            //broken base64 or json, missing claims
+            return null;
+        }
+    }
+
+    private static byte[] sign(String content, byte[] key) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(key, ALGORITHM));
+            return mac.doFinal(content.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("Can not sign tokens with " + ALGORITHM, e);
+        }
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() / 1000 >= expiresAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * @return time of issue in milliseconds since the epoch
+     */
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return "SignedToken{" +
+                "id='" + id + '\'' +
+                ", userId=" + userId +
+                ", email='" + email + '\'' +
+                ", expiresAt=" + expiresAt +
+                '}';
+    }
+}
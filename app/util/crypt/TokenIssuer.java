@@ -0,0 +1,41 @@
+package util.crypt;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Creates the auth tokens. A token consists of the id of this application instance, a sequence number and
+ *         {@link #RANDOM_BYTES} random bytes, encoded url safe in base64. The instance id and the sequence make every
+ *         token unique by construction, thus it does not have to be looked up in the database before it is used. The
+ *         random part makes it impossible to guess.
+ *         <p>
+ *         All tokens share one {@link SecureRandom} that seeds itself from the operating system once. It is thread
+ *         safe and does not block, unlike reseeding via <code>generateSeed</code> for every token.
+ */
+public class TokenIssuer {
+    public static final int RANDOM_BYTES = 24;
+
+    private static final SecureRandom random = new SecureRandom();
+    //differs between instances and restarts, two instances share an id with a probability of 2^-64
+    private static final long instanceId = random.nextLong();
+    private static final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Returns a new unique token.
+     *
+     * @return token string
+     */
+    public static String nextToken() {
+        ByteBuffer bytes = ByteBuffer.allocate(2 * Long.BYTES + RANDOM_BYTES);
+        bytes.putLong(instanceId);
+        bytes.putLong(sequence.incrementAndGet());
+        byte[] randomPart = new byte[RANDOM_BYTES];
+        random.nextBytes(randomPart);
+        bytes.put(randomPart);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+    }
+}
@@ -0,0 +1,65 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import play.mvc.Http;
+import play.test.Helpers;
+import util.ActionAuthenticator;
+import util.RequestKeys;
+import util.cache.AuthTokenCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Resolves the bearer token of a request to the email of its owner, this happens for every authenticated call.
+ *         <code>cached</code> measures tokens that were used recently, <code>cold</code> clears the
+ *         {@link AuthTokenCache} before every call and thus measures the database lookup. Signed tokens are measured by
+ *         the {@link SignedTokenBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AuthBenchmark {
+    @Param({"1000"})
+    public int users;
+
+    private BenchmarkApplication app;
+    private ActionAuthenticator authenticator;
+    private Http.Context context;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        app = new BenchmarkApplication();
+        long userId = app.seeder().seedUsers(users, 0).get(users / 2);
+        token = Seeder.TOKEN_PREFIX + userId;
+        authenticator = app.instanceOf(ActionAuthenticator.class);
+        context = BenchmarkApplication.createContext(Helpers.fakeRequest("GET", "/users").header(RequestKeys.TOKEN_HEADER, "Bearer " + token));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    public String cached() {
+        return authenticator.getUsername(context);
+    }
+
+    @Benchmark
+    public String cold() {
+        AuthTokenCache.invalidate(token);
+        return authenticator.getUsername(context);
+    }
+}
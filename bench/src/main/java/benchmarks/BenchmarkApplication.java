@@ -0,0 +1,88 @@
+package benchmarks;
+
+import play.Application;
+import play.db.Database;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.mvc.Http;
+import play.test.Helpers;
+import play.test.TestServer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Starts the real application against a private in-memory H2 database in MySQL mode. The evolutions are
+ *         applied on startup, thus the benchmarks run on the same schema and indexes as production. Every instance uses
+ *         its own database so forked benchmark runs do not share state. With a port the application is served over
+ *         http as well, e.g. for load tests through the controllers.
+ */
+public class BenchmarkApplication {
+    private final Application application;
+    private final Seeder seeder;
+    private final TestServer server;
+
+    public BenchmarkApplication() {
+        this(0);
+    }
+
+    /**
+     * @param port of the http server, 0 starts the application without a server
+     */
+    public BenchmarkApplication(int port) {
+        Map<String, Object> config = new HashMap<>();
+        config.put("db.default.driver", "org.h2.Driver");
+        config.put("db.default.url", "jdbc:h2:mem:bench" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        config.put("db.default.username", "sa");
+        config.put("db.default.password", "");
+        config.put("play.evolutions.db.default.autoApply", true);
+        //the benchmarks measure the code, not the debug output
+        config.put("logger.application", "WARN");
+
+        application = new GuiceApplicationBuilder().configure(config).build();
+        if (port > 0) {
+            server = Helpers.testServer(port, application);
+            Helpers.start(server);
+        } else {
+            server = null;
+            Helpers.start(application);
+        }
+        seeder = new Seeder(application.injector().instanceOf(Database.class));
+    }
+
+    public Seeder seeder() {
+        return seeder;
+    }
+
+    /**
+     * Returns an instance from the injector of the application, e.g. components with injected dependencies.
+     *
+     * @param type of the instance
+     * @param <T>  type of the instance
+     * @return instance
+     */
+    public <T> T instanceOf(Class<T> type) {
+        return application.injector().instanceOf(type);
+    }
+
+    public void stop() {
+        Http.Context.current.remove();
+        if (server != null)
+            Helpers.stop(server);
+        else
+            Helpers.stop(application);
+    }
+
+    /**
+     * Creates the context of a fake request. Repositories read their parameters via {@link util.UrlParamHelper} from
+     * the context of the current thread, thus benchmarks have to bind it with <code>Http.Context.current.set</code> on
+     * the thread that runs the benchmark method.
+     *
+     * @param request the request
+     * @return context
+     */
+    public static Http.Context createContext(Http.RequestBuilder request) {
+        return new Http.Context(request);
+    }
+}
@@ -0,0 +1,109 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Load test through the http server, the router and the controllers. 48 threads request the cards of a deck,
+ *         which blocks on the database, while 16 threads request <code>/heartbeat</code>, which does not touch the
+ *         database. JMH samples the latency of every request and reports the percentiles, p0.99 of the heartbeat shows
+ *         whether slow queries starve the threads that handle incoming requests.
+ *         <p>
+ *         By default the application is started on {@link #PORT} against H2 and seeded with one deck. With
+ *         <code>-p target=http://host:port</code> a running server is measured instead, it needs a visible deck with
+ *         the id 1. Running it against a server of the revision before the asynchronous controllers and against the
+ *         current one compares the p99 before and after:
+ *         <code>sbt "bench/jmh:run -i 5 -wi 3 -f 1 ControllerLoadBenchmark -p target=http://localhost:9000"</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ControllerLoadBenchmark {
+    public static final int PORT = 19001;
+    private static final int BUFFER_SIZE = 8192;
+
+    @Param({""})
+    public String target;
+
+    @Param({"1000"})
+    public int cards;
+
+    private BenchmarkApplication app;
+    private String baseUrl;
+    private long deckId = 1;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (!target.isEmpty()) {
+            baseUrl = target;
+            return;
+        }
+        app = new BenchmarkApplication(PORT);
+        Seeder seeder = app.seeder();
+        long userId = seeder.seedUsers(1, 0).get(0);
+        long group = seeder.seedGroup(Collections.singletonList(userId));
+        deckId = seeder.seedDeck(userId, group, cards, 1, Collections.emptyList(), 0);
+        baseUrl = "http://localhost:" + PORT;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (app != null)
+            app.stop();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(48)
+    public int deckCards() throws IOException {
+        return get("/cardDecks/" + deckId + "/cards");
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(16)
+    public int heartbeat() throws IOException {
+        return get("/heartbeat");
+    }
+
+    /**
+     * Sends one request and reads the whole body, the connection is kept alive for the next request of the thread.
+     *
+     * @param path of the request
+     * @return number of bytes of the body
+     * @throws IOException if the request failed or the status is not 200, errors must not be counted as fast samples
+     */
+    private int get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK)
+            throw new IOException("GET " + path + " returned " + status);
+        int length = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = connection.getInputStream()) {
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                length += read;
+            }
+        }
+        return length;
+    }
+}
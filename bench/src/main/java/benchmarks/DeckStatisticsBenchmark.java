@@ -0,0 +1,57 @@
+package benchmarks;
+
+import models.User;
+import models.statistics.CardStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import repositories.CardStatisticsRepository;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Loads the statistics of one user for all cards of a deck via
+ *         {@link CardStatisticsRepository#getCardStatisticsFromDeck(User, Long)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeckStatisticsBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int cards;
+
+    private BenchmarkApplication app;
+    private User user;
+    private long deckId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        app = new BenchmarkApplication();
+        Seeder seeder = app.seeder();
+        long userId = seeder.seedUsers(1, 0).get(0);
+        long group = seeder.seedGroup(Collections.singletonList(userId));
+        deckId = seeder.seedDeck(userId, group, cards, 1, Collections.emptyList(), 0);
+        user = User.find.byId(userId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    public List<CardStatistics> getCardStatisticsFromDeck() {
+        return CardStatisticsRepository.getCardStatisticsFromDeck(user, deckId);
+    }
+}
@@ -0,0 +1,82 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import models.FlashCard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import repositories.FlashCardRepository;
+import util.JsonKeys;
+import util.JsonUtil;
+import util.JsonViews;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Serializes the cards of one deck including questions, answers, authors and tags, like
+ *         <code>GET /cardDecks/:id/cards</code> does. The graph is loaded and serialized once during the setup, so
+ *         <code>toJson</code> and <code>toJsonSummary</code> only measure the serialization. The
+ *         <code>load*</code> benchmarks load the cards and serialize them, the full graph triggers lazy loading while
+ *         the summary query joins everything {@link JsonViews.Summary} needs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonBenchmark {
+    @Param({"10", "100", "1000"})
+    public int cards;
+
+    private BenchmarkApplication app;
+    private List<FlashCard> deckCards;
+    private long deck;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        app = new BenchmarkApplication();
+        Seeder seeder = app.seeder();
+        long author = seeder.seedUsers(1, 0).get(0);
+        long group = seeder.seedGroup(Collections.singletonList(author));
+        deck = seeder.seedDeck(author, group, cards, 4, seeder.seedTags(20), 3);
+
+        deckCards = FlashCard.find.fetch(JsonKeys.FLASHCARD_QUESTION).fetch(JsonKeys.FLASHCARD_ANSWERS)
+                .fetch(JsonKeys.FLASHCARD_TAGS).where().eq(JsonKeys.FLASHCARD_DECK + ".id", deck).findList();
+        JsonUtil.toJson(deckCards);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    public JsonNode toJson() {
+        return JsonUtil.toJson(deckCards);
+    }
+
+    @Benchmark
+    public JsonNode toJsonSummary() {
+        return JsonUtil.toJson(deckCards, JsonViews.Summary.class);
+    }
+
+    @Benchmark
+    public JsonNode loadDetail() {
+        return JsonUtil.toJson(FlashCard.find.where().eq(JsonKeys.FLASHCARD_DECK + ".id", deck).findList());
+    }
+
+    @Benchmark
+    public JsonNode loadSummary() {
+        return JsonUtil.toJson(FlashCardRepository.summaryQuery().where().eq(JsonKeys.FLASHCARD_DECK + ".id", deck)
+                .findList(), JsonViews.Summary.class);
+    }
+}
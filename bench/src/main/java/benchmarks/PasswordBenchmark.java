@@ -0,0 +1,47 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import util.crypt.PasswordUtil;
+import util.crypt.TokenIssuer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Validates a password against its PBKDF2 hash and creates a token like the login does. Does not need the
+ *         application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PasswordBenchmark {
+    private String hash;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        hash = PasswordUtil.createHash(Seeder.PASSWORD);
+    }
+
+    @Benchmark
+    public boolean validatePassword() throws Exception {
+        return PasswordUtil.validatePassword(Seeder.PASSWORD, hash);
+    }
+
+    @Benchmark
+    public boolean rejectPassword() throws Exception {
+        return PasswordUtil.validatePassword("wrong-password", hash);
+    }
+
+    @Benchmark
+    public String issueToken() {
+        return TokenIssuer.nextToken();
+    }
+}
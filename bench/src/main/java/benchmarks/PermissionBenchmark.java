@@ -0,0 +1,89 @@
+package benchmarks;
+
+import models.CardDeck;
+import models.FlashCard;
+import models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import util.JsonKeys;
+import util.UserOperations;
+import util.cache.GroupMembershipCache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Checks permissions via {@link User#hasPermission(UserOperations, Object)}. The deck checks load the deck
+ *         again for every call like the controllers do. <code>editDeck</code> answers the membership from the
+ *         {@link GroupMembershipCache}, <code>editDeckColdMembership</code> clears it before every call and
+ *         <code>scanGroupMembers</code> measures the former check that loaded and scanned all members of the group.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PermissionBenchmark {
+    @Param({"10", "1000"})
+    public int groupSize;
+
+    private BenchmarkApplication app;
+    private User member;
+    private long deckId;
+    private FlashCard card;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        app = new BenchmarkApplication();
+        Seeder seeder = app.seeder();
+        List<Long> users = seeder.seedUsers(groupSize, 0);
+        long group = seeder.seedGroup(users);
+        //the last member is checked, the membership test has to scan the whole group
+        long memberId = users.get(users.size() - 1);
+        deckId = seeder.seedDeck(memberId, group, 1, 1, Collections.emptyList(), 0);
+
+        member = User.find.byId(memberId);
+        card = FlashCard.find.where().eq(JsonKeys.FLASHCARD_DECK + ".id", deckId).findList().get(0);
+        card.getAuthor().getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    public boolean editDeck() {
+        return member.hasPermission(UserOperations.EDIT_DECK, CardDeck.find.byId(deckId));
+    }
+
+    @Benchmark
+    public boolean editDeckColdMembership() {
+        GroupMembershipCache.invalidate(member.getId());
+        return member.hasPermission(UserOperations.EDIT_DECK, CardDeck.find.byId(deckId));
+    }
+
+    @Benchmark
+    public boolean scanGroupMembers() {
+        return CardDeck.find.byId(deckId).getUserGroup().getUsers().contains(member);
+    }
+
+    @Benchmark
+    public boolean editOwnCard() {
+        return member.hasPermission(UserOperations.EDIT_CARD, card);
+    }
+
+    @Benchmark
+    public boolean createCategory() {
+        return member.hasPermission(UserOperations.CREATE_CATEGORY, null);
+    }
+}
@@ -0,0 +1,86 @@
+package benchmarks;
+
+import models.FlashCard;
+import models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import util.JsonKeys;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Concurrent votes on the same card. <code>atomicIncrement</code> uses {@link FlashCard#updateRating(int)},
+ *         <code>readModifyWrite</code> measures the former update that loaded the card and its author, added the
+ *         modifier and wrote both back. After every trial the ratings in the database are compared with the number of
+ *         votes, the difference are lost updates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class RatingBenchmark {
+    private BenchmarkApplication app;
+    private long authorId;
+    private long cardId;
+    private final AtomicLong votes = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        app = new BenchmarkApplication();
+        Seeder seeder = app.seeder();
+        authorId = seeder.seedUsers(1, 0).get(0);
+        long group = seeder.seedGroup(Collections.singletonList(authorId));
+        long deckId = seeder.seedDeck(authorId, group, 1, 1, Collections.emptyList(), 0);
+        cardId = FlashCard.find.where().eq(JsonKeys.FLASHCARD_DECK + ".id", deckId).findList().get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        int cardRating = FlashCard.find.byId(cardId).getRating();
+        int authorRating = User.find.byId(authorId).getRating();
+        System.out.println("votes=" + votes.get() + " cardRating=" + cardRating + " authorRating=" + authorRating);
+        app.stop();
+    }
+
+    /**
+     * Every voter works on its own instance of the card, like concurrent requests do.
+     */
+    @State(Scope.Thread)
+    public static class Voter {
+        FlashCard card;
+
+        @Setup(Level.Trial)
+        public void setUp(RatingBenchmark benchmark) {
+            card = FlashCard.find.byId(benchmark.cardId);
+        }
+    }
+
+    @Benchmark
+    public void atomicIncrement(Voter voter) {
+        voter.card.updateRating(1);
+        votes.incrementAndGet();
+    }
+
+    @Benchmark
+    public void readModifyWrite() {
+        FlashCard card = FlashCard.find.byId(cardId);
+        card.setRating(card.getRating() + 1);
+        card.update();
+        User author = User.find.byId(authorId);
+        author.setRating(author.getRating() + 1);
+        author.update();
+        votes.incrementAndGet();
+    }
+}
@@ -0,0 +1,239 @@
+package benchmarks;
+
+import play.db.Database;
+import util.crypt.PasswordUtil;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Fills the benchmark database with batched JDBC inserts. Going through the models or the HTTP api would take
+ *         minutes for the larger decks and would trigger the side effects we want to measure. All ids are assigned
+ *         here, so the benchmarks know them without querying.
+ */
+public class Seeder {
+    public static final String PASSWORD = "benchmark-password";
+    public static final String TOKEN_PREFIX = "bench-token-";
+    private static final int BATCH_SIZE = 500;
+
+    private final Database db;
+    private final AtomicLong userIds = new AtomicLong();
+    private final AtomicLong groupIds = new AtomicLong();
+    private final AtomicLong tagIds = new AtomicLong();
+    private final AtomicLong deckIds = new AtomicLong();
+    private final AtomicLong cardIds = new AtomicLong();
+    private final AtomicLong answerIds = new AtomicLong();
+    private final AtomicLong statisticIds = new AtomicLong();
+    private final String passwordHash;
+
+    public Seeder(Database db) {
+        this.db = db;
+        try {
+            //hashing is slow on purpose, every seeded user shares the same one
+            this.passwordHash = PasswordUtil.createHash(PASSWORD);
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    /**
+     * Creates users with one auth token each, the token of user n is {@link #TOKEN_PREFIX}n.
+     *
+     * @param count  number of users
+     * @param rating of every user
+     * @return ids of the users
+     */
+    public List<Long> seedUsers(int count, int rating) {
+        List<Long> ids = new ArrayList<>();
+        db.withTransaction(connection -> {
+            Timestamp now = now();
+            try (PreparedStatement users = connection.prepareStatement("insert into user (userId, name, password, email, rating, created, lastLogin) values (?, ?, ?, ?, ?, ?, ?)");
+                 PreparedStatement tokens = connection.prepareStatement("insert into authToken (tokenId, tokenUserId, token, created) values (?, ?, ?, ?)")) {
+                for (int i = 0; i < count; i++) {
+                    long id = userIds.incrementAndGet();
+                    ids.add(id);
+                    users.setLong(1, id);
+                    users.setString(2, "user" + id);
+                    users.setString(3, passwordHash);
+                    users.setString(4, "user" + id + "@bench.local");
+                    users.setInt(5, rating);
+                    users.setTimestamp(6, now);
+                    users.setTimestamp(7, now);
+                    users.addBatch();
+
+                    tokens.setLong(1, id);
+                    tokens.setLong(2, id);
+                    tokens.setString(3, TOKEN_PREFIX + id);
+                    tokens.setTimestamp(4, now);
+                    tokens.addBatch();
+                    if (i % BATCH_SIZE == BATCH_SIZE - 1) {
+                        users.executeBatch();
+                        tokens.executeBatch();
+                    }
+                }
+                users.executeBatch();
+                tokens.executeBatch();
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * Creates one group containing the given users.
+     *
+     * @param members ids of the users
+     * @return id of the group
+     */
+    public long seedGroup(List<Long> members) {
+        long id = groupIds.incrementAndGet();
+        db.withTransaction(connection -> {
+            try (PreparedStatement group = connection.prepareStatement("insert into userGroup (groupId, name, description) values (?, ?, ?)");
+                 PreparedStatement join = connection.prepareStatement("insert into userGroupJoinTable (userId, groupId) values (?, ?)")) {
+                group.setLong(1, id);
+                group.setString(2, "group" + id);
+                group.setString(3, "benchmark group");
+                group.executeUpdate();
+                for (Long member : members) {
+                    join.setLong(1, member);
+                    join.setLong(2, id);
+                    join.addBatch();
+                }
+                join.executeBatch();
+            }
+        });
+        return id;
+    }
+
+    /**
+     * Creates tags named tag{id} with descending usage counts.
+     *
+     * @param count number of tags
+     * @return ids of the tags
+     */
+    public List<Long> seedTags(int count) {
+        List<Long> ids = new ArrayList<>();
+        db.withTransaction(connection -> {
+            try (PreparedStatement tags = connection.prepareStatement("insert into tag (tagId, tagName, usageCount) values (?, ?, ?)")) {
+                for (int i = 0; i < count; i++) {
+                    long id = tagIds.incrementAndGet();
+                    ids.add(id);
+                    tags.setLong(1, id);
+                    tags.setString(2, "tag" + id);
+                    tags.setInt(3, count - i);
+                    tags.addBatch();
+                    if (i % BATCH_SIZE == BATCH_SIZE - 1)
+                        tags.executeBatch();
+                }
+                tags.executeBatch();
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * Creates a deck with the given number of cards. Every card gets a question, answersPerCard answers, is linked to
+     * the given tags (round robin) and gets one statistic of the author.
+     *
+     * @param author         id of the author of all elements
+     * @param group          id of the group of the deck
+     * @param cards          number of cards
+     * @param answersPerCard number of answers per card
+     * @param tags           ids of tags that are linked, may be empty
+     * @param tagsPerCard    number of tags per card
+     * @return id of the deck
+     */
+    public long seedDeck(long author, long group, int cards, int answersPerCard, List<Long> tags, int tagsPerCard) {
+        long deckId = deckIds.incrementAndGet();
+        db.withTransaction(connection -> {
+            Timestamp now = now();
+            try (PreparedStatement deck = connection.prepareStatement("insert into cardDeck (cardDeckId, visible, userGroup, cardDeckName, description) values (?, ?, ?, ?, ?)")) {
+                deck.setLong(1, deckId);
+                deck.setBoolean(2, true);
+                deck.setLong(3, group);
+                deck.setString(4, "deck" + deckId);
+                deck.setString(5, "benchmark deck with " + cards + " cards");
+                deck.executeUpdate();
+            }
+            try (PreparedStatement questions = connection.prepareStatement("insert into question (questionId, questionText, userId) values (?, ?, ?)");
+                 PreparedStatement flashCards = connection.prepareStatement("insert into flashCard (flashcardId, rating, questionId, userId, cardDeckId, multipleChoice, created, lastUpdated) values (?, ?, ?, ?, ?, ?, ?, ?)");
+                 PreparedStatement answers = connection.prepareStatement("insert into answer (answerId, answerText, answerHint, userId, cardId, rating, answerCorrect, created, lastUpdated) values (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                 PreparedStatement cardTags = connection.prepareStatement("insert into cardTagJoinTable (flashcardId, tagId) values (?, ?)");
+                 PreparedStatement statistics = connection.prepareStatement("insert into card_statistics (statisticId, user, card, knowledge, drawer, startDate, endDate) values (?, ?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < cards; i++) {
+                    long cardId = cardIds.incrementAndGet();
+                    questions.setLong(1, cardId);
+                    questions.setString(2, "What is the answer to question " + cardId + "?");
+                    questions.setLong(3, author);
+                    questions.addBatch();
+
+                    flashCards.setLong(1, cardId);
+                    flashCards.setInt(2, i % 10);
+                    flashCards.setLong(3, cardId);
+                    flashCards.setLong(4, author);
+                    flashCards.setLong(5, deckId);
+                    flashCards.setBoolean(6, answersPerCard > 1);
+                    flashCards.setTimestamp(7, now);
+                    flashCards.setTimestamp(8, now);
+                    flashCards.addBatch();
+
+                    for (int a = 0; a < answersPerCard; a++) {
+                        long answerId = answerIds.incrementAndGet();
+                        answers.setLong(1, answerId);
+                        answers.setString(2, "Answer " + a + " of card " + cardId);
+                        answers.setString(3, "Hint " + a);
+                        answers.setLong(4, author);
+                        answers.setLong(5, cardId);
+                        answers.setInt(6, a);
+                        answers.setBoolean(7, a == 0);
+                        answers.setTimestamp(8, now);
+                        answers.setTimestamp(9, now);
+                        answers.addBatch();
+                    }
+
+                    for (int t = 0; t < Math.min(tagsPerCard, tags.size()); t++) {
+                        cardTags.setLong(1, cardId);
+                        cardTags.setLong(2, tags.get((i + t) % tags.size()));
+                        cardTags.addBatch();
+                    }
+
+                    statistics.setLong(1, statisticIds.incrementAndGet());
+                    statistics.setLong(2, author);
+                    statistics.setLong(3, cardId);
+                    statistics.setFloat(4, (i % 100) / 100f);
+                    statistics.setInt(5, i % 5);
+                    statistics.setTimestamp(6, now);
+                    statistics.setTimestamp(7, now);
+                    statistics.addBatch();
+
+                    if (i % BATCH_SIZE == BATCH_SIZE - 1)
+                        executeBatches(questions, flashCards, answers, cardTags, statistics);
+                }
+                executeBatches(questions, flashCards, answers, cardTags, statistics);
+            }
+        });
+        return deckId;
+    }
+
+    //the order matters, cards reference their question and everything else references the card
+    private static void executeBatches(PreparedStatement... statements) throws SQLException {
+        for (PreparedStatement statement : statements) {
+            statement.executeBatch();
+        }
+    }
+
+    private static Timestamp now() {
+        return new Timestamp(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,44 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import util.crypt.SignedToken;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Creates and verifies stateless signed tokens, compare <code>verify</code> with the database lookup of
+ *         {@link AuthBenchmark#cold()}. Does not need the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SignedTokenBenchmark {
+    private static final byte[] KEY = "benchmark-secret-benchmark-secret".getBytes(StandardCharsets.UTF_8);
+
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        token = SignedToken.create(1, "user1@bench.local", TimeUnit.DAYS.toSeconds(1), KEY);
+    }
+
+    @Benchmark
+    public String create() {
+        return SignedToken.create(1, "user1@bench.local", TimeUnit.DAYS.toSeconds(1), KEY);
+    }
+
+    @Benchmark
+    public SignedToken verify() {
+        return SignedToken.verify(token, KEY);
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import models.Tag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import play.mvc.Http;
+import play.test.Helpers;
+import repositories.TagRepository;
+import util.exceptions.ParameterNotSupportedException;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Fabian Widmann
+ *         <p>
+ *         Lists tags through {@link TagRepository#getTags()} with the query strings the clients use, the request is
+ *         bound to the benchmark thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TagBenchmark {
+    @Param({"100", "10000"})
+    public int tags;
+
+    @Param({"/tags?top=10", "/tags?sortBy=usageCount_desc&size=50", "/tags?startsWith=tag1&size=20"})
+    public String uri;
+
+    private BenchmarkApplication app;
+    private Http.Context context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        app = new BenchmarkApplication();
+        app.seeder().seedTags(tags);
+        context = BenchmarkApplication.createContext(Helpers.fakeRequest("GET", uri));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    public List<Tag> getTags() throws ParameterNotSupportedException {
+        Http.Context.current.set(context);
+        return TagRepository.getTags();
+    }
+}
@@ -0,0 +1,18 @@
+# --- Indexes and derived values that are not generated by Ebean
+
+# --- !Ups
+
+-- persisted usage counter of every tag, kept up to date by TagRepository.adjustUsageCount
+alter table tag add column usageCount integer not null default 0;
+
+-- backfill the persisted usage counter of every tag
+update tag set usageCount = (select count(*) from cardTagJoinTable j where j.tagId = tag.tagId);
+
+-- GET /tags?sortBy=usageCount and ?top=n order by usage and name
+create index ix_tag_usageCount_tagName on tag (usageCount, tagName);
+
+# --- !Downs
+
+drop index ix_tag_usageCount_tagName on tag;
+
+alter table tag drop column usageCount;
@@ -0,0 +1,13 @@
+# --- Materialized paths of the category tree
+
+# --- !Ups
+
+-- GET /categories/:id/decks?recursive=true and /categories/:id/cards?recursive=true select the subtree via path like '/1/4/%'
+-- the paths of existing categories are built by the application, see CategoryRepository.rebuildPaths()
+alter table category add column path varchar(255);
+create index ix_category_path on category (path);
+
+# --- !Downs
+
+drop index ix_category_path on category;
+alter table category drop column path;
@@ -0,0 +1,10 @@
+# --- Expiry of auth tokens
+
+# --- !Ups
+
+-- services.AuthTokenSweeper deletes the tokens with created < now - lifetime
+create index ix_authToken_created on authToken (created);
+
+# --- !Downs
+
+drop index ix_authToken_created on authToken;
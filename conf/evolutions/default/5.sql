@@ -0,0 +1,25 @@
+# --- Due cards of the study schedule
+
+# --- !Ups
+
+create table study_schedule (
+  scheduleId                bigint auto_increment not null,
+  user                      bigint,
+  card                      bigint,
+  drawer                    integer,
+  dueDate                   datetime(6),
+  constraint uq_study_schedule_user_card unique (user,card),
+  constraint pk_study_schedule primary key (scheduleId))
+;
+
+-- the foreign key on user uses the unique index (user, card)
+alter table study_schedule add constraint fk_study_schedule_user foreign key (user) references user (userId) on delete restrict on update restrict;
+alter table study_schedule add constraint fk_study_schedule_card foreign key (card) references flashCard (flashcardId) on delete restrict on update restrict;
+create index ix_study_schedule_card on study_schedule (card);
+
+-- GET /study/due reads the schedules of one user ordered by due date
+create index ix_study_schedule_user_dueDate on study_schedule (user, dueDate);
+
+# --- !Downs
+
+drop table study_schedule;
@@ -0,0 +1,51 @@
+import org.junit.Test;
+import util.Leaderboard;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Ranks and top lists of the {@link Leaderboard}, does not need a running application.
+ */
+public class LeaderboardTest {
+
+    @Test
+    public void ranksByRatingAndSharesTies() {
+        Leaderboard board = new Leaderboard();
+        board.put(1, 10);
+        board.put(2, 30);
+        board.put(3, 10);
+        board.put(4, -5);
+
+        assertEquals(Integer.valueOf(1), board.rank(2));
+        assertEquals(Integer.valueOf(2), board.rank(1));
+        assertEquals(Integer.valueOf(2), board.rank(3));
+        assertEquals(Integer.valueOf(4), board.rank(4));
+        assertNull(board.rank(5));
+
+        List<Leaderboard.Entry> top = board.top(3);
+        assertEquals(3, top.size());
+        assertEquals(2, top.get(0).getUserId());
+        assertEquals(1, top.get(1).getUserId());
+        assertEquals(3, top.get(2).getUserId());
+        assertEquals(2, top.get(2).getRank());
+    }
+
+    @Test
+    public void followsChangesOutsideOfTheInitialRange() {
+        Leaderboard board = new Leaderboard();
+        board.put(1, 0);
+        board.put(2, 1);
+        board.adjust(1, 100000);
+        assertEquals(Integer.valueOf(1), board.rank(1));
+        assertEquals(Integer.valueOf(2), board.rank(2));
+
+        board.put(3, -100000);
+        board.remove(1);
+        assertEquals(Integer.valueOf(1), board.rank(2));
+        assertEquals(Integer.valueOf(2), board.rank(3));
+        assertFalse(board.adjust(1, 1));
+        assertEquals(2, board.size());
+    }
+}